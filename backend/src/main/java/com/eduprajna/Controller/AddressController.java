@@ -20,17 +20,17 @@ public class AddressController {
         this.userService = userService;
     }
 
-    // In a real app, resolve current user from JWT; here via email param
+    // Current user comes from the bearer token; the email param is the legacy fallback
     @GetMapping
-    public ResponseEntity<?> list(@RequestParam("email") String email) {
-        return userService.findByEmail(email)
+    public ResponseEntity<?> list(@RequestParam(value = "email", required = false) String email) {
+        return userService.findCurrentUser(email)
                 .<ResponseEntity<?>>map(user -> ResponseEntity.ok(addressService.getUserAddresses(user)))
                 .orElseGet(() -> ResponseEntity.status(404).body(Map.of("message", "User not found")));
     }
 
     @PostMapping
-    public ResponseEntity<?> create(@RequestParam("email") String email, @Valid @RequestBody Address body) {
-        return userService.findByEmail(email)
+    public ResponseEntity<?> create(@RequestParam(value = "email", required = false) String email, @Valid @RequestBody Address body) {
+        return userService.findCurrentUser(email)
                 .<ResponseEntity<?>>map(user -> {
                     body.setId(null);
                     body.setUser(user);
@@ -41,9 +41,9 @@ public class AddressController {
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Object> update(@RequestParam("email") String email, @PathVariable Long id,
+    public ResponseEntity<Object> update(@RequestParam(value = "email", required = false) String email, @PathVariable Long id,
             @Valid @RequestBody Address body) {
-        return userService.findByEmail(email)
+        return userService.findCurrentUser(email)
                 .<ResponseEntity<Object>>map(user -> addressService.findById(id)
                         .<ResponseEntity<Object>>map(existing -> {
                             if (existing.getUser() == null || !existing.getUser().getId().equals(user.getId())) {
@@ -65,8 +65,8 @@ public class AddressController {
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Object> delete(@RequestParam("email") String email, @PathVariable Long id) {
-        return userService.findByEmail(email)
+    public ResponseEntity<Object> delete(@RequestParam(value = "email", required = false) String email, @PathVariable Long id) {
+        return userService.findCurrentUser(email)
                 .<ResponseEntity<Object>>map(user -> addressService.findById(id)
                         .<ResponseEntity<Object>>map(existing -> {
                             if (existing.getUser() == null || !existing.getUser().getId().equals(user.getId())) {
@@ -1,12 +1,14 @@
 package com.eduprajna.controller;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 
+import jakarta.servlet.http.HttpServletRequest;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -14,6 +16,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.eduprajna.entity.User;
+import com.eduprajna.exception.TooManyRequestsException;
+import com.eduprajna.service.AccessTokenService;
+import com.eduprajna.service.LoginThrottle;
+import com.eduprajna.service.PasswordHashingService;
 import com.eduprajna.service.UserService;
 
 @RestController
@@ -23,18 +29,20 @@ public class AuthController {
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
 
     private final UserService userService;
-    private final PasswordEncoder passwordEncoder;
-    private final org.springframework.security.authentication.AuthenticationManager authenticationManager;
+    private final PasswordHashingService passwordHashingService;
+    private final LoginThrottle loginThrottle;
+    private final AccessTokenService accessTokenService;
 
-    public AuthController(UserService userService, PasswordEncoder passwordEncoder,
-            org.springframework.security.authentication.AuthenticationManager authenticationManager) {
+    public AuthController(UserService userService, PasswordHashingService passwordHashingService,
+            LoginThrottle loginThrottle, AccessTokenService accessTokenService) {
         this.userService = userService;
-        this.passwordEncoder = passwordEncoder;
-        this.authenticationManager = authenticationManager;
+        this.passwordHashingService = passwordHashingService;
+        this.loginThrottle = loginThrottle;
+        this.accessTokenService = accessTokenService;
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody Map<String, String> body) {
+    public ResponseEntity<?> login(@RequestBody Map<String, String> body, HttpServletRequest request) {
         try {
             logger.debug("Login attempt for email: {}", body.get("email"));
 
@@ -46,36 +54,75 @@ public class AuthController {
                 return ResponseEntity.badRequest().body("Email and password are required");
             }
 
-            try {
-                org.springframework.security.core.Authentication authentication = authenticationManager.authenticate(
-                        new org.springframework.security.authentication.UsernamePasswordAuthenticationToken(email,
-                                password));
-
-                if (authentication.isAuthenticated()) {
-                    Optional<User> userOpt = userService.findByEmail(email);
-                    if (userOpt.isPresent()) {
-                        User user = userOpt.get();
-                        logger.info("Successful login for user: {}", email);
-                        return ResponseEntity.ok(Map.of(
-                                "id", user.getId(),
-                                "name", user.getName(),
-                                "email", user.getEmail(),
-                                "role", user.getRole()));
-                    }
-                }
-            } catch (org.springframework.security.core.AuthenticationException e) {
+            // Throttle before any bcrypt work is queued
+            loginThrottle.acquire(request.getRemoteAddr(), email);
+
+            Optional<User> userOpt = userService.findByEmail(email);
+            PasswordHashingService.Verification verification = passwordHashingService.verifyAndUpgrade(
+                    password, userOpt.map(User::getPasswordHash).orElse(null));
+
+            if (userOpt.isEmpty() || !verification.matched()) {
                 logger.warn("Invalid credentials for email: {}", email);
                 return ResponseEntity.status(401).body("Invalid credentials");
             }
 
-            return ResponseEntity.status(401).body("Invalid credentials");
+            User user = userOpt.get();
+            if (Boolean.FALSE.equals(user.getIsActive())) {
+                // Same answer as bad credentials; refresh rejects these accounts too
+                logger.warn("Login for inactive user: {}", email);
+                return ResponseEntity.status(401).body("Invalid credentials");
+            }
+            loginThrottle.onSuccess(email);
+            if (verification.upgradedHash() != null) {
+                // Work factor was raised since this hash was stored
+                userService.upgradePasswordHash(user, verification.upgradedHash());
+                logger.info("Rehashed password for user: {}", email);
+            }
 
+            logger.info("Successful login for user: {}", email);
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("id", user.getId());
+            response.put("name", user.getName());
+            response.put("email", user.getEmail());
+            response.put("role", user.getRole());
+            response.putAll(issueTokens(user));
+            return ResponseEntity.ok(response);
+
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error during login for email: {}", body.get("email"), e);
             return ResponseEntity.status(500).body("Internal server error during login");
         }
     }
 
+    /**
+     * Exchange a refresh token for a new access/refresh token pair.
+     * Refresh tokens are invalidated by a password change or a deactivated account.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody Map<String, String> body) {
+        try {
+            Optional<AccessTokenService.RefreshClaims> claims = accessTokenService.verifyRefreshToken(body.get("refreshToken"));
+            if (claims.isEmpty()) {
+                return ResponseEntity.status(401).body("Invalid or expired refresh token");
+            }
+
+            Optional<User> userOpt = userService.findById(claims.get().userId());
+            if (userOpt.isEmpty()
+                    || Boolean.FALSE.equals(userOpt.get().getIsActive())
+                    || AccessTokenService.passwordVersion(userOpt.get()) != claims.get().passwordVersion()) {
+                logger.warn("Rejected refresh token for user id: {}", claims.get().userId());
+                return ResponseEntity.status(401).body("Invalid or expired refresh token");
+            }
+
+            return ResponseEntity.ok(issueTokens(userOpt.get()));
+        } catch (Exception e) {
+            logger.error("Error refreshing token", e);
+            return ResponseEntity.status(500).body("Internal server error during token refresh");
+        }
+    }
+
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody Map<String, String> body) {
         try {
@@ -85,13 +132,21 @@ public class AuthController {
             String email = body.get("email");
             String password = body.get("password");
             String phone = body.get("phone");
-            String role = body.getOrDefault("role", "customer");
+            String role = body.get("role");
 
             if (name == null || email == null || password == null) {
                 logger.warn("Missing required fields in registration request");
                 return ResponseEntity.badRequest().body("Name, email, and password are required");
             }
 
+            // Public sign-ups are customers; only an admin's token may create other roles
+            if (role == null || role.isBlank()) {
+                role = "customer";
+            } else if (!"customer".equalsIgnoreCase(role) && !userService.isAdmin()) {
+                logger.warn("Rejected registration with role '{}' for email: {}", role, email);
+                return ResponseEntity.status(403).body("Only an admin can create users with role " + role);
+            }
+
             // Check if user already exists
             if (userService.findByEmail(email).isPresent()) {
                 logger.warn("Registration failed - email already exists: {}", email);
@@ -101,7 +156,7 @@ public class AuthController {
             User user = new User();
             user.setName(name);
             user.setEmail(email);
-            user.setPasswordHash(passwordEncoder.encode(password));
+            user.setPasswordHash(passwordHashingService.encode(password));
             user.setPhone(phone);
             user.setRole(role);
 
@@ -111,9 +166,20 @@ public class AuthController {
             return ResponseEntity.ok(Map.of(
                     "message", "User registered successfully",
                     "userId", savedUser.getId()));
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error during registration for email: {}", body.get("email"), e);
             return ResponseEntity.status(500).body("Internal server error during registration");
         }
     }
-}
\ No newline at end of file
+
+    private Map<String, Object> issueTokens(User user) {
+        Map<String, Object> tokens = new LinkedHashMap<>();
+        tokens.put("accessToken", accessTokenService.issueAccessToken(user));
+        tokens.put("refreshToken", accessTokenService.issueRefreshToken(user));
+        tokens.put("tokenType", "Bearer");
+        tokens.put("expiresIn", accessTokenService.getAccessTtlSeconds());
+        return tokens;
+    }
+}
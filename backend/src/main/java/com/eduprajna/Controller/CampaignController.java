@@ -0,0 +1,72 @@
+package com.eduprajna.controller;
+
+import com.eduprajna.service.CampaignService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+/**
+ * Bulk email campaigns (admin bearer token required, see SecurityConfig). Create a
+ * campaign, then start it; progress is in sentCount, failedCount and status of
+ * GET /api/admin/campaigns/{id}.
+ */
+@RestController
+@RequestMapping("/api/admin/campaigns")
+public class CampaignController {
+
+    private final CampaignService campaignService;
+
+    public CampaignController(CampaignService campaignService) {
+        this.campaignService = campaignService;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> list() {
+        return ResponseEntity.ok(campaignService.findAll());
+    }
+
+    /**
+     * Body: name, subject, content (paragraphs separated by blank lines), and optionally
+     * template (default newsletter.html), audience (SUBSCRIBERS or CUSTOMERS) and ratePerSecond
+     */
+    @PostMapping
+    public ResponseEntity<?> create(@RequestBody Map<String, Object> body) {
+        return handle(() -> ResponseEntity.status(HttpStatus.CREATED).body(campaignService.create(body)));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> get(@PathVariable Long id) {
+        return handle(() -> ResponseEntity.ok(campaignService.get(id)));
+    }
+
+    @PostMapping("/{id}/start")
+    public ResponseEntity<?> start(@PathVariable Long id) {
+        return handle(() -> ResponseEntity.ok(campaignService.start(id)));
+    }
+
+    @PostMapping("/{id}/pause")
+    public ResponseEntity<?> pause(@PathVariable Long id) {
+        return handle(() -> ResponseEntity.ok(campaignService.pause(id)));
+    }
+
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<?> cancel(@PathVariable Long id) {
+        return handle(() -> ResponseEntity.ok(campaignService.cancel(id)));
+    }
+
+    private ResponseEntity<?> handle(Supplier<ResponseEntity<?>> action) {
+        try {
+            return action.get();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package com.eduprajna.controller;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +15,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.eduprajna.dto.CartBulkAddResult;
 import com.eduprajna.dto.CartItemDTO;
 import com.eduprajna.entity.CartItem;
 import com.eduprajna.entity.User;
@@ -26,6 +27,7 @@ import com.eduprajna.service.UserService;
 @CrossOrigin(origins = { "http://localhost:3000", "http://127.0.0.1:3000" }, allowCredentials = "true")
 public class CartController {
     private static final Logger logger = LoggerFactory.getLogger(CartController.class);
+    private static final int MAX_BULK_ITEMS = 200;
 
     private final CartService cartService;
     private final UserService userService;
@@ -36,7 +38,7 @@ public class CartController {
     }
 
     private User requireUser(String email) {
-        return userService.findByEmail(email)
+        return userService.findCurrentUser(email)
                 .orElseThrow(() -> new RuntimeException("User not found: " + email));
     }
 
@@ -57,19 +59,17 @@ public class CartController {
     }
 
     @GetMapping
-    public ResponseEntity<?> getCart(@RequestParam("email") String email) {
+    public ResponseEntity<?> getCart(@RequestParam(value = "email", required = false) String email) {
         try {
             logger.debug("Getting cart for user: {}", email);
 
-            if (email == null || email.trim().isEmpty()) {
+            if (!userService.isIdentified(email)) {
                 logger.warn("Empty email provided for cart request");
                 return ResponseEntity.badRequest().body("Email is required");
             }
 
             User user = requireUser(email);
-            List<CartItemDTO> items = cartService.getCart(user).stream()
-                    .map(this::toDTO)
-                    .collect(Collectors.toList());
+            List<CartItemDTO> items = cartService.getCartView(user);
 
             logger.debug("Retrieved {} cart items for user: {}", items.size(), email);
             return ResponseEntity.ok(items);
@@ -83,11 +83,11 @@ public class CartController {
     }
 
     @PostMapping("/add")
-    public ResponseEntity<?> addToCart(@RequestParam("email") String email, @RequestBody Map<String, Object> body) {
+    public ResponseEntity<?> addToCart(@RequestParam(value = "email", required = false) String email, @RequestBody Map<String, Object> body) {
         try {
             logger.debug("Adding item to cart for user: {}", email);
 
-            if (email == null || email.trim().isEmpty()) {
+            if (!userService.isIdentified(email)) {
                 return ResponseEntity.badRequest().body("Email is required");
             }
 
@@ -141,13 +141,81 @@ public class CartController {
         }
     }
 
+    /**
+     * Add many items in one request (used to merge the guest cart on login)
+     * Body: { "items": [ { "productId": 1, "variantId": 3, "qty": 2 }, ... ] }
+     * Items accept the same optional fields as /add (variant, weightValue, weightUnit, price).
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<?> addAllToCart(@RequestParam(value = "email", required = false) String email,
+            @RequestBody Map<String, Object> body) {
+        try {
+            if (!userService.isIdentified(email)) {
+                return ResponseEntity.badRequest().body("Email is required");
+            }
+            if (!(body.get("items") instanceof List<?> rawItems)) {
+                return ResponseEntity.badRequest().body("items must be a list");
+            }
+            if (rawItems.size() > MAX_BULK_ITEMS) {
+                return ResponseEntity.badRequest().body("At most " + MAX_BULK_ITEMS + " items per request");
+            }
+
+            List<CartService.BulkLine> lines = new ArrayList<>(rawItems.size());
+            for (Object raw : rawItems) {
+                if (!(raw instanceof Map<?, ?> item)) {
+                    return ResponseEntity.badRequest().body("Each item must be an object");
+                }
+                Object qty = item.get("qty") != null ? item.get("qty") : item.get("quantity");
+                lines.add(new CartService.BulkLine(
+                        parseProductId(item.get("productId")),
+                        item.get("variantId") instanceof Number n ? n.longValue() : null,
+                        qty instanceof Number n ? n.intValue() : 1,
+                        item.get("variant") instanceof String s ? s : null,
+                        item.get("weightValue") instanceof Number n ? n.doubleValue() : null,
+                        item.get("weightUnit") instanceof String s ? s : null,
+                        item.get("price") instanceof Number n ? n.doubleValue() : null));
+            }
+
+            User user = requireUser(email);
+            CartBulkAddResult result = cartService.addAllToCart(user, lines);
+            result.items = cartService.getCartView(user);
+
+            logger.info("Bulk cart add for user {}: {} added, {} merged, {} rejected",
+                    email, result.added, result.merged, result.rejected.size());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Bad request while bulk adding to cart: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            logger.warn("Validation failed while bulk adding to cart: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Error bulk adding to cart for user: {}", email, e);
+            return ResponseEntity.status(404).body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error bulk adding to cart for user: {}", email, e);
+            return ResponseEntity.status(500).body("Internal server error while adding to cart");
+        }
+    }
+
+    // Accepts numeric ids and strings like "2-default"
+    private static Long parseProductId(Object productIdObj) {
+        if (productIdObj instanceof Number n) {
+            return n.longValue();
+        }
+        if (productIdObj instanceof String s) {
+            return Long.parseLong(s.split("-")[0]);
+        }
+        return null;
+    }
+
     @PostMapping("/update")
-    public ResponseEntity<?> updateQuantity(@RequestParam("email") String email,
+    public ResponseEntity<?> updateQuantity(@RequestParam(value = "email", required = false) String email,
             @RequestBody Map<String, Object> body) {
         try {
             logger.debug("Updating cart quantity for user: {}", email);
 
-            if (email == null || email.trim().isEmpty()) {
+            if (!userService.isIdentified(email)) {
                 return ResponseEntity.badRequest().body("Email is required");
             }
 
@@ -180,11 +248,11 @@ public class CartController {
     }
 
     @PostMapping("/remove")
-    public ResponseEntity<?> remove(@RequestParam("email") String email, @RequestBody Map<String, Object> body) {
+    public ResponseEntity<?> remove(@RequestParam(value = "email", required = false) String email, @RequestBody Map<String, Object> body) {
         try {
             logger.debug("Removing item from cart for user: {}", email);
 
-            if (email == null || email.trim().isEmpty()) {
+            if (!userService.isIdentified(email)) {
                 return ResponseEntity.badRequest().body("Email is required");
             }
 
@@ -193,8 +261,9 @@ public class CartController {
             }
 
             Long productId = ((Number) body.get("productId")).longValue();
+            Long variantId = body.get("variantId") != null ? ((Number) body.get("variantId")).longValue() : null;
             User user = requireUser(email);
-            cartService.removeItem(user, productId);
+            cartService.removeItem(user, productId, variantId);
 
             logger.info("Removed product {} from cart for user: {}", productId, email);
             return ResponseEntity.noContent().build();
@@ -18,7 +18,6 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * CheckoutController handles the multi-step checkout process
@@ -26,7 +25,8 @@ import java.util.stream.Collectors;
  * Flow:
  * 1. POST /selection - Save user's checkout selections (address, delivery,
  * payment)
- * 2. GET /review - Get order review with all details
+ * 2. GET /review - Get order review with all details (POST /prices/acknowledge
+ * clears the repriced-line flags it reports)
  * 3. POST /place-order - Place the order transactionally
  */
 @RestController
@@ -55,10 +55,10 @@ public class CheckoutController {
      * Helper method to validate and get user by email
      */
     private User requireUser(String email) {
-        if (email == null || email.trim().isEmpty()) {
+        if (!userService.isIdentified(email)) {
             throw new IllegalArgumentException("Email is required");
         }
-        return userService.findByEmail(email)
+        return userService.findCurrentUser(email)
                 .orElseThrow(() -> new RuntimeException("User not found: " + email));
     }
 
@@ -67,7 +67,7 @@ public class CheckoutController {
      * This endpoint is called at each step of the checkout process
      */
     @PostMapping("/selection")
-    public ResponseEntity<?> saveSelection(@RequestParam("email") String email, @RequestBody Map<String, Object> body) {
+    public ResponseEntity<?> saveSelection(@RequestParam(value = "email", required = false) String email, @RequestBody Map<String, Object> body) {
         try {
             logger.debug("Saving checkout selection for user: {}", email);
 
@@ -151,7 +151,7 @@ public class CheckoutController {
      * This endpoint is called before placing the order to show final review
      */
     @GetMapping("/review")
-    public ResponseEntity<?> review(@RequestParam("email") String email) {
+    public ResponseEntity<?> review(@RequestParam(value = "email", required = false) String email) {
         try {
             logger.debug("Getting order review for user: {}", email);
 
@@ -190,25 +190,12 @@ public class CheckoutController {
                 return ResponseEntity.badRequest().body("No payment method selected. Please choose payment method.");
             }
 
-            // 7. Get cart items
-            List<CartItem> cart = cartService.getCart(user);
-            if (cart == null || cart.isEmpty()) {
+            // 7-8. Get cart items as DTOs (single projection query)
+            List<CartItemDTO> items = cartService.getCartView(user);
+            if (items.isEmpty()) {
                 return ResponseEntity.badRequest().body("Your cart is empty. Please add items before checkout.");
             }
 
-            // 8. Map cart items to DTOs
-            List<CartItemDTO> items = cart.stream().map(ci -> {
-                CartItemDTO dto = new CartItemDTO();
-                dto.id = ci.getId();
-                dto.productId = ci.getProduct().getId();
-                dto.name = ci.getProduct().getName();
-                dto.imageUrl = ci.getProduct().getImageUrl();
-                dto.quantity = ci.getQuantity();
-                dto.price = ci.getPriceAtAdd();
-                dto.lineTotal = (ci.getPriceAtAdd() != null ? ci.getPriceAtAdd() : 0.0) * ci.getQuantity();
-                return dto;
-            }).collect(Collectors.toList());
-
             // 9. Calculate totals
             double subtotal = items.stream().mapToDouble(i -> i.lineTotal).sum();
             double shippingFee = "express".equalsIgnoreCase(selection.getDeliveryOption()) ? 100.0 : 50.0;
@@ -223,6 +210,8 @@ public class CheckoutController {
             reviewDTO.subtotal = subtotal;
             reviewDTO.shippingFee = shippingFee;
             reviewDTO.total = total;
+            // Flags stay set until the customer acknowledges them (or places the order)
+            reviewDTO.pricesChanged = items.stream().anyMatch(i -> Boolean.TRUE.equals(i.priceChanged));
 
             logger.info("Order review generated for user: {} with {} items, total: {}",
                     email, items.size(), total);
@@ -240,13 +229,32 @@ public class CheckoutController {
         }
     }
 
+    /**
+     * Acknowledge repriced cart lines: clears their price-changed flags once the customer
+     * has seen the new prices
+     */
+    @PostMapping("/prices/acknowledge")
+    public ResponseEntity<?> acknowledgePrices(@RequestParam(value = "email", required = false) String email) {
+        try {
+            User user = requireUser(email);
+            cartService.acknowledgePriceChanges(user);
+            return ResponseEntity.ok(Map.of("message", "Price changes acknowledged"));
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid request for user: {}", email, e);
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Error acknowledging price changes for user: {}", email, e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
     /**
      * Place order transactionally
      * This endpoint finalizes the order and clears the cart
      */
     @PostMapping("/place-order")
     @Transactional
-    public ResponseEntity<?> placeOrder(@RequestParam("email") String email) {
+    public ResponseEntity<?> placeOrder(@RequestParam(value = "email", required = false) String email) {
         try {
             logger.debug("Placing order for user: {}", email);
 
@@ -1,7 +1,13 @@
 package com.eduprajna.controller;
 
+import com.eduprajna.entity.User;
+import com.eduprajna.service.EmailOutboxService;
 import com.eduprajna.service.EmailService;
+import com.eduprajna.service.NewsletterService;
+import com.eduprajna.service.OrderService;
+import com.eduprajna.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,6 +22,18 @@ public class EmailController {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private NewsletterService newsletterService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private UserService userService;
+
     @PostMapping("/send-contact-thankyou")
     public ResponseEntity<?> sendContactThankYou(@RequestBody Map<String, String> payload) {
         String name = payload.get("name");
@@ -38,10 +56,19 @@ public class EmailController {
     public ResponseEntity<?> sendSubscriptionConfirmation(@RequestBody Map<String, String> payload) {
         String email = payload.get("email");
 
-        if (email == null) {
+        if (email == null || email.isBlank()) {
             return ResponseEntity.badRequest().body(Map.of("message", "Email is required"));
         }
 
+        if (newsletterService.subscribe(email) == NewsletterService.SubscribeResult.CONFIRMATION_REQUIRED) {
+            // Opted out earlier: only the owner of the address can undo that
+            boolean sent = emailService.sendResubscribeConfirmation(email, newsletterService.resubscribeUrl(email));
+            if (!sent) {
+                return ResponseEntity.internalServerError()
+                        .body(Map.of("message", "Failed to send email. Check backend logs."));
+            }
+            return ResponseEntity.ok(Map.of("message", "Please confirm your subscription from the email we sent"));
+        }
         boolean sent = emailService.sendSubscriptionConfirmation(email);
         if (sent) {
             return ResponseEntity.ok(Map.of("message", "Subscription email sent successfully"));
@@ -51,24 +78,70 @@ public class EmailController {
         }
     }
 
+    /**
+     * Queue the confirmation of an order again. Orders send their own confirmation when
+     * placed; this only resends it, and always to the account that placed the order.
+     */
     @PostMapping("/send-confirmation")
-    public ResponseEntity<?> sendOrderConfirmation(@RequestBody Map<String, Object> payload) {
+    public ResponseEntity<?> sendOrderConfirmation(@RequestBody Map<String, Object> payload,
+            @RequestParam(value = "email", required = false) String email) {
+        Long orderId;
         try {
-            if (!payload.containsKey("email") || !payload.containsKey("items")) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("success", false, "message", "Email and items are required"));
-            }
+            orderId = Long.valueOf(String.valueOf(payload.get("orderId")).trim());
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "orderId is required"));
+        }
+        User caller = userService.findCurrentUser(email).orElse(null);
+        if (!orderService.canAccess(orderId, caller)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("success", false, "message", "Order not found"));
+        }
+        // placeOrder already queued one; a resend only makes sense once that has gone out (or died)
+        if (emailOutboxService.isQueued("order-confirmation", orderId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("success", false, "message", "A confirmation email for this order is already queued"));
+        }
+        if (orderService.resendConfirmation(orderId)) {
+            return ResponseEntity.ok(Map.of("success", true, "message", "Confirmation email sent"));
+        }
+        return ResponseEntity.internalServerError().body(
+                Map.of("success", false, "message", "Failed to send confirmation email. Check backend logs."));
+    }
 
-            boolean sent = emailService.sendOrderConfirmation(payload);
-            if (sent) {
-                return ResponseEntity.ok(Map.of("success", true, "message", "Confirmation email sent"));
-            } else {
-                return ResponseEntity.internalServerError().body(
-                        Map.of("success", false, "message", "Failed to send confirmation email. Check backend logs."));
-            }
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                    .body(Map.of("success", false, "message", "Error: " + e.getMessage()));
+    // Put messages that ran out of delivery attempts back in the outbox (admin only)
+    @PostMapping("/admin/email-outbox/requeue-dead")
+    public ResponseEntity<?> requeueDeadEmails() {
+        int requeued = emailOutboxService.requeueDead();
+        return ResponseEntity.ok(Map.of("requeued", requeued));
+    }
+
+    // Link in campaign emails; signed, so it only works for the address it was sent to
+    @GetMapping("/newsletter/unsubscribe")
+    public ResponseEntity<?> unsubscribe(@RequestParam("email") String email, @RequestParam("token") String token) {
+        if (!newsletterService.unsubscribe(email, token)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Invalid unsubscribe link"));
+        }
+        return ResponseEntity.ok(Map.of("message", "You have been unsubscribed from our newsletter"));
+    }
+
+    // One-click unsubscribe (RFC 8058): mail clients POST "List-Unsubscribe=One-Click" to the
+    // List-Unsubscribe url, so email and token arrive in the query string
+    @PostMapping("/newsletter/unsubscribe")
+    public ResponseEntity<?> unsubscribeOneClick(@RequestParam("email") String email,
+            @RequestParam("token") String token) {
+        if (!newsletterService.unsubscribe(email, token)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Invalid unsubscribe link"));
+        }
+        return ResponseEntity.ok(Map.of("message", "You have been unsubscribed from our newsletter"));
+    }
+
+    // Link in the resubscribe confirmation email
+    @GetMapping("/newsletter/confirm")
+    public ResponseEntity<?> confirmResubscribe(@RequestParam("email") String email,
+            @RequestParam("expires") long expires, @RequestParam("token") String token) {
+        if (!newsletterService.confirmResubscribe(email, expires, token)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Invalid or expired confirmation link"));
         }
+        return ResponseEntity.ok(Map.of("message", "You are subscribed to our newsletter again"));
     }
 }
@@ -1,28 +1,41 @@
 package com.eduprajna.controller;
 
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.util.UriUtils;
+
+import com.eduprajna.service.StaticAssetService;
 
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.DispatcherType;
 
 @Controller
 public class FrontendController {
-    
+
+    @Autowired
+    private StaticAssetService staticAssetService;
+
     /**
-     * Forward specific frontend routes to index.html for React Router
-     * CRITICAL: Do NOT use /** pattern - it causes infinite loops with /api requests
+     * Answer frontend routes with index.html for React Router (served from memory, no forward)
+     * CRITICAL: Do NOT use /** pattern - it would swallow /api requests
      * Instead, only handle specific frontend routes that aren't API/static/resources
      */
-    @RequestMapping(value = {"/", "/about", "/contact", "/categories", "/products", "/checkout", "/account", "/wishlist", "/{path:[a-z-]+}", "/{path:[a-z-]+}/{subpath:[a-z0-9-]+}"})
-    public String forward(HttpServletRequest request) {
-
-        // Prevent recursive FORWARD dispatches
-        if (request.getDispatcherType() == DispatcherType.FORWARD) {
-            return null;
-        }
+    @RequestMapping(value = {"/", "/index.html", "/about", "/contact", "/categories", "/products", "/checkout", "/account", "/wishlist", "/{path:[a-z-]+}", "/{path:[a-z-]+}/{subpath:[a-z0-9-]+}"})
+    public ResponseEntity<byte[]> index(HttpServletRequest request) {
+        return staticAssetService.index(request);
+    }
 
-        // Forward client-side routes to React index.html
-        return "forward:/index.html";
+    /**
+     * Build output: hashed bundles under /assets plus top-level files (favicon.ico, robots.txt, ...)
+     */
+    @GetMapping({"/assets/**", "/{file:[A-Za-z0-9_-]+\\.[a-z0-9]+}"})
+    public ResponseEntity<Resource> asset(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length() + 1);
+        return staticAssetService.serve(UriUtils.decode(path, StandardCharsets.UTF_8), request);
     }
-}
\ No newline at end of file
+}
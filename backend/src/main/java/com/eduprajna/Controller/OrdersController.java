@@ -1,16 +1,32 @@
 package com.eduprajna.controller;
 
+import com.eduprajna.dto.BulkStatusUpdateResult;
 import com.eduprajna.dto.OrderDTO;
 import com.eduprajna.entity.Order;
 import com.eduprajna.entity.User;
+import com.eduprajna.service.InvoiceService;
+import com.eduprajna.service.OrderArchiveService;
 import com.eduprajna.service.OrderService;
 import com.eduprajna.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -51,30 +67,41 @@ public class OrdersController {
 
     private static final Logger logger = LoggerFactory.getLogger(OrdersController.class);
 
+    private static final List<String> VALID_STATUSES = List.of("pending", "processing", "shipped", "delivered", "cancelled");
+    // Upper bound on orders accepted by one bulk status request
+    private static final int MAX_BULK_ORDERS = 10000;
+
     private final OrderService orderService;
     private final UserService userService;
+    private final OrderArchiveService orderArchiveService;
+    private final InvoiceService invoiceService;
 
-    public OrdersController(OrderService orderService, UserService userService) {
+    public OrdersController(OrderService orderService, UserService userService,
+            OrderArchiveService orderArchiveService, InvoiceService invoiceService) {
         this.orderService = orderService;
         this.userService = userService;
+        this.orderArchiveService = orderArchiveService;
+        this.invoiceService = invoiceService;
     }
 
     /**
      * Get all orders for a specific user
      * 
-     * @param email User's email address
+     * @param email           User's email address
+     * @param includeArchived Also return orders moved to the archive tables
      * @return List of user's orders or error message
      */
     @GetMapping("/user")
-    public ResponseEntity<?> getUserOrders(@RequestParam("email") String email) {
+    public ResponseEntity<?> getUserOrders(@RequestParam(value = "email", required = false) String email,
+            @RequestParam(value = "includeArchived", defaultValue = "false") boolean includeArchived) {
         try {
             logger.debug("Getting orders for user: {}", email);
 
-            if (email == null || email.trim().isEmpty()) {
+            if (!userService.isIdentified(email)) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Email is required"));
             }
 
-            User user = userService.findByEmail(email)
+            User user = userService.findCurrentUser(email)
                     .orElseThrow(() -> new RuntimeException("User not found with email: " + email));
 
             List<Order> orders = orderService.getUserOrders(user);
@@ -85,6 +112,11 @@ public class OrdersController {
                     .map(OrderDTO::new)
                     .collect(Collectors.toList());
 
+            // Archived orders are always older than the hot ones, so they go last
+            if (includeArchived) {
+                orderDTOs.addAll(orderArchiveService.findArchivedOrdersByUser(user.getId()));
+            }
+
             return ResponseEntity.ok(orderDTOs);
 
         } catch (RuntimeException e) {
@@ -144,10 +176,9 @@ public class OrdersController {
             }
 
             // Validate status values
-            List<String> validStatuses = List.of("pending", "processing", "shipped", "delivered", "cancelled");
-            if (!validStatuses.contains(newStatus.toLowerCase())) {
+            if (!VALID_STATUSES.contains(newStatus.toLowerCase())) {
                 return ResponseEntity.badRequest()
-                        .body(Map.of("error", "Invalid status. Valid statuses: " + validStatuses));
+                        .body(Map.of("error", "Invalid status. Valid statuses: " + VALID_STATUSES));
             }
 
             Order updatedOrder = orderService.updateStatus(orderId, newStatus.toLowerCase());
@@ -168,6 +199,127 @@ public class OrdersController {
         }
     }
 
+    /**
+     * Update the status of many orders at once (admin only)
+     * 
+     * @param body Request body: { "orderIds": [1, 2, 3], "status": "shipped" }
+     * @return Aggregated result report
+     */
+    @PostMapping("/admin/status/bulk")
+    public ResponseEntity<?> bulkUpdateStatus(@RequestBody Map<String, Object> body) {
+        try {
+            Object statusObj = body.get("status");
+            String newStatus = statusObj != null ? statusObj.toString().trim().toLowerCase() : "";
+            if (!VALID_STATUSES.contains(newStatus)) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Invalid status. Valid statuses: " + VALID_STATUSES));
+            }
+
+            if (!(body.get("orderIds") instanceof List<?> rawIds) || rawIds.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "orderIds must be a non-empty list"));
+            }
+            if (rawIds.size() > MAX_BULK_ORDERS) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "At most " + MAX_BULK_ORDERS + " orders per request"));
+            }
+
+            List<Long> orderIds = new ArrayList<>();
+            List<String> invalid = new ArrayList<>();
+            for (Object raw : rawIds) {
+                Long id = parseOrderId(raw != null ? raw.toString() : null);
+                if (id != null) {
+                    orderIds.add(id);
+                } else {
+                    invalid.add(String.valueOf(raw));
+                }
+            }
+
+            BulkStatusUpdateResult result = orderService.bulkUpdateStatus(orderIds, newStatus);
+            result.invalidRows.addAll(invalid);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            logger.error("Unexpected error during bulk status update", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Internal server error"));
+        }
+    }
+
+    /**
+     * Update the status of many orders from a CSV upload (admin only)
+     * The first column of each row is the order ID ("123" or "#123"); a header row is skipped
+     * 
+     * @param file   CSV file with one order per line
+     * @param status The new status for every listed order
+     * @return Aggregated result report
+     */
+    @PostMapping(value = "/admin/status/bulk/csv", consumes = { "multipart/form-data" })
+    public ResponseEntity<?> bulkUpdateStatusCsv(@RequestParam("file") MultipartFile file,
+            @RequestParam("status") String status) {
+        try {
+            String newStatus = status != null ? status.trim().toLowerCase() : "";
+            if (!VALID_STATUSES.contains(newStatus)) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Invalid status. Valid statuses: " + VALID_STATUSES));
+            }
+            if (file == null || file.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "CSV file is required"));
+            }
+
+            List<Long> orderIds = new ArrayList<>();
+            List<String> invalid = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                int lineNo = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNo++;
+                    String firstColumn = line.replace("\uFEFF", "").split("[,;\\t]", 2)[0].trim().replace("\"", "");
+                    if (firstColumn.isEmpty()) {
+                        continue;
+                    }
+                    Long id = parseOrderId(firstColumn);
+                    if (id != null) {
+                        if (orderIds.size() >= MAX_BULK_ORDERS) {
+                            return ResponseEntity.badRequest()
+                                    .body(Map.of("error", "At most " + MAX_BULK_ORDERS + " orders per request"));
+                        }
+                        orderIds.add(id);
+                    } else if (lineNo > 1) {
+                        // Anything unparsable after the first line is reported; the first line may be a header
+                        invalid.add("line " + lineNo + ": " + firstColumn);
+                    }
+                }
+            }
+
+            BulkStatusUpdateResult result = orderService.bulkUpdateStatus(orderIds, newStatus);
+            result.invalidRows.addAll(invalid);
+            return ResponseEntity.ok(result);
+        } catch (IOException e) {
+            logger.error("Failed to read bulk status CSV", e);
+            return ResponseEntity.badRequest().body(Map.of("error", "Could not read CSV file"));
+        } catch (Exception e) {
+            logger.error("Unexpected error during bulk status CSV update", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Internal server error"));
+        }
+    }
+
+    private Long parseOrderId(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String value = raw.trim();
+        if (value.startsWith("#")) {
+            value = value.substring(1);
+        }
+        try {
+            long id = Long.parseLong(value);
+            return id > 0 ? id : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * Get a specific order by ID
      * 
@@ -183,7 +335,13 @@ public class OrdersController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid order ID"));
             }
 
-            Order order = orderService.getOrderById(orderId);
+            Order order = orderService.findOrderById(orderId).orElse(null);
+            if (order == null) {
+                // Fall back to the archive only when the order is not in the hot table
+                return orderArchiveService.findArchivedOrder(orderId)
+                        .<ResponseEntity<?>>map(ResponseEntity::ok)
+                        .orElseThrow(() -> new RuntimeException("Order not found with ID: " + orderId));
+            }
             logger.info("Retrieved order: {}", orderId);
 
             // Convert to DTO to avoid circular references
@@ -201,14 +359,71 @@ public class OrdersController {
         }
     }
 
+    /**
+     * Download the invoice PDF of an order
+     * Served from the invoice cache, rendering it first when needed
+     * 
+     * @param orderId ID of the order
+     * @param email   Caller's email (legacy identification when no bearer token is sent)
+     * @return The PDF, 304 when the client's copy is current, or 404
+     */
+    @GetMapping("/{orderId}/invoice")
+    public ResponseEntity<?> downloadInvoice(@PathVariable Long orderId,
+            @RequestParam(value = "email", required = false) String email,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (orderId == null || orderId <= 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid order ID"));
+        }
+        // Only the customer who placed the order, or an admin; others get the same 404 as a missing order
+        User caller = userService.findCurrentUser(email).orElse(null);
+        if (!orderService.canAccess(orderId, caller)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Order not found with ID: " + orderId));
+        }
+        // TooManyRequestsException (render pool saturated) is mapped by GlobalExceptionHandler
+        InvoiceService.Invoice invoice = invoiceService.getInvoice(orderId).orElse(null);
+        if (invoice == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Order not found with ID: " + orderId));
+        }
+        String etag = "\"" + invoice.version() + "\"";
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(invoice.filename()).build().toString())
+                .body(new FileSystemResource(invoice.path()));
+    }
+
+    /**
+     * Render the invoices of all orders placed on a day (admin only)
+     * 
+     * @param date Day in ISO format (yyyy-MM-dd); defaults to yesterday
+     * @return Counts of orders, ready and failed invoices
+     */
+    @PostMapping("/admin/invoices/batch")
+    public ResponseEntity<?> renderInvoices(@RequestParam(value = "date", required = false) String date) {
+        LocalDate day;
+        try {
+            day = date != null ? LocalDate.parse(date) : LocalDate.now().minusDays(1);
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid date, expected yyyy-MM-dd"));
+        }
+        return ResponseEntity.ok(invoiceService.renderDay(day));
+    }
+
     /**
      * Get orders by status (admin only)
      * 
-     * @param status Status to filter by
+     * @param status          Status to filter by
+     * @param includeArchived Also return orders moved to the archive tables
      * @return List of orders with the specified status
      */
     @GetMapping("/admin/status/{status}")
-    public ResponseEntity<?> getOrdersByStatus(@PathVariable String status) {
+    public ResponseEntity<?> getOrdersByStatus(@PathVariable String status,
+            @RequestParam(value = "includeArchived", defaultValue = "false") boolean includeArchived) {
         try {
             logger.debug("Getting orders by status: {}", status);
 
@@ -224,6 +439,10 @@ public class OrdersController {
                     .map(OrderDTO::new)
                     .collect(Collectors.toList());
 
+            if (includeArchived) {
+                orderDTOs.addAll(orderArchiveService.findArchivedOrdersByStatus(status.toLowerCase()));
+            }
+
             return ResponseEntity.ok(orderDTOs);
 
         } catch (Exception e) {
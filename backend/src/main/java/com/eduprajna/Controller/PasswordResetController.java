@@ -1,5 +1,6 @@
 package com.eduprajna.controller;
 
+import com.eduprajna.exception.TooManyRequestsException;
 import com.eduprajna.service.PasswordResetService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -140,6 +141,8 @@ public class PasswordResetController {
                 response.put("message", "Failed to reset password. Token may be invalid or expired.");
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
             }
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error in resetPassword endpoint", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -149,7 +152,7 @@ public class PasswordResetController {
     
     /**
      * POST /api/password/send-credentials
-     * Send forgotten username and temporary password to email
+     * Send forgotten username and a link to set a new password to email
      * 
      * Body: { "email": "user@example.com" }
      * Response: { "success": true/false, "message": "..." }
@@ -169,7 +172,7 @@ public class PasswordResetController {
             Map<String, Object> response = new HashMap<>();
             if (success) {
                 response.put("success", true);
-                response.put("message", "Your username and temporary password have been sent to your email. Please check your inbox and login with the temporary password.");
+                response.put("message", "Your username and a link to set a new password have been sent to your email. Please check your inbox.");
                 response.put("email", email);
                 logger.info("Credentials sent to email: {}", email);
                 return ResponseEntity.ok(response);
@@ -178,6 +181,8 @@ public class PasswordResetController {
                 response.put("message", "Email not found in our system or failed to send email");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
             }
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error in sendForgottenCredentials endpoint", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -53,13 +53,13 @@ public class PaymentController {
     }
 
     @PostMapping("/create-order")
-    public ResponseEntity<?> createOrder(@RequestParam("email") String email) {
+    public ResponseEntity<?> createOrder(@RequestParam(value = "email", required = false) String email) {
         try {
-            if (email == null || email.trim().isEmpty()) {
+            if (!userService.isIdentified(email)) {
                 return ResponseEntity.badRequest().body("Email is required");
             }
 
-            User user = userService.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.findCurrentUser(email).orElseThrow(() -> new RuntimeException("User not found"));
 
             // Get checkout selection
             com.eduprajna.entity.CheckoutSelection selection = selectionRepo.findByUser(user).orElse(null);
@@ -77,19 +77,19 @@ public class PaymentController {
             }
 
             // Get cart and compute totals
-            java.util.List<com.eduprajna.entity.CartItem> cart = cartService.getCart(user);
-            if (cart == null || cart.isEmpty()) {
+            java.util.List<com.eduprajna.dto.CartItemDTO> cart = cartService.getCartView(user);
+            if (cart.isEmpty()) {
                 return ResponseEntity.badRequest().body("Your cart is empty. Please add items before checkout.");
             }
 
-            // Calculate subtotal using cart item prices, with fallback to product price
+            // Calculate subtotal using cart item prices, with fallback to the current catalog price
             double subtotal = 0.0;
-            for (com.eduprajna.entity.CartItem ci : cart) {
-                double price = ci.getPriceAtAdd() != null && ci.getPriceAtAdd() > 0 ? ci.getPriceAtAdd()
-                        : (ci.getProduct().getPrice() != null ? ci.getProduct().getPrice().doubleValue() : 0.0);
-                subtotal += price * ci.getQuantity();
+            for (com.eduprajna.dto.CartItemDTO ci : cart) {
+                double price = ci.price != null && ci.price > 0 ? ci.price
+                        : (ci.currentPrice != null ? ci.currentPrice : 0.0);
+                subtotal += price * ci.quantity;
                 logger.debug("Cart item: product={}, quantity={}, price={}, line_total={}",
-                        ci.getProduct().getName(), ci.getQuantity(), price, price * ci.getQuantity());
+                        ci.name, ci.quantity, price, price * ci.quantity);
             }
             logger.debug("Calculated subtotal: {}", subtotal);
 
@@ -127,7 +127,7 @@ public class PaymentController {
             String rzpOrderId = body.get("razorpay_order_id");
             String rzpSignature = body.get("razorpay_signature");
 
-            if (email == null || rzpPaymentId == null || rzpOrderId == null || rzpSignature == null) {
+            if (!userService.isIdentified(email) || rzpPaymentId == null || rzpOrderId == null || rzpSignature == null) {
                 return ResponseEntity.badRequest().body("Missing required fields");
             }
 
@@ -135,7 +135,7 @@ public class PaymentController {
             razorpayService.verifySignature(rzpPaymentId, rzpOrderId, rzpSignature);
 
             // Place the application order (this will clear cart and decrement stock)
-            User user = userService.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.findCurrentUser(email).orElseThrow(() -> new RuntimeException("User not found"));
             Order placed = orderService.placeOrder(user);
 
             // Update order with payment data
@@ -2,30 +2,39 @@ package com.eduprajna.controller;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.eduprajna.dto.UploadSessionDTO;
+import com.eduprajna.dto.UploadedFilePageDTO;
 import com.eduprajna.entity.Product;
 import com.eduprajna.entity.ProductVariant;
+import com.eduprajna.service.FileServingService;
 import com.eduprajna.service.ProductService;
 import com.eduprajna.service.StorageService;
+import com.eduprajna.service.StreamingUploadService;
+import com.eduprajna.service.UploadCatalogService;
+import com.eduprajna.service.UploadGarbageCollector;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
 @RequestMapping("/api/admin/products")
@@ -37,6 +46,18 @@ public class ProductController {
     @Autowired
     private StorageService storageService;
 
+    @Autowired
+    private FileServingService fileServingService;
+
+    @Autowired
+    private UploadCatalogService uploadCatalogService;
+
+    @Autowired
+    private UploadGarbageCollector uploadGarbageCollector;
+
+    @Autowired
+    private StreamingUploadService streamingUploadService;
+
     // Get all product variants (for admin and user)
     @GetMapping("/variants")
     public ResponseEntity<List<ProductVariant>> getAllVariants() {
@@ -101,35 +122,100 @@ public class ProductController {
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable Long id) {
-        // Load product to get image URL before deleting DB row
-        try {
-            Product existing = productService.getById(id);
-            if (existing != null && existing.getImageUrl() != null) {
-                String filename = storageService.extractFilenameFromUrl(existing.getImageUrl());
-                if (filename != null) {
-                    storageService.delete(filename);
-                }
-            }
-        } catch (Exception ignored) {
-            // Ignore errors during image deletion; proceed to delete DB row
-        }
+        // Releases the image reference; unreferenced files are removed by the upload GC
         productService.delete(id);
         return ResponseEntity.noContent().build();
     }
 
     // Serve uploaded images via API so frontend can display them
     @GetMapping("/images/{filename:.+}")
-    public ResponseEntity<Resource> getImage(@PathVariable String filename) throws IOException {
+    public ResponseEntity<Resource> getImage(@PathVariable String filename,
+            @RequestParam(value = "w", required = false) Integer width, HttpServletRequest request)
+            throws IOException {
         // If filename contains path separators, extract just the filename
         if (filename.contains("/")) {
             filename = filename.substring(filename.lastIndexOf('/') + 1);
         }
-        Resource resource = storageService.loadAsResource(filename);
-        MediaType contentType = storageService.probeMediaType(filename);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CACHE_CONTROL, "max-age=86400, public")
-                .contentType(contentType)
-                .body(resource);
+        return fileServingService.serve(filename, width, request);
+    }
+
+    // Content-addressed images: /images/ab/cd/<sha256>.<ext>
+    @GetMapping("/images/{shard1:[0-9a-f]{2}}/{shard2:[0-9a-f]{2}}/{filename:[0-9a-f]{64}\\.[a-z0-9]+}")
+    public ResponseEntity<Resource> getContentAddressedImage(@PathVariable String shard1,
+            @PathVariable String shard2, @PathVariable String filename,
+            @RequestParam(value = "w", required = false) Integer width, HttpServletRequest request)
+            throws IOException {
+        return fileServingService.serve(shard1 + "/" + shard2 + "/" + filename, width, request);
+    }
+
+    // Media library: paginated, filterable listing from the upload catalog
+    // e.g. /images/library?page=0&size=50&type=image/jpeg&q=diya&sort=newest|oldest|name|size
+    @GetMapping("/images/library")
+    public ResponseEntity<UploadedFilePageDTO> imageLibrary(
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "50") int size,
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "q", required = false) String query,
+            @RequestParam(value = "sort", required = false) String sort) {
+        return ResponseEntity.ok(uploadCatalogService.list(page, size, type, query, sort));
+    }
+
+    // Report of the last orphaned-image collection
+    @GetMapping("/images/gc")
+    public ResponseEntity<?> lastImageGc() {
+        UploadGarbageCollector.GcReport report = uploadGarbageCollector.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+    }
+
+    // Collect orphaned images now (dryRun=true only reports what would be trashed)
+    @PostMapping("/images/gc")
+    public ResponseEntity<?> runImageGc(@RequestParam(value = "dryRun", defaultValue = "true") boolean dryRun) {
+        UploadGarbageCollector.GcReport report = uploadGarbageCollector.run(dryRun);
+        if (report == null) {
+            return ResponseEntity.status(409).body("Image collection already running or references unavailable");
+        }
+        return ResponseEntity.ok(report);
+    }
+
+    // Streaming upload: the raw request body is the file, e.g.
+    // POST /images/stream?filename=diya.jpg with Content-Type: image/jpeg
+    @PostMapping("/images/stream")
+    public ResponseEntity<Map<String, String>> streamImage(@RequestParam("filename") String filename,
+            HttpServletRequest request) throws IOException {
+        String url = streamingUploadService.upload(filename, request.getContentLengthLong(), request.getInputStream());
+        return ResponseEntity.status(201).body(Map.of("url", url));
+    }
+
+    // Chunked, resumable uploads: open a session, PATCH chunks with Upload-Offset, then complete.
+    // After a dropped connection GET the session for the offset to resume from.
+    @PostMapping("/images/uploads")
+    public ResponseEntity<UploadSessionDTO> openUpload(@RequestParam("filename") String filename,
+            @RequestParam(value = "size", required = false) Long size) throws IOException {
+        return ResponseEntity.status(201).body(streamingUploadService.open(filename, size));
+    }
+
+    @GetMapping("/images/uploads/{id}")
+    public ResponseEntity<UploadSessionDTO> uploadStatus(@PathVariable String id) {
+        UploadSessionDTO session = streamingUploadService.status(id);
+        return ResponseEntity.ok().header("Upload-Offset", String.valueOf(session.offset)).body(session);
+    }
+
+    @PatchMapping("/images/uploads/{id}")
+    public ResponseEntity<Void> appendUpload(@PathVariable String id, @RequestHeader("Upload-Offset") long offset,
+            HttpServletRequest request) throws IOException {
+        long newOffset = streamingUploadService.append(id, offset, request.getInputStream());
+        return ResponseEntity.noContent().header("Upload-Offset", String.valueOf(newOffset)).build();
+    }
+
+    @PostMapping("/images/uploads/{id}/complete")
+    public ResponseEntity<Map<String, String>> completeUpload(@PathVariable String id) throws IOException {
+        return ResponseEntity.status(201).body(Map.of("url", streamingUploadService.complete(id)));
+    }
+
+    @DeleteMapping("/images/uploads/{id}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String id) {
+        streamingUploadService.abort(id);
+        return ResponseEntity.noContent().build();
     }
 
     // List all stored image filenames (or absolute URLs)
@@ -154,13 +240,7 @@ public class ProductController {
                 return ResponseEntity.status(404).body("Product not found");
             }
             if (imageFile != null && !imageFile.isEmpty()) {
-                // Delete old image if exists
-                if (product.getImageUrl() != null) {
-                    String oldFilename = storageService.extractFilenameFromUrl(product.getImageUrl());
-                    if (oldFilename != null) {
-                        storageService.delete(oldFilename);
-                    }
-                }
+                // save() moves the reference from the old image to the new one
                 String relativePath = storageService.store(imageFile);
                 product.setImageUrl(relativePath);
                 productService.save(product);
@@ -181,15 +261,9 @@ public class ProductController {
                 return ResponseEntity.status(404).body("Product not found");
             }
             if (product.getImageUrl() != null) {
-                String filename = storageService.extractFilenameFromUrl(product.getImageUrl());
-                if (filename != null) {
-                    boolean deleted = storageService.delete(filename);
-                    if (!deleted) {
-                        return ResponseEntity.status(500).body("Failed to delete image file: " + filename);
-                    }
-                    product.setImageUrl(null);
-                    productService.save(product);
-                }
+                // Releases the reference; the file goes once the upload GC finds it unreferenced
+                product.setImageUrl(null);
+                productService.save(product);
             }
             return ResponseEntity.noContent().build();
         } catch (Exception e) {
@@ -3,9 +3,10 @@ package com.eduprajna.controller;
 import com.eduprajna.dto.PasswordUpdateRequest;
 import com.eduprajna.dto.ProfileDTO;
 import com.eduprajna.entity.User;
+import com.eduprajna.exception.TooManyRequestsException;
+import com.eduprajna.service.PasswordHashingService;
 import com.eduprajna.service.UserService;
 import jakarta.validation.Valid;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,27 +17,26 @@ import java.util.Map;
 @CrossOrigin(origins = { "http://localhost:3000", "http://127.0.0.1:3000" }, allowCredentials = "true")
 public class ProfileController {
     private final UserService userService;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
 
-    public ProfileController(UserService userService, PasswordEncoder passwordEncoder) {
+    public ProfileController(UserService userService, PasswordHashingService passwordHashingService) {
         this.userService = userService;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
     }
 
-    // In a real app, derive email/userId from JWT. Here we accept email param for
-    // simplicity.
+    // Current user comes from the bearer token; the email param is the legacy fallback
     @GetMapping("/profile")
-    public ResponseEntity<?> getProfile(@RequestParam("email") String email) {
-        return userService.findByEmail(email)
+    public ResponseEntity<?> getProfile(@RequestParam(value = "email", required = false) String email) {
+        return userService.findCurrentUser(email)
                 .<ResponseEntity<?>>map(user -> ResponseEntity.ok(toProfileDTO(user)))
                 .orElseGet(() -> ResponseEntity.status(404).body(Map.of("message", "User not found")));
     }
 
     @PutMapping("/profile")
-    public ResponseEntity<?> updateProfile(@RequestParam("email") String email,
+    public ResponseEntity<?> updateProfile(@RequestParam(value = "email", required = false) String email,
             @RequestBody Map<String, Object> profileData) {
         try {
-            java.util.Optional<User> userOpt = userService.findByEmail(email);
+            java.util.Optional<User> userOpt = userService.findCurrentUserForUpdate(email);
             if (userOpt.isEmpty()) {
                 return ResponseEntity.status(404).body(Map.of("message", "User not found"));
             }
@@ -86,16 +86,16 @@ public class ProfileController {
     }
 
     @PostMapping("/password")
-    public ResponseEntity<?> updatePassword(@RequestParam("email") String email,
+    public ResponseEntity<?> updatePassword(@RequestParam(value = "email", required = false) String email,
             @Valid @RequestBody PasswordUpdateRequest req) {
         try {
-            return userService.findByEmail(email).map(user -> {
+            return userService.findCurrentUserForUpdate(email).map(user -> {
                 String stored = user.getPasswordHash();
                 boolean isMatch = false;
 
                 if (stored != null) {
                     if (stored.startsWith("$2")) {
-                        isMatch = passwordEncoder.matches(req.getCurrentPassword(), stored);
+                        isMatch = passwordHashingService.matches(req.getCurrentPassword(), stored);
                     } else {
                         isMatch = stored.equals(req.getCurrentPassword());
                     }
@@ -105,10 +105,12 @@ public class ProfileController {
                     return ResponseEntity.status(400).body(Map.of("message", "Current password is incorrect"));
                 }
 
-                user.setPasswordHash(passwordEncoder.encode(req.getNewPassword()));
+                user.setPasswordHash(passwordHashingService.encode(req.getNewPassword()));
                 userService.save(user);
                 return ResponseEntity.ok(Map.of("message", "Password updated successfully"));
             }).orElseGet(() -> ResponseEntity.status(404).body(Map.of("message", "User not found")));
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(500).body(Map.of("message", "Server error: " + e.getMessage()));
@@ -4,35 +4,41 @@ import java.io.IOException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.eduprajna.service.StorageService;
+import com.eduprajna.service.FileServingService;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
 @RequestMapping("/uploads")
 public class UploadController {
 
     @Autowired
-    private StorageService storageService;
+    private FileServingService fileServingService;
 
     @GetMapping("/{filename:.+}")
-    public ResponseEntity<Resource> getUpload(@PathVariable String filename) throws IOException {
+    public ResponseEntity<Resource> getUpload(@PathVariable String filename,
+            @RequestParam(value = "w", required = false) Integer width, HttpServletRequest request)
+            throws IOException {
         // If filename contains path separators, extract just the filename
         if (filename.contains("/")) {
             filename = filename.substring(filename.lastIndexOf('/') + 1);
         }
-        Resource resource = storageService.loadAsResource(filename);
-        MediaType contentType = storageService.probeMediaType(filename);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CACHE_CONTROL, "max-age=86400, public")
-                .contentType(contentType)
-                .body(resource);
+        return fileServingService.serve(filename, width, request);
+    }
+
+    // Content-addressed uploads: /uploads/ab/cd/<sha256>.<ext>
+    @GetMapping("/{shard1:[0-9a-f]{2}}/{shard2:[0-9a-f]{2}}/{filename:[0-9a-f]{64}\\.[a-z0-9]+}")
+    public ResponseEntity<Resource> getContentAddressed(@PathVariable String shard1, @PathVariable String shard2,
+            @PathVariable String filename, @RequestParam(value = "w", required = false) Integer width,
+            HttpServletRequest request) throws IOException {
+        return fileServingService.serve(shard1 + "/" + shard2 + "/" + filename, width, request);
     }
 }
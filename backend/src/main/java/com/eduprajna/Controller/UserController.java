@@ -1,60 +1,59 @@
 package com.eduprajna.controller;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.eduprajna.dto.UserSummaryDTO;
-import com.eduprajna.entity.User;
-import com.eduprajna.repository.OrderRepository;
-import com.eduprajna.repository.UserRepository;
-import com.eduprajna.repository.WishlistItemRepository;
+import com.eduprajna.service.UserSummaryService;
 
 @RestController
 @RequestMapping("/api/admin/users")
 public class UserController {
 
-    @Autowired
-    private UserRepository userRepository;
-
-    @Autowired
-    private OrderRepository orderRepository;
+    private static final int MAX_PAGE_SIZE = 200;
 
     @Autowired
-    private WishlistItemRepository wishlistItemRepository;
+    private UserSummaryService userSummaryService;
 
     @GetMapping("")
     @ResponseBody
     public List<UserSummaryDTO> getAllUsers() {
-        // Fetch only users whose role is not 'admin'
-        return userRepository.findAll()
-                .stream()
-                .filter(user -> user.getRole() == null || !user.getRole().equalsIgnoreCase("admin"))
-                .map(this::convertToUserSummaryDTO)
-                .collect(Collectors.toList());
+        // Non-admin users with order/wishlist counts computed in one grouped query
+        return userSummaryService.getAll();
     }
 
-    private UserSummaryDTO convertToUserSummaryDTO(User user) {
-        long orderCount = orderRepository.findByUserOrderByCreatedAtDesc(user).size();
-        long wishlistCount = wishlistItemRepository.countByUser(user);
-
-        return new UserSummaryDTO(
-                user.getId(),
-                user.getName(),
-                user.getEmail(),
-                user.getPhone(),
-                user.getRole(),
-                user.getCreatedAt(),
-                user.getMemberSince(),
-                user.getIsActive(),
-                orderCount,
-                wishlistCount,
-                user.getLoyaltyPoints());
+    // Paginated user list with sort/filter on the aggregated columns
+    @GetMapping("/page")
+    public ResponseEntity<?> getUsersPage(
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "25") int size,
+            @RequestParam(value = "sort", defaultValue = "id") String sort,
+            @RequestParam(value = "direction", defaultValue = "asc") String direction,
+            @RequestParam(value = "q", required = false) String query,
+            @RequestParam(value = "minOrders", required = false) Long minOrders,
+            @RequestParam(value = "minSpend", required = false) Double minSpend,
+            @RequestParam(value = "active", required = false) Boolean active) {
+        if (page < 0 || size <= 0 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "page must be >= 0 and size between 1 and " + MAX_PAGE_SIZE));
+        }
+        if (!UserSummaryService.isSortable(sort)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unsupported sort field: " + sort));
+        }
+
+        UserSummaryService.Filter filter = new UserSummaryService.Filter();
+        filter.query = query;
+        filter.minOrders = minOrders;
+        filter.minSpend = minSpend;
+        filter.active = active;
+        return ResponseEntity.ok(userSummaryService.getPage(filter, page, size, sort, !"desc".equalsIgnoreCase(direction)));
     }
-}
\ No newline at end of file
+}
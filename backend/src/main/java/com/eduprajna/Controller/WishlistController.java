@@ -1,7 +1,9 @@
 package com.eduprajna.controller;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +28,7 @@ import com.eduprajna.service.WishlistService;
 @RequestMapping("/api/wishlist")
 public class WishlistController {
     private static final Logger logger = LoggerFactory.getLogger(WishlistController.class);
+    private static final int MAX_CONTAINS_IDS = 500;
 
     @Autowired
     private WishlistService wishlistService;
@@ -34,76 +37,96 @@ public class WishlistController {
     private UserService userService;
 
     private User requireUser(String email) {
-        return userService.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found: " + email));
+        return userService.findCurrentUser(email)
+                .orElseThrow(() -> new NoSuchElementException("User not found"));
     }
 
     @GetMapping
-    public ResponseEntity<?> getWishlist(@RequestParam("email") String email) {
+    public ResponseEntity<?> getWishlist(@RequestParam(value = "email", required = false) String email) {
         try {
             logger.debug("Fetching wishlist for user: {}", email);
             User user = requireUser(email);
             List<WishlistItemDTO> items = wishlistService.getWishlist(user);
             return ResponseEntity.ok(items);
-        } catch (RuntimeException e) {
-            logger.error("Error fetching wishlist for user: {}", email, e);
-            return ResponseEntity.status(404).body("User not found");
-        } catch (Exception e) {
-            logger.error("Unexpected error fetching wishlist for user: {}", email, e);
-            return ResponseEntity.status(500).body("Internal server error");
+        } catch (NoSuchElementException e) {
+            logger.warn("Wishlist requested for unknown user: {}", email);
+            return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
     @GetMapping("/count")
-    public ResponseEntity<?> getWishlistCount(@RequestParam("email") String email) {
+    public ResponseEntity<?> getWishlistCount(@RequestParam(value = "email", required = false) String email) {
         try {
             logger.debug("Counting wishlist for user: {}", email);
             User user = requireUser(email);
             long count = wishlistService.count(user);
             return ResponseEntity.ok(count);
-        } catch (RuntimeException e) {
-            logger.error("Error counting wishlist for user: {}", email, e);
-            return ResponseEntity.status(404).body("User not found");
-        } catch (Exception e) {
-            logger.error("Unexpected error counting wishlist for user: {}", email, e);
-            return ResponseEntity.status(500).body("Internal server error");
+        } catch (NoSuchElementException e) {
+            logger.warn("Wishlist count requested for unknown user: {}", email);
+            return ResponseEntity.status(404).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Membership check for a page of products (heart icons on listing pages)
+     * Body: { "productIds": [1, 2, 3] } -> { "1": true, "2": false, "3": false }
+     */
+    @PostMapping("/contains")
+    public ResponseEntity<?> contains(@RequestParam(value = "email", required = false) String email,
+            @RequestBody Map<String, Object> body) {
+        try {
+            if (!(body.get("productIds") instanceof List<?> rawIds)) {
+                return ResponseEntity.badRequest().body("productIds must be a list");
+            }
+            if (rawIds.size() > MAX_CONTAINS_IDS) {
+                return ResponseEntity.badRequest().body("At most " + MAX_CONTAINS_IDS + " product ids per request");
+            }
+            List<Long> productIds = new ArrayList<>(rawIds.size());
+            for (Object raw : rawIds) {
+                if (raw instanceof Number n) {
+                    productIds.add(n.longValue());
+                } else if (raw instanceof String s && !s.isBlank()) {
+                    productIds.add(Long.parseLong(s.split("-")[0].trim()));
+                }
+            }
+            User user = requireUser(email);
+            return ResponseEntity.ok(wishlistService.contains(user, productIds));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body("Invalid product id");
+        } catch (NoSuchElementException e) {
+            logger.warn("Wishlist membership requested for unknown user: {}", email);
+            return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
     @PostMapping
-    public ResponseEntity<?> addToWishlist(@RequestParam("email") String email, @RequestBody Map<String, Object> body) {
+    public ResponseEntity<?> addToWishlist(@RequestParam(value = "email", required = false) String email, @RequestBody Map<String, Object> body) {
         try {
             logger.debug("Adding to wishlist for user: {}", email);
-            if (body.get("productId") == null) {
+            if (!(body.get("productId") instanceof Number rawId)) {
                 return ResponseEntity.badRequest().body("Product ID is required");
             }
-            Long productId = ((Number) body.get("productId")).longValue();
+            Long productId = rawId.longValue();
             User user = requireUser(email);
             WishlistItemDTO saved = wishlistService.addToWishlist(user, productId);
             return ResponseEntity.ok(saved);
-        } catch (RuntimeException e) {
-            logger.error("Error adding to wishlist for user: {}", email, e);
-            return ResponseEntity.status(404).body("User or product not found");
-        } catch (Exception e) {
-            logger.error("Unexpected error adding to wishlist for user: {}", email, e);
-            return ResponseEntity.status(500).body("Internal server error");
+        } catch (NoSuchElementException e) {
+            logger.warn("Could not add to wishlist for user {}: {}", email, e.getMessage());
+            return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
     @DeleteMapping("/{productId}")
-    public ResponseEntity<?> removeFromWishlist(@RequestParam("email") String email,
+    public ResponseEntity<?> removeFromWishlist(@RequestParam(value = "email", required = false) String email,
             @PathVariable("productId") Long productId) {
         try {
             logger.debug("Removing from wishlist for user: {} product: {}", email, productId);
             User user = requireUser(email);
             wishlistService.removeFromWishlist(user, productId);
             return ResponseEntity.noContent().build();
-        } catch (RuntimeException e) {
-            logger.error("Error removing from wishlist for user: {}", email, e);
-            return ResponseEntity.status(404).body("User or product not found");
-        } catch (Exception e) {
-            logger.error("Unexpected error removing from wishlist for user: {}", email, e);
-            return ResponseEntity.status(500).body("Internal server error");
+        } catch (NoSuchElementException e) {
+            logger.warn("Could not remove from wishlist for user {}: {}", email, e.getMessage());
+            return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 }
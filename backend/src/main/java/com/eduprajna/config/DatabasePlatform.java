@@ -0,0 +1,50 @@
+package com.eduprajna.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Detects which database the application is connected to (MySQL locally, PostgreSQL on Render)
+ * so that native SQL can pick the right dialect.
+ */
+@Component
+public class DatabasePlatform {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabasePlatform.class);
+
+    private final DataSource dataSource;
+    private volatile String productName;
+
+    public DatabasePlatform(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public String getProductName() {
+        String name = productName;
+        if (name == null) {
+            try (Connection c = dataSource.getConnection()) {
+                name = c.getMetaData().getDatabaseProductName();
+            } catch (SQLException ex) {
+                log.warn("Unable to detect database product: {}", ex.getMessage());
+                return "unknown";
+            }
+            productName = name;
+        }
+        return name;
+    }
+
+    public boolean isPostgres() {
+        return getProductName().toLowerCase().contains("postgres");
+    }
+
+    public boolean isMySql() {
+        String name = getProductName().toLowerCase();
+        return name.contains("mysql") || name.contains("mariadb");
+    }
+}
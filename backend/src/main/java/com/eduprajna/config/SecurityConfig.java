@@ -2,6 +2,7 @@ package com.eduprajna.config;
 
 import java.util.List;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -11,13 +12,17 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.eduprajna.filter.AccessTokenFilter;
+import com.eduprajna.service.AccessTokenService;
 import com.eduprajna.service.CustomUserDetailsService;
 
 @Configuration
@@ -25,15 +30,25 @@ import com.eduprajna.service.CustomUserDetailsService;
 public class SecurityConfig {
 
     private final CustomUserDetailsService userDetailsService;
+    private final AccessTokenService accessTokenService;
 
-    public SecurityConfig(CustomUserDetailsService userDetailsService) {
+    // While clients migrate from ?email= to bearer tokens, tokens are optional
+    @Value("${auth.tokens.required:false}")
+    private boolean tokensRequired;
+
+    public SecurityConfig(CustomUserDetailsService userDetailsService, AccessTokenService accessTokenService) {
         this.userDetailsService = userDetailsService;
+        this.accessTokenService = accessTokenService;
     }
 
+    // Raising this rehashes each user's password on their next successful login
+    @Value("${auth.bcrypt.strength:10}")
+    private int bcryptStrength;
+
     // -------------------- Password Encoder --------------------
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 
     // -------------------- Authentication Manager --------------------
@@ -65,16 +80,51 @@ public class SecurityConfig {
                 // Enable CORS (THIS IS CRITICAL)
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
 
+                // Identity comes from the signed bearer token, no server-side session
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(new AccessTokenFilter(accessTokenService), UsernamePasswordAuthenticationFilter.class)
+
                 // Authorization rules
-                .authorizeHttpRequests(auth -> auth
+                .authorizeHttpRequests(auth -> {
                         // ✅ VERY IMPORTANT: allow preflight
-                        .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                        auth.requestMatchers(HttpMethod.OPTIONS, "/**").permitAll();
 
-                        // Auth endpoints
-                        .requestMatchers("/api/auth/**").permitAll()
+                        if (tokensRequired) {
+                            // Profile endpoints live under /api/auth but need a caller
+                            auth.requestMatchers("/api/auth/profile", "/api/auth/password").authenticated();
+                        }
 
-                        // Other APIs (you can tighten later)
-                        .anyRequest().permitAll())
+                        // Auth endpoints
+                        auth.requestMatchers("/api/auth/**").permitAll();
+
+                        // Health status is public (details only for admins); metrics are admin only
+                        auth.requestMatchers("/actuator/health", "/actuator/health/**").permitAll();
+                        auth.requestMatchers("/actuator/**").hasRole("ADMIN");
+
+                        // Admin routes without legacy clients (the admin panel always sends its token):
+                        // an admin bearer token is required even while tokens are optional
+                        auth.requestMatchers("/api/admin/campaigns", "/api/admin/campaigns/**",
+                                "/api/admin/email-outbox/**",
+                                "/api/orders/admin/status/bulk", "/api/orders/admin/status/bulk/csv",
+                                "/api/orders/admin/invoices/batch",
+                                "/api/admin/products/images/library", "/api/admin/products/images/gc",
+                                "/api/admin/products/images/stream",
+                                "/api/admin/products/images/uploads", "/api/admin/products/images/uploads/**")
+                                .hasRole("ADMIN");
+
+                        if (tokensRequired) {
+                            // The storefront reads the catalog and product images from the admin
+                            // controller; everything else under it stays admin only
+                            auth.requestMatchers(HttpMethod.GET, "/api/admin/products",
+                                    "/api/admin/products/images/**").permitAll();
+                            auth.requestMatchers("/api/admin/**", "/api/orders/admin/**").hasRole("ADMIN");
+                            auth.requestMatchers("/api/cart/**", "/api/wishlist/**", "/api/addresses/**",
+                                    "/api/checkout/**", "/api/orders/**", "/api/payments/**").authenticated();
+                        }
+
+                        // Other APIs (public catalog, uploads, contact, password reset)
+                        auth.anyRequest().permitAll();
+                })
 
                 .authenticationProvider(authenticationProvider());
 
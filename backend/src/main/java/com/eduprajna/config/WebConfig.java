@@ -11,11 +11,8 @@ public class WebConfig implements WebMvcConfigurer {
         @Override
         public void addResourceHandlers(@NonNull ResourceHandlerRegistry registry) {
 
-                // Serve uploaded files (images, docs, etc.)
-                String uploadDir = System.getProperty("upload.dir", "./uploads");
-                registry.addResourceHandler("/uploads/**")
-                                .addResourceLocations("file:" + uploadDir + "/")
-                                .setCachePeriod(86400); // 1 day cache
+                // Uploaded files are served by UploadController only: a resource handler here
+                // would also expose .trash, .derivatives and .tmp under the upload directory
 
                 // Serve static frontend assets if needed
                 registry.addResourceHandler("/static/**")
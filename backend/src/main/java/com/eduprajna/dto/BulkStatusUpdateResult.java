@@ -0,0 +1,32 @@
+package com.eduprajna.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregated report for a bulk order status transition
+ */
+public class BulkStatusUpdateResult {
+  public String status;
+  public int requested;
+  public int updated;
+  public int unchanged;
+  public List<Long> updatedOrderIds = new ArrayList<>();
+  public List<Long> notFound = new ArrayList<>();
+  public List<Rejection> rejected = new ArrayList<>();
+  public List<String> invalidRows = new ArrayList<>();
+
+  public static class Rejection {
+    public Long orderId;
+    public String currentStatus;
+    public String reason;
+
+    public Rejection() {}
+
+    public Rejection(Long orderId, String currentStatus, String reason) {
+      this.orderId = orderId;
+      this.currentStatus = currentStatus;
+      this.reason = reason;
+    }
+  }
+}
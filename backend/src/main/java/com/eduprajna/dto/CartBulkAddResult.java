@@ -0,0 +1,29 @@
+package com.eduprajna.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Report for a bulk cart add (guest cart merge on login)
+ */
+public class CartBulkAddResult {
+  public int requested;
+  public int added;
+  public int merged;
+  public List<Rejection> rejected = new ArrayList<>();
+  public List<CartItemDTO> items = new ArrayList<>();
+
+  public static class Rejection {
+    public Long productId;
+    public Long variantId;
+    public String reason;
+
+    public Rejection() {}
+
+    public Rejection(Long productId, Long variantId, String reason) {
+      this.productId = productId;
+      this.variantId = variantId;
+      this.reason = reason;
+    }
+  }
+}
@@ -12,4 +12,35 @@ public class CartItemDTO {
   public String variantName;
   public Double weightValue;
   public String weightUnit;
+  // Live catalog values (variant when selected, otherwise product)
+  public Double currentPrice;
+  public Integer stockQuantity;
+  // Set when the line was repriced after a catalog change; previousPrice is what the customer last saw
+  public Boolean priceChanged;
+  public Double previousPrice;
+
+  public CartItemDTO() {}
+
+  /**
+   * Constructor used by the cart projection query in CartItemRepository
+   */
+  public CartItemDTO(Long id, Long productId, String name, String imageUrl, Integer quantity, Double price,
+      Long variantId, String variantName, Double weightValue, String weightUnit,
+      Double currentPrice, Integer stockQuantity, Boolean priceChanged, Double previousPrice) {
+    this.id = id;
+    this.productId = productId;
+    this.name = name;
+    this.imageUrl = imageUrl;
+    this.quantity = quantity;
+    this.price = price;
+    this.lineTotal = (price != null ? price : 0.0) * (quantity != null ? quantity : 0);
+    this.variantId = variantId;
+    this.variantName = variantName;
+    this.weightValue = weightValue;
+    this.weightUnit = weightUnit;
+    this.currentPrice = currentPrice;
+    this.stockQuantity = stockQuantity;
+    this.priceChanged = Boolean.TRUE.equals(priceChanged);
+    this.previousPrice = previousPrice;
+  }
 }
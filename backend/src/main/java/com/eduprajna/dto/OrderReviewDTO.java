@@ -10,6 +10,8 @@ public class OrderReviewDTO {
   public Double subtotal;
   public Double shippingFee;
   public Double total;
+  // True when any line was repriced since the customer last reviewed the cart
+  public boolean pricesChanged;
 }
 
 
@@ -0,0 +1,17 @@
+package com.eduprajna.dto;
+
+public class UploadSessionDTO {
+  public String id;
+  public String filename;
+  // Bytes received so far; the next chunk must start here
+  public long offset;
+  // Total size announced when the session was opened, null if unknown
+  public Long size;
+
+  public UploadSessionDTO(String id, String filename, long offset, Long size) {
+    this.id = id;
+    this.filename = filename;
+    this.offset = offset;
+    this.size = size;
+  }
+}
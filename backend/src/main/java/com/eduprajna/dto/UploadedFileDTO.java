@@ -0,0 +1,19 @@
+package com.eduprajna.dto;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public class UploadedFileDTO {
+  public Long id;
+  public String name;
+  public String url;
+  public String sha256;
+  public Long sizeBytes;
+  public String mediaType;
+  public Integer width;
+  public Integer height;
+  public OffsetDateTime createdAt;
+  public boolean legacy;
+  // Products whose image is this file
+  public List<Long> productIds;
+}
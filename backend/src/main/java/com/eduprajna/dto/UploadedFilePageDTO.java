@@ -0,0 +1,11 @@
+package com.eduprajna.dto;
+
+import java.util.List;
+
+public class UploadedFilePageDTO {
+  public List<UploadedFileDTO> items;
+  public int page;
+  public int size;
+  public long totalElements;
+  public int totalPages;
+}
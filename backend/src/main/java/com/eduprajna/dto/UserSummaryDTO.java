@@ -15,6 +15,7 @@ public class UserSummaryDTO {
     private Long orderCount;
     private Long wishlistCount;
     private Integer loyaltyPoints;
+    private Double lifetimeSpend;
 
     public UserSummaryDTO() {}
 
@@ -67,4 +68,7 @@ public class UserSummaryDTO {
 
     public Integer getLoyaltyPoints() { return loyaltyPoints; }
     public void setLoyaltyPoints(Integer loyaltyPoints) { this.loyaltyPoints = loyaltyPoints; }
-}
\ No newline at end of file
+
+    public Double getLifetimeSpend() { return lifetimeSpend; }
+    public void setLifetimeSpend(Double lifetimeSpend) { this.lifetimeSpend = lifetimeSpend; }
+}
@@ -12,4 +12,23 @@ public class WishlistItemDTO {
     public Integer stockQuantity;
     public String category;
     public String brand;
+
+    public WishlistItemDTO() {}
+
+    /**
+     * Constructor used by the wishlist projection query in WishlistItemRepository
+     */
+    public WishlistItemDTO(Long productId, String productName, String productImage, Double productPrice,
+            OffsetDateTime createdAt, Boolean explicitInStock, Integer stockQuantity, String category) {
+        this.productId = productId;
+        this.productName = productName;
+        this.productImage = productImage;
+        this.productPrice = productPrice;
+        this.createdAt = createdAt;
+        // If explicit inStock=false, respect; if stockQuantity provided and <=0, false; if null, treat as available
+        this.inStock = (explicitInStock != null) ? explicitInStock : (stockQuantity == null || stockQuantity > 0);
+        this.stockQuantity = stockQuantity;
+        this.category = category;
+        this.brand = null; // brand not present on Product entity
+    }
 }
@@ -1,9 +1,15 @@
 package com.eduprajna.entity;
 
 import jakarta.persistence.*;
+import java.time.OffsetDateTime;
 
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items", uniqueConstraints = @UniqueConstraint(
+        name = "uk_cart_items_user_product_variant", columnNames = { "user_id", "product_id", "variant_id" }),
+        indexes = {
+                @Index(name = "idx_cart_items_variant", columnList = "variant_id"),
+                @Index(name = "idx_cart_items_product", columnList = "product_id")
+        })
 public class CartItem {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -36,6 +42,23 @@ public class CartItem {
     @Column(name = "weight_unit")
     private String weightUnit; // e.g., "ml"
 
+    // Set when a catalog price change repriced this line; cleared once the customer has reviewed it
+    @Column(name = "price_changed")
+    private Boolean priceChanged = false;
+
+    @Column(name = "previous_price")
+    private Double previousPrice; // price the customer last saw, while priceChanged is set
+
+    // Last time the line was touched; used to expire abandoned carts
+    @Column(name = "updated_at")
+    private OffsetDateTime updatedAt = OffsetDateTime.now();
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        this.updatedAt = OffsetDateTime.now();
+    }
+
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
     public User getUser() { return user; }
@@ -55,6 +78,12 @@ public class CartItem {
     public void setWeightValue(Double weightValue) { this.weightValue = weightValue; }
     public String getWeightUnit() { return weightUnit; }
     public void setWeightUnit(String weightUnit) { this.weightUnit = weightUnit; }
+    public Boolean getPriceChanged() { return priceChanged; }
+    public void setPriceChanged(Boolean priceChanged) { this.priceChanged = priceChanged; }
+    public Double getPreviousPrice() { return previousPrice; }
+    public void setPreviousPrice(Double previousPrice) { this.previousPrice = previousPrice; }
+    public OffsetDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(OffsetDateTime updatedAt) { this.updatedAt = updatedAt; }
 }
 
  
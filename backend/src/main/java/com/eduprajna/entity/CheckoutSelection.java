@@ -1,6 +1,7 @@
 package com.eduprajna.entity;
 
 import jakarta.persistence.*;
+import java.time.OffsetDateTime;
 
 @Entity
 @Table(name = "checkout_selections")
@@ -21,6 +22,16 @@ public class CheckoutSelection {
     @Column(nullable = false)
     private String paymentMethod; // cod, card, upi, wallet
 
+    // Last time the selection was saved; stale selections are expired
+    @Column(name = "updated_at")
+    private OffsetDateTime updatedAt = OffsetDateTime.now();
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        this.updatedAt = OffsetDateTime.now();
+    }
+
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
     public User getUser() { return user; }
@@ -31,6 +42,8 @@ public class CheckoutSelection {
     public void setDeliveryOption(String deliveryOption) { this.deliveryOption = deliveryOption; }
     public String getPaymentMethod() { return paymentMethod; }
     public void setPaymentMethod(String paymentMethod) { this.paymentMethod = paymentMethod; }
+    public OffsetDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(OffsetDateTime updatedAt) { this.updatedAt = updatedAt; }
 }
 
 
@@ -0,0 +1,110 @@
+package com.eduprajna.entity;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+/**
+ * A bulk email to one audience. While RUNNING, last_recipient_id is the keyset cursor of
+ * the last recipient whose message was handled; the runner that holds the lease (owner,
+ * lease_until) advances it after every batch, so a run that dies resumes from there.
+ */
+@Entity
+@Table(name = "email_campaigns", indexes = {
+        @Index(name = "idx_email_campaigns_status", columnList = "status")
+})
+public class EmailCampaign {
+    public static final String DRAFT = "DRAFT";
+    public static final String RUNNING = "RUNNING";
+    public static final String PAUSED = "PAUSED";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String CANCELLED = "CANCELLED";
+
+    public static final String SUBSCRIBERS = "SUBSCRIBERS";
+    public static final String CUSTOMERS = "CUSTOMERS";
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 200)
+    private String name;
+
+    @Column(nullable = false, length = 500)
+    private String subject;
+
+    @Column(nullable = false, length = 100)
+    private String template; // email-templates/ file name, e.g. newsletter.html
+
+    @Column(columnDefinition = "TEXT")
+    private String content; // paragraphs separated by blank lines, available to the template
+
+    @Column(nullable = false, length = 20)
+    private String audience = SUBSCRIBERS;
+
+    @Column(name = "rate_per_second", nullable = false)
+    private Double ratePerSecond;
+
+    @Column(nullable = false, length = 16)
+    private String status = DRAFT;
+
+    @Column(name = "last_recipient_id", nullable = false)
+    private Long lastRecipientId = 0L;
+
+    @Column(name = "sent_count", nullable = false)
+    private Long sentCount = 0L;
+
+    @Column(name = "failed_count", nullable = false)
+    private Long failedCount = 0L;
+
+    @Column(length = 36)
+    private String owner; // runner holding the lease
+
+    @Column(name = "lease_until")
+    private OffsetDateTime leaseUntil;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt = OffsetDateTime.now();
+
+    @Column(name = "started_at")
+    private OffsetDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private OffsetDateTime finishedAt;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public String getSubject() { return subject; }
+    public void setSubject(String subject) { this.subject = subject; }
+    public String getTemplate() { return template; }
+    public void setTemplate(String template) { this.template = template; }
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+    public String getAudience() { return audience; }
+    public void setAudience(String audience) { this.audience = audience; }
+    public Double getRatePerSecond() { return ratePerSecond; }
+    public void setRatePerSecond(Double ratePerSecond) { this.ratePerSecond = ratePerSecond; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public Long getLastRecipientId() { return lastRecipientId; }
+    public void setLastRecipientId(Long lastRecipientId) { this.lastRecipientId = lastRecipientId; }
+    public Long getSentCount() { return sentCount; }
+    public void setSentCount(Long sentCount) { this.sentCount = sentCount; }
+    public Long getFailedCount() { return failedCount; }
+    public void setFailedCount(Long failedCount) { this.failedCount = failedCount; }
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+    public OffsetDateTime getLeaseUntil() { return leaseUntil; }
+    public void setLeaseUntil(OffsetDateTime leaseUntil) { this.leaseUntil = leaseUntil; }
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    public OffsetDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(OffsetDateTime createdAt) { this.createdAt = createdAt; }
+    public OffsetDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(OffsetDateTime startedAt) { this.startedAt = startedAt; }
+    public OffsetDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(OffsetDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
@@ -0,0 +1,35 @@
+package com.eduprajna.entity;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+/**
+ * A newsletter address. Rows with unsubscribed_at set are opt-outs; they are kept (also
+ * for customers who never subscribed) so campaigns to customers skip them too.
+ */
+@Entity
+@Table(name = "newsletter_subscribers", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_newsletter_subscribers_email", columnNames = "email")
+})
+public class NewsletterSubscriber {
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String email; // stored lower-case
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt = OffsetDateTime.now();
+
+    @Column(name = "unsubscribed_at")
+    private OffsetDateTime unsubscribedAt;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getEmail() { return email; }
+    public void setEmail(String email) { this.email = email; }
+    public OffsetDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(OffsetDateTime createdAt) { this.createdAt = createdAt; }
+    public OffsetDateTime getUnsubscribedAt() { return unsubscribedAt; }
+    public void setUnsubscribedAt(OffsetDateTime unsubscribedAt) { this.unsubscribedAt = unsubscribedAt; }
+}
@@ -0,0 +1,73 @@
+package com.eduprajna.entity;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+/**
+ * Catalog entry for a stored upload. Content-addressed uploads have one row per distinct
+ * content, stored once under ab/cd/<sha256>.<ext> and shared by every reference to it.
+ * Files from the old flat layout are catalogued as legacy rows (no hash) by a startup scan.
+ */
+@Entity
+@Table(name = "uploaded_files", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_uploaded_files_sha256", columnNames = "sha256"),
+        @UniqueConstraint(name = "uk_uploaded_files_storage_path", columnNames = "storage_path")
+}, indexes = {
+        @Index(name = "idx_uploaded_files_created", columnList = "created_at"),
+        @Index(name = "idx_uploaded_files_content_type", columnList = "content_type")
+})
+public class UploadedFile {
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 64)
+    private String sha256; // hex digest of the content; null for legacy files
+
+    @Column(name = "storage_path", nullable = false, length = 128)
+    private String storagePath; // relative to the upload directory, e.g. "ab/cd/abcd....jpg"
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType; // from the extension table, not the client's header
+
+    private Integer width; // pixels, images only
+
+    private Integer height;
+
+    @Column(nullable = false)
+    private Boolean legacy = false; // timestamp-named file in the flat upload directory
+
+    @Column(name = "original_filename")
+    private String originalFilename; // name of the first upload with this content
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount = 0; // products and order items pointing at this file
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt = OffsetDateTime.now();
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+    public String getStoragePath() { return storagePath; }
+    public void setStoragePath(String storagePath) { this.storagePath = storagePath; }
+    public Long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(Long sizeBytes) { this.sizeBytes = sizeBytes; }
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+    public Integer getWidth() { return width; }
+    public void setWidth(Integer width) { this.width = width; }
+    public Integer getHeight() { return height; }
+    public void setHeight(Integer height) { this.height = height; }
+    public Boolean getLegacy() { return legacy; }
+    public void setLegacy(Boolean legacy) { this.legacy = legacy; }
+    public String getOriginalFilename() { return originalFilename; }
+    public void setOriginalFilename(String originalFilename) { this.originalFilename = originalFilename; }
+    public Integer getRefCount() { return refCount; }
+    public void setRefCount(Integer refCount) { this.refCount = refCount; }
+    public OffsetDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(OffsetDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,9 @@
+package com.eduprajna.event;
+
+import java.util.List;
+
+/**
+ * A batch of abandoned carts; listeners receive at most the configured rate per second
+ */
+public record AbandonedCartBatchEvent(List<AbandonedCartEvent> carts) {
+}
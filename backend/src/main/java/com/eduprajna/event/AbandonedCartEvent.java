@@ -0,0 +1,11 @@
+package com.eduprajna.event;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Published (in batches, rate limited) for carts expired by the cart sweeper so that
+ * remarketing listeners can follow up with the customer.
+ */
+public record AbandonedCartEvent(Long userId, String email, int itemCount, double cartValue,
+        OffsetDateTime lastUpdatedAt) {
+}
@@ -0,0 +1,19 @@
+package com.eduprajna.exception;
+
+/**
+ * Thrown when a request is shed because of throttling or a saturated worker pool.
+ * Mapped to 429 Too Many Requests with a Retry-After header.
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,34 @@
+package com.eduprajna.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a streaming upload cannot be accepted: unknown session, wrong offset,
+ * too large, or content that does not match its declared type.
+ */
+public class UploadRejectedException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final long offset;
+
+    public UploadRejectedException(HttpStatus status, String message) {
+        this(status, message, -1);
+    }
+
+    public UploadRejectedException(HttpStatus status, String message, long offset) {
+        super(message);
+        this.status = status;
+        this.offset = offset;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Bytes the server holds for the session, or -1 if not applicable
+     */
+    public long getOffset() {
+        return offset;
+    }
+}
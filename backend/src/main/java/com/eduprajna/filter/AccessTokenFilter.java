@@ -0,0 +1,63 @@
+package com.eduprajna.filter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.eduprajna.service.AccessTokenService;
+
+/**
+ * Authenticates requests carrying "Authorization: Bearer <token>" by verifying the
+ * token signature in memory. Requests without a token pass through unauthenticated.
+ *
+ * Registered inside the Spring Security chain by SecurityConfig (not as a @Component,
+ * so it is not also added to the servlet filter chain).
+ */
+public class AccessTokenFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final AccessTokenService tokenService;
+
+    public AccessTokenFilter(AccessTokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.startsWith(BEARER_PREFIX)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Optional<AccessTokenService.Claims> claims = tokenService.verifyAccessToken(header.substring(BEARER_PREFIX.length()).trim());
+        if (claims.isEmpty()) {
+            // An explicit but invalid/expired token is rejected so the client knows to refresh
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Invalid or expired access token\"}");
+            return;
+        }
+
+        AccessTokenService.Claims c = claims.get();
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                c, null, List.of(new SimpleGrantedAuthority("ROLE_" + c.role())));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        filterChain.doFilter(request, response);
+    }
+}
@@ -1,27 +1,110 @@
 package com.eduprajna.repository;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.eduprajna.dto.CartItemDTO;
 import com.eduprajna.entity.CartItem;
 import com.eduprajna.entity.Product;
 import com.eduprajna.entity.User;
 
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     List<CartItem> findByUser(User user);
+
+    /**
+     * Cart lines with product and variant data in a single query (no lazy loads per line)
+     */
+    @Query("SELECT new com.eduprajna.dto.CartItemDTO(ci.id, p.id, p.name, p.imageUrl, ci.quantity, ci.priceAtAdd, "
+            + "ci.variantId, ci.variantName, ci.weightValue, ci.weightUnit, "
+            + "COALESCE(v.price, p.price), COALESCE(v.stockQuantity, p.stockQuantity), ci.priceChanged, ci.previousPrice) "
+            + "FROM CartItem ci JOIN ci.product p LEFT JOIN ProductVariant v ON v.id = ci.variantId "
+            + "WHERE ci.user = :user ORDER BY ci.id")
+    List<CartItemDTO> findCartView(@Param("user") User user);
     Optional<CartItem> findByUserAndProduct(User user, Product product);
-    
+
+    // Keyed lookups on (user, product, variant); a null variant only matches rows without one
+
+    @Query("SELECT ci FROM CartItem ci JOIN FETCH ci.product WHERE ci.user = :user AND ci.product.id = :productId AND ci.variantId = :variantId")
+    Optional<CartItem> findByUserAndProductIdAndVariantId(@Param("user") User user, @Param("productId") Long productId,
+            @Param("variantId") Long variantId);
+
+    @Query("SELECT ci FROM CartItem ci JOIN FETCH ci.product WHERE ci.user = :user AND ci.product.id = :productId AND ci.variantId IS NULL")
+    Optional<CartItem> findByUserAndProductIdWithoutVariant(@Param("user") User user, @Param("productId") Long productId);
+
+    @Query("SELECT ci.quantity FROM CartItem ci WHERE ci.user = :user AND ci.product.id = :productId AND ci.variantId = :variantId")
+    Optional<Integer> findQuantity(@Param("user") User user, @Param("productId") Long productId,
+            @Param("variantId") Long variantId);
+
+    // [id, productId, variantId, quantity] without loading entities into the persistence context
+    @Query("SELECT ci.id, ci.product.id, ci.variantId, ci.quantity FROM CartItem ci WHERE ci.user = :user")
+    List<Object[]> findLineKeysByUser(@Param("user") User user);
+
+    default Optional<CartItem> findItem(User user, Long productId, Long variantId) {
+        return variantId != null
+                ? findByUserAndProductIdAndVariantId(user, productId, variantId)
+                : findByUserAndProductIdWithoutVariant(user, productId);
+    }
+
     @Modifying
     @Transactional
-    void deleteByUser(User user);
-    
+    @Query("UPDATE CartItem ci SET ci.quantity = :quantity, ci.updatedAt = :now WHERE ci.user = :user AND ci.product.id = :productId AND ci.variantId = :variantId")
+    int updateQuantity(@Param("user") User user, @Param("productId") Long productId, @Param("variantId") Long variantId,
+            @Param("quantity") int quantity, @Param("now") OffsetDateTime now);
+
     @Modifying
     @Transactional
-    void deleteByProduct(Product product);
-}
+    @Query("UPDATE CartItem ci SET ci.quantity = :quantity, ci.updatedAt = :now WHERE ci.user = :user AND ci.product.id = :productId AND ci.variantId IS NULL")
+    int updateQuantityWithoutVariant(@Param("user") User user, @Param("productId") Long productId,
+            @Param("quantity") int quantity, @Param("now") OffsetDateTime now);
+
+    // Catalog price propagation: one set-based statement per changed variant (idx_cart_items_variant).
+    // previousPrice keeps the first price the customer saw until the flag is cleared.
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CartItem ci SET ci.previousPrice = COALESCE(ci.previousPrice, ci.priceAtAdd), ci.priceAtAdd = :price, "
+            + "ci.priceChanged = true, ci.updatedAt = :now "
+            + "WHERE ci.variantId = :variantId AND (ci.priceAtAdd IS NULL OR ci.priceAtAdd <> :price)")
+    int repriceVariant(@Param("variantId") Long variantId, @Param("price") Double price, @Param("now") OffsetDateTime now);
 
+    @Modifying
+    @Transactional
+    @Query("UPDATE CartItem ci SET ci.previousPrice = COALESCE(ci.previousPrice, ci.priceAtAdd), ci.priceAtAdd = :price, "
+            + "ci.priceChanged = true, ci.updatedAt = :now "
+            + "WHERE ci.product.id = :productId AND ci.variantId IS NULL AND (ci.priceAtAdd IS NULL OR ci.priceAtAdd <> :price)")
+    int repriceProductWithoutVariant(@Param("productId") Long productId, @Param("price") Double price,
+            @Param("now") OffsetDateTime now);
 
+    @Modifying
+    @Transactional
+    @Query("UPDATE CartItem ci SET ci.priceChanged = false, ci.previousPrice = null WHERE ci.user = :user AND ci.priceChanged = true")
+    int clearPriceChanged(@Param("user") User user);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CartItem ci WHERE ci.user = :user AND ci.product.id = :productId")
+    int deleteByUserAndProductId(@Param("user") User user, @Param("productId") Long productId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CartItem ci WHERE ci.user = :user AND ci.product.id = :productId AND ci.variantId = :variantId")
+    int deleteByUserAndProductIdAndVariantId(@Param("user") User user, @Param("productId") Long productId,
+            @Param("variantId") Long variantId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CartItem ci WHERE ci.user = :user")
+    void deleteByUser(@Param("user") User user);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CartItem ci WHERE ci.product = :product")
+    void deleteByProduct(@Param("product") Product product);
+}
@@ -0,0 +1,71 @@
+package com.eduprajna.repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.eduprajna.entity.EmailCampaign;
+
+public interface EmailCampaignRepository extends JpaRepository<EmailCampaign, Long> {
+
+    List<EmailCampaign> findAllByOrderByCreatedAtDesc();
+
+    // RUNNING campaigns nobody holds a live lease on (never picked up, or their runner died)
+    @Query("SELECT c.id FROM EmailCampaign c WHERE c.status = 'RUNNING' AND (c.leaseUntil IS NULL OR c.leaseUntil < :now)")
+    List<Long> findUnleasedRunning(@Param("now") OffsetDateTime now);
+
+    /**
+     * Take the lease of a RUNNING campaign. Succeeds for at most one runner while the lease
+     * is live, so two instances never send the same campaign.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailCampaign c SET c.owner = :owner, c.leaseUntil = :until WHERE c.id = :id "
+            + "AND c.status = 'RUNNING' AND (c.leaseUntil IS NULL OR c.leaseUntil < :now)")
+    int acquireLease(@Param("id") Long id, @Param("owner") String owner, @Param("now") OffsetDateTime now,
+            @Param("until") OffsetDateTime until);
+
+    /**
+     * Record a finished batch and extend the lease. Returns 0 once the campaign was paused
+     * or cancelled, or the lease was lost, which tells the runner to stop.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailCampaign c SET c.lastRecipientId = :cursor, c.sentCount = c.sentCount + :sent, "
+            + "c.failedCount = c.failedCount + :failed, c.leaseUntil = :until "
+            + "WHERE c.id = :id AND c.owner = :owner AND c.status = 'RUNNING'")
+    int checkpoint(@Param("id") Long id, @Param("owner") String owner, @Param("cursor") Long cursor,
+            @Param("sent") long sent, @Param("failed") long failed, @Param("until") OffsetDateTime until);
+
+    // Leave RUNNING (done, or paused after an SMTP outage) and give up the lease
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailCampaign c SET c.status = :status, c.owner = null, c.leaseUntil = null, c.lastError = :error, "
+            + "c.finishedAt = :finishedAt WHERE c.id = :id AND c.owner = :owner AND c.status = 'RUNNING'")
+    int release(@Param("id") Long id, @Param("owner") String owner, @Param("status") String status,
+            @Param("error") String error, @Param("finishedAt") OffsetDateTime finishedAt);
+
+    // The runner stopped because the campaign was paused or cancelled
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailCampaign c SET c.owner = null, c.leaseUntil = null WHERE c.id = :id AND c.owner = :owner")
+    int dropLease(@Param("id") Long id, @Param("owner") String owner);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailCampaign c SET c.status = 'RUNNING', c.lastError = null, c.finishedAt = null, "
+            + "c.startedAt = COALESCE(c.startedAt, :now) WHERE c.id = :id AND c.status IN ('DRAFT', 'PAUSED')")
+    int markRunning(@Param("id") Long id, @Param("now") OffsetDateTime now);
+
+    // Pause or cancel; a runner holding the lease notices at its next checkpoint
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailCampaign c SET c.status = :status, c.finishedAt = :finishedAt WHERE c.id = :id AND c.status IN :from")
+    int transition(@Param("id") Long id, @Param("from") List<String> from, @Param("status") String status,
+            @Param("finishedAt") OffsetDateTime finishedAt);
+}
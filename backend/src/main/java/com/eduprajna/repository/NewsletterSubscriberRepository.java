@@ -0,0 +1,36 @@
+package com.eduprajna.repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.eduprajna.entity.NewsletterSubscriber;
+
+public interface NewsletterSubscriberRepository extends JpaRepository<NewsletterSubscriber, Long> {
+    Optional<NewsletterSubscriber> findByEmail(String email);
+
+    /**
+     * Next page of active subscribers by id after a keyset cursor. Rows are [id, email].
+     */
+    @Query("SELECT s.id, s.email FROM NewsletterSubscriber s WHERE s.id > :after AND s.unsubscribedAt IS NULL ORDER BY s.id")
+    List<Object[]> findActiveAfter(@Param("after") Long after, Pageable pageable);
+
+    long countByUnsubscribedAtIsNull();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE NewsletterSubscriber s SET s.unsubscribedAt = :now WHERE s.email = :email AND s.unsubscribedAt IS NULL")
+    int markUnsubscribed(@Param("email") String email, @Param("now") OffsetDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE NewsletterSubscriber s SET s.unsubscribedAt = null WHERE s.email = :email")
+    int markResubscribed(@Param("email") String email);
+}
@@ -3,12 +3,15 @@ package com.eduprajna.repository;
 import com.eduprajna.entity.Order;
 import com.eduprajna.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository for Order entity
@@ -76,6 +79,53 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
      */
     @Query("SELECT COALESCE(SUM(o.total), 0) FROM Order o WHERE o.createdAt BETWEEN :startDate AND :endDate")
     Double getTotalRevenueBetween(@Param("startDate") OffsetDateTime startDate, @Param("endDate") OffsetDateTime endDate);
+    
+    /**
+     * Load only the id and current status of a set of orders
+     * Used to validate bulk status transitions without hydrating Order entities
+     * @param ids Order IDs to look up
+     * @return Rows of [id, status]
+     */
+    @Query("SELECT o.id, o.status FROM Order o WHERE o.id IN :ids")
+    List<Object[]> findIdAndStatusByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Set-based status update for a set of orders; orders already in one of the
+     * terminal statuses are left alone, even if they reached it after validation
+     * @param ids Order IDs to update
+     * @param status The new status
+     * @param terminalStatuses Lower-case statuses an order never leaves
+     * @return Number of rows updated
+     */
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :status WHERE o.id IN :ids "
+            + "AND (o.status IS NULL OR LOWER(o.status) NOT IN :terminalStatuses)")
+    int updateStatusByIdIn(@Param("ids") Collection<Long> ids, @Param("status") String status,
+            @Param("terminalStatuses") Collection<String> terminalStatuses);
+    
+    /**
+     * Load an order with its items (and their products) in one query
+     * Used by invoice rendering, which reads every item outside a transaction
+     * @param id Order ID
+     * @return The order with items initialized
+     */
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product WHERE o.id = :id")
+    Optional<Order> findWithItemsById(@Param("id") Long id);
+    
+    /**
+     * IDs of the orders created in a time range
+     * @param start Start (inclusive)
+     * @param end End (exclusive)
+     * @return Order IDs in ascending order
+     */
+    @Query("SELECT o.id FROM Order o WHERE o.createdAt >= :start AND o.createdAt < :end ORDER BY o.id")
+    List<Long> findIdsCreatedBetween(@Param("start") OffsetDateTime start, @Param("end") OffsetDateTime end);
+    
+    /**
+     * ID of the user who placed an order, without loading the order
+     * @param id Order ID
+     * @return The owner's user ID
+     */
+    @Query("SELECT o.user.id FROM Order o WHERE o.id = :id")
+    Optional<Long> findUserIdById(@Param("id") Long id);
 }
-
-
@@ -0,0 +1,90 @@
+package com.eduprajna.repository;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.eduprajna.entity.OutboxEmail;
+
+public interface OutboxEmailRepository extends JpaRepository<OutboxEmail, Long> {
+
+    boolean existsByKindAndInvoiceOrderIdAndStatusIn(String kind, Long invoiceOrderId, Collection<String> statuses);
+
+    // Oldest due rows first (idx_email_outbox_due)
+    @Query("SELECT e.id FROM OutboxEmail e WHERE e.status = 'PENDING' AND e.nextAttemptAt <= :now ORDER BY e.nextAttemptAt, e.id")
+    List<Long> findDueIds(@Param("now") OffsetDateTime now, Pageable pageable);
+
+    /**
+     * Claim rows for one worker batch. Rows another worker claimed first are skipped by the
+     * status check, so the claimed set is whatever now carries the token.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEmail e SET e.status = 'SENDING', e.claimToken = :token, e.claimedAt = :now "
+            + "WHERE e.id IN :ids AND e.status = 'PENDING'")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token, @Param("now") OffsetDateTime now);
+
+    @Query("SELECT e FROM OutboxEmail e WHERE e.claimToken = :token AND e.status = 'SENDING' ORDER BY e.id")
+    List<OutboxEmail> findClaimed(@Param("token") String token);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEmail e SET e.status = 'SENT', e.sentAt = :now, e.body = null, e.claimToken = null, "
+            + "e.attempts = e.attempts + 1, e.lastError = null WHERE e.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("now") OffsetDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEmail e SET e.status = :status, e.nextAttemptAt = :nextAttemptAt, e.claimToken = null, "
+            + "e.attempts = e.attempts + 1, e.lastError = :error WHERE e.id = :id")
+    int markFailed(@Param("id") Long id, @Param("status") String status,
+            @Param("nextAttemptAt") OffsetDateTime nextAttemptAt, @Param("error") String error);
+
+    // Not sent for a reason other than SMTP (e.g. the invoice is not ready): retry later
+    // without spending a delivery attempt
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEmail e SET e.status = 'PENDING', e.nextAttemptAt = :nextAttemptAt, e.claimToken = null, "
+            + "e.lastError = :error WHERE e.id = :id")
+    int markDeferred(@Param("id") Long id, @Param("nextAttemptAt") OffsetDateTime nextAttemptAt,
+            @Param("error") String error);
+
+    // Batches whose worker died mid-send go back to the queue
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEmail e SET e.status = 'PENDING', e.claimToken = null WHERE e.status = 'SENDING' AND e.claimedAt < :cutoff")
+    int releaseStaleClaims(@Param("cutoff") OffsetDateTime cutoff);
+
+    // Reset links and similar secrets must not outlive delivery in a dead letter
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEmail e SET e.body = null WHERE e.id = :id AND e.status = 'DEAD'")
+    int clearDeadBody(@Param("id") Long id);
+
+    // Only rows that still have a body can be sent again
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEmail e SET e.status = 'PENDING', e.attempts = 0, e.nextAttemptAt = :now "
+            + "WHERE e.status = 'DEAD' AND e.body IS NOT NULL")
+    int requeueDead(@Param("now") OffsetDateTime now);
+
+    // next_attempt_at of a dead row is (within one backoff step) when it died
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OutboxEmail e WHERE e.status = 'DEAD' AND e.nextAttemptAt < :cutoff")
+    int deleteDeadBefore(@Param("cutoff") OffsetDateTime cutoff);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OutboxEmail e WHERE e.status = 'SENT' AND e.sentAt < :cutoff")
+    int deleteSentBefore(@Param("cutoff") OffsetDateTime cutoff);
+
+    long countByStatus(String status);
+}
@@ -1,8 +1,30 @@
 package com.eduprajna.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.eduprajna.entity.Product;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {}
+import jakarta.persistence.QueryHint;
+
+public interface ProductRepository extends JpaRepository<Product, Long> {
+
+    @Query("SELECT p.price FROM Product p WHERE p.id = :id")
+    Optional<Double> findPriceById(@Param("id") Long id);
+
+    // Stored value: no auto-flush, so a caller's pending change to a managed product is not read back
+    @QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "COMMIT"))
+    @Query("SELECT p.imageUrl FROM Product p WHERE p.id = :id")
+    Optional<String> findImageUrlById(@Param("id") Long id);
+
+    // [id, imageUrl] of products using any of the given image urls
+    @Query("SELECT p.id, p.imageUrl FROM Product p WHERE p.imageUrl IN :urls")
+    List<Object[]> findIdsByImageUrlIn(@Param("urls") Collection<String> urls);
+}
 // CategoryRepository.java, UserRepository.java, OrderRepository.java, OrderItemRepository.java
\ No newline at end of file
@@ -1,9 +1,16 @@
 package com.eduprajna.repository;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.eduprajna.entity.ProductVariant;
 
 public interface ProductVariantRepository extends JpaRepository<ProductVariant, Long> {
 
+    // [id, price] of a product's variants, read as scalars so nothing is attached to the persistence context
+    @Query("SELECT v.id, v.price FROM ProductVariant v WHERE v.product.id = :productId")
+    List<Object[]> findPricesByProductId(@Param("productId") Long productId);
 }
@@ -0,0 +1,62 @@
+package com.eduprajna.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.eduprajna.entity.UploadedFile;
+
+import jakarta.persistence.LockModeType;
+
+public interface UploadedFileRepository extends JpaRepository<UploadedFile, Long> {
+
+    // Row lock serialises a store and a release of the same content
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM UploadedFile f WHERE f.sha256 = :sha256")
+    Optional<UploadedFile> findBySha256ForUpdate(@Param("sha256") String sha256);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM UploadedFile f WHERE f.storagePath = :storagePath")
+    Optional<UploadedFile> findByStoragePathForUpdate(@Param("storagePath") String storagePath);
+
+    @Query("SELECT f.storagePath FROM UploadedFile f ORDER BY f.id")
+    List<String> findAllStoragePaths();
+
+    boolean existsByStoragePath(String storagePath);
+
+    /**
+     * Media library page; an empty mediaType / query means "any"
+     * (query is a lower-case LIKE pattern on the original file name)
+     */
+    @Query("SELECT f FROM UploadedFile f WHERE (:mediaType = '' OR f.contentType = :mediaType) "
+            + "AND (:query = '' OR LOWER(f.originalFilename) LIKE :query)")
+    Page<UploadedFile> search(@Param("mediaType") String mediaType, @Param("query") String query, Pageable pageable);
+
+    // Rows created before dimensions were recorded
+    @Query("SELECT f FROM UploadedFile f WHERE f.width IS NULL AND f.contentType LIKE 'image/%' AND f.id > :afterId ORDER BY f.id")
+    List<UploadedFile> findImagesWithoutDimensions(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Reference counting: one reference per product image and per order item snapshot
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadedFile f SET f.refCount = f.refCount + 1 WHERE f.storagePath = :storagePath")
+    int incrementRefCount(@Param("storagePath") String storagePath);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadedFile f SET f.refCount = f.refCount - 1 WHERE f.storagePath = :storagePath AND f.refCount > 0")
+    int decrementRefCount(@Param("storagePath") String storagePath);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadedFile f WHERE f.storagePath = :storagePath")
+    int deleteByStoragePath(@Param("storagePath") String storagePath);
+}
@@ -1,11 +1,35 @@
 package com.eduprajna.repository;
 
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.eduprajna.entity.User;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
-}
\ No newline at end of file
+
+    @Modifying
+    @Query("UPDATE User u SET u.totalOrders = u.totalOrders + 1, u.updatedAt = :now WHERE u.id = :id")
+    int incrementTotalOrders(@Param("id") Long id, @Param("now") OffsetDateTime now);
+
+    // Replaces the hash only if it is unchanged; does not count as a password change
+    @Modifying
+    @Query("UPDATE User u SET u.passwordHash = :newHash WHERE u.id = :id AND u.passwordHash = :oldHash")
+    int replacePasswordHash(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
+
+    /**
+     * Next page of campaign recipients among active customers, by id after a keyset cursor.
+     * Customers who opted out of the newsletter are skipped. Rows are [id, email, name].
+     */
+    @Query("SELECT u.id, u.email, u.name FROM User u WHERE u.id > :after AND u.isActive = true "
+            + "AND NOT EXISTS (SELECT s.id FROM NewsletterSubscriber s WHERE s.email = LOWER(u.email) "
+            + "AND s.unsubscribedAt IS NOT NULL) ORDER BY u.id")
+    List<Object[]> findCampaignRecipientsAfter(@Param("after") Long after, Pageable pageable);
+}
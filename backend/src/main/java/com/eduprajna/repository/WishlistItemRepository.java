@@ -5,9 +5,12 @@ import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.eduprajna.dto.WishlistItemDTO;
 import com.eduprajna.entity.Product;
 import com.eduprajna.entity.User;
 import com.eduprajna.entity.WishlistItem;
@@ -15,7 +18,20 @@ import com.eduprajna.entity.WishlistItem;
 @Repository
 public interface WishlistItemRepository extends JpaRepository<WishlistItem, Long> {
     List<WishlistItem> findByUserOrderByCreatedAtDesc(User user);
+
+    /**
+     * Wishlist rows with product data in a single query (no lazy loads per row)
+     */
+    @Query("SELECT new com.eduprajna.dto.WishlistItemDTO(p.id, p.name, p.imageUrl, p.price, w.createdAt, "
+            + "p.inStock, p.stockQuantity, p.category) "
+            + "FROM WishlistItem w JOIN w.product p WHERE w.user = :user ORDER BY w.createdAt DESC")
+    List<WishlistItemDTO> findWishlistView(@Param("user") User user);
     Optional<WishlistItem> findByUserAndProduct(User user, Product product);
+
+    // Product ids only, to build the membership bitmap without loading rows
+    @Query("SELECT w.product.id FROM WishlistItem w WHERE w.user = :user")
+    List<Long> findProductIdsByUser(@Param("user") User user);
+
     @Modifying
     @Transactional
     void deleteByUserAndProduct(User user, Product product);
@@ -0,0 +1,85 @@
+package com.eduprajna.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.eduprajna.event.AbandonedCartBatchEvent;
+import com.eduprajna.event.AbandonedCartEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Decouples the cart sweeper from remarketing listeners: the sweeper enqueues into a
+ * bounded queue (dropping when full) and a fixed-rate drain publishes at most
+ * max-per-second events per tick as one {@link AbandonedCartBatchEvent}.
+ */
+@Component
+public class AbandonedCartEventPublisher {
+    private static final Logger logger = LoggerFactory.getLogger(AbandonedCartEventPublisher.class);
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final BlockingQueue<AbandonedCartEvent> queue;
+    private final boolean enabled;
+    private final int maxPerSecond;
+    private final Counter published;
+    private final Counter dropped;
+
+    public AbandonedCartEventPublisher(ApplicationEventPublisher eventPublisher,
+            @Value("${carts.abandoned-events.enabled:false}") boolean enabled,
+            @Value("${carts.abandoned-events.queue-capacity:10000}") int queueCapacity,
+            @Value("${carts.abandoned-events.max-per-second:50}") int maxPerSecond,
+            MeterRegistry meterRegistry) {
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxPerSecond = maxPerSecond;
+        this.published = Counter.builder("carts.abandoned.events").tag("result", "published").register(meterRegistry);
+        this.dropped = Counter.builder("carts.abandoned.events").tag("result", "dropped").register(meterRegistry);
+        meterRegistry.gauge("carts.abandoned.events.queued", queue, BlockingQueue::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void enqueue(List<AbandonedCartEvent> events) {
+        if (!enabled) {
+            return;
+        }
+        for (AbandonedCartEvent event : events) {
+            if (!queue.offer(event)) {
+                dropped.increment();
+            }
+        }
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void drain() {
+        if (!enabled || queue.isEmpty()) {
+            return;
+        }
+        List<AbandonedCartEvent> batch = new ArrayList<>(Math.min(maxPerSecond, queue.size()));
+        queue.drainTo(batch, maxPerSecond);
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            eventPublisher.publishEvent(new AbandonedCartBatchEvent(batch));
+            published.increment(batch.size());
+        } catch (RuntimeException e) {
+            // A failing listener must not stall the queue; the batch is dropped
+            dropped.increment(batch.size());
+            logger.error("Abandoned cart listener failed for {} events", batch.size(), e);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.eduprajna.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.eduprajna.entity.User;
+
+/**
+ * Issues and verifies compact HMAC-SHA256 signed tokens.
+ *
+ * Token format: base64url(payload) + "." + base64url(signature), where the payload is
+ * "a|userId|role|expiresAtEpochSeconds|email" for access tokens and
+ * "r|userId|passwordVersion|expiresAtEpochSeconds" for refresh tokens.
+ * Verification is pure CPU work: no database access.
+ */
+@Service
+public class AccessTokenService {
+    private static final Logger logger = LoggerFactory.getLogger(AccessTokenService.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final long accessTtlSeconds;
+    private final long refreshTtlSeconds;
+
+    // Mac instances are not thread safe; keep one initialized instance per thread
+    private final ThreadLocal<Mac> macs;
+
+    /**
+     * Verified claims of an access token (used as the authenticated principal)
+     */
+    public record Claims(Long userId, String role, String email, long expiresAt) {}
+
+    /**
+     * Verified claims of a refresh token
+     */
+    public record RefreshClaims(Long userId, long passwordVersion, long expiresAt) {}
+
+    public AccessTokenService(@Value("${auth.token.secret:}") String secret,
+            @Value("${auth.token.access-ttl-seconds:900}") long accessTtlSeconds,
+            @Value("${auth.token.refresh-ttl-seconds:1209600}") long refreshTtlSeconds) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            logger.warn("auth.token.secret is not set; using a random key, tokens will not survive a restart");
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+            if (keyBytes.length < 32) {
+                logger.warn("auth.token.secret is shorter than 32 bytes; use a longer secret in production");
+            }
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.accessTtlSeconds = accessTtlSeconds;
+        this.refreshTtlSeconds = refreshTtlSeconds;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 is not available", e);
+            }
+        });
+    }
+
+    public long getAccessTtlSeconds() {
+        return accessTtlSeconds;
+    }
+
+    public String issueAccessToken(User user) {
+        long expiresAt = now() + accessTtlSeconds;
+        String role = user.getRole() != null ? user.getRole().toUpperCase() : "CUSTOMER";
+        return sign("a|" + user.getId() + "|" + role + "|" + expiresAt + "|" + user.getEmail());
+    }
+
+    public String issueRefreshToken(User user) {
+        long expiresAt = now() + refreshTtlSeconds;
+        return sign("r|" + user.getId() + "|" + passwordVersion(user) + "|" + expiresAt);
+    }
+
+    /**
+     * Refresh tokens carry the time of the last password change so that changing the
+     * password revokes every outstanding refresh token
+     */
+    public static long passwordVersion(User user) {
+        return user.getLastPasswordChange() != null ? user.getLastPasswordChange().toEpochSecond() : 0L;
+    }
+
+    public Optional<Claims> verifyAccessToken(String token) {
+        String payload = verifySignature(token);
+        if (payload == null || !payload.startsWith("a|")) {
+            return Optional.empty();
+        }
+        String[] parts = payload.split("\\|", 5);
+        if (parts.length != 5) {
+            return Optional.empty();
+        }
+        try {
+            long expiresAt = Long.parseLong(parts[3]);
+            if (expiresAt <= now()) {
+                return Optional.empty();
+            }
+            return Optional.of(new Claims(Long.parseLong(parts[1]), parts[2], parts[4], expiresAt));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    public Optional<RefreshClaims> verifyRefreshToken(String token) {
+        String payload = verifySignature(token);
+        if (payload == null || !payload.startsWith("r|")) {
+            return Optional.empty();
+        }
+        String[] parts = payload.split("\\|");
+        if (parts.length != 4) {
+            return Optional.empty();
+        }
+        try {
+            long expiresAt = Long.parseLong(parts[3]);
+            if (expiresAt <= now()) {
+                return Optional.empty();
+            }
+            return Optional.of(new RefreshClaims(Long.parseLong(parts[1]), Long.parseLong(parts[2]), expiresAt));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private String sign(String payload) {
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payloadBytes) + "." + ENCODER.encodeToString(macs.get().doFinal(payloadBytes));
+    }
+
+    /**
+     * @return the decoded payload if the signature is valid, null otherwise
+     */
+    private String verifySignature(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return null;
+        }
+        try {
+            byte[] payloadBytes = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            byte[] expected = macs.get().doFinal(payloadBytes);
+            if (!MessageDigest.isEqual(expected, signature)) {
+                return null;
+            }
+            return new String(payloadBytes, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000L;
+    }
+}
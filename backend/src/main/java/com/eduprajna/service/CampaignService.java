@@ -0,0 +1,459 @@
+package com.eduprajna.service;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.eduprajna.entity.EmailCampaign;
+import com.eduprajna.repository.EmailCampaignRepository;
+import com.eduprajna.repository.NewsletterSubscriberRepository;
+import com.eduprajna.repository.UserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Bulk email campaigns to newsletter subscribers or customers.
+ *
+ * A runner streams recipients from the database in keyset pages (id > cursor), renders
+ * each message from a compiled template and sends it over its own kept-open SMTP
+ * connection, paced to the campaign's messages-per-second rate. Only one page and one
+ * message are held at a time, so memory stays flat whatever the list size.
+ *
+ * After every page, and mid-page whenever a third of the lease has passed, the cursor
+ * and counters are checkpointed together with a lease (owner, lease_until) on the
+ * campaign row. A campaign whose runner died is picked up again once its lease expires
+ * and resumes after the last checkpoint, so at most one page can be sent twice. Pausing
+ * or cancelling stops the runner at its next checkpoint. When SMTP stays unreachable,
+ * or the runner fails otherwise, the campaign is paused with the error instead of
+ * burning through the list.
+ */
+@Service
+public class CampaignService {
+    private static final Logger logger = LoggerFactory.getLogger(CampaignService.class);
+
+    private static final Set<String> AUDIENCES = Set.of(EmailCampaign.SUBSCRIBERS, EmailCampaign.CUSTOMERS);
+
+    @Value("${campaign.from:noreply@sanathanaparampara.com}")
+    private String from;
+
+    @Value("${campaign.batch-size:200}")
+    private int batchSize;
+
+    @Value("${campaign.default-rate-per-second:10}")
+    private double defaultRate;
+
+    @Value("${campaign.max-rate-per-second:50}")
+    private double maxRate;
+
+    @Value("${campaign.send-attempts:3}")
+    private int sendAttempts;
+
+    @Value("${campaign.min-lease-seconds:120}")
+    private long minLeaseSeconds;
+
+    private final EmailCampaignRepository campaignRepository;
+    private final NewsletterSubscriberRepository subscriberRepository;
+    private final UserRepository userRepository;
+    private final EmailTemplateService templates;
+    private final NewsletterService newsletterService;
+    private final JavaMailSender mailSender;
+    private final ThreadPoolExecutor runners;
+    private final Set<Long> active = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
+    private final Counter sent;
+    private final Counter failed;
+
+    public CampaignService(EmailCampaignRepository campaignRepository,
+            NewsletterSubscriberRepository subscriberRepository, UserRepository userRepository,
+            EmailTemplateService templates, NewsletterService newsletterService, JavaMailSender mailSender,
+            @Value("${campaign.runners:1}") int runnerCount, MeterRegistry meterRegistry) {
+        this.campaignRepository = campaignRepository;
+        this.subscriberRepository = subscriberRepository;
+        this.userRepository = userRepository;
+        this.templates = templates;
+        this.newsletterService = newsletterService;
+        this.mailSender = mailSender;
+        int threads = Math.max(1, runnerCount);
+        AtomicInteger counter = new AtomicInteger();
+        this.runners = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(32), r -> {
+                    Thread t = new Thread(r, "email-campaign-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.sent = Counter.builder("email.campaign.messages").tag("result", "sent").register(meterRegistry);
+        this.failed = Counter.builder("email.campaign.messages").tag("result", "failed").register(meterRegistry);
+    }
+
+    /**
+     * Create a DRAFT campaign
+     *
+     * @throws IllegalArgumentException when a field is missing or invalid
+     */
+    public EmailCampaign create(Map<String, Object> request) {
+        EmailCampaign campaign = new EmailCampaign();
+        campaign.setName(requireText(request, "name"));
+        campaign.setSubject(requireText(request, "subject"));
+        String template = request.get("template") != null ? request.get("template").toString().trim() : "newsletter.html";
+        if (!templates.exists(template)) {
+            throw new IllegalArgumentException("Unknown email template: " + template);
+        }
+        campaign.setTemplate(template);
+        campaign.setContent(request.get("content") != null ? request.get("content").toString() : null);
+        String audience = request.get("audience") != null
+                ? request.get("audience").toString().trim().toUpperCase(Locale.ROOT)
+                : EmailCampaign.SUBSCRIBERS;
+        if (!AUDIENCES.contains(audience)) {
+            throw new IllegalArgumentException("Audience must be one of " + AUDIENCES);
+        }
+        campaign.setAudience(audience);
+        double rate = defaultRate;
+        if (request.get("ratePerSecond") != null) {
+            try {
+                rate = Double.parseDouble(request.get("ratePerSecond").toString());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("ratePerSecond must be a number");
+            }
+        }
+        if (!(rate > 0) || rate > maxRate) {
+            throw new IllegalArgumentException("ratePerSecond must be between 0 and " + maxRate);
+        }
+        campaign.setRatePerSecond(rate);
+        return campaignRepository.save(campaign);
+    }
+
+    public List<EmailCampaign> findAll() {
+        return campaignRepository.findAllByOrderByCreatedAtDesc();
+    }
+
+    public EmailCampaign get(Long id) {
+        return campaignRepository.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("Campaign not found with ID: " + id));
+    }
+
+    /**
+     * Start a DRAFT campaign or resume a PAUSED one from its checkpoint
+     *
+     * @throws IllegalStateException when the campaign is in another status
+     */
+    public EmailCampaign start(Long id) {
+        EmailCampaign campaign = get(id);
+        if (campaignRepository.markRunning(id, OffsetDateTime.now()) == 0) {
+            throw new IllegalStateException("Campaign " + id + " cannot be started while " + campaign.getStatus());
+        }
+        submit(id);
+        return get(id);
+    }
+
+    public EmailCampaign pause(Long id) {
+        return transition(id, List.of(EmailCampaign.RUNNING), EmailCampaign.PAUSED, null);
+    }
+
+    public EmailCampaign cancel(Long id) {
+        return transition(id, List.of(EmailCampaign.DRAFT, EmailCampaign.RUNNING, EmailCampaign.PAUSED),
+                EmailCampaign.CANCELLED, OffsetDateTime.now());
+    }
+
+    private EmailCampaign transition(Long id, List<String> from, String status, OffsetDateTime finishedAt) {
+        EmailCampaign campaign = get(id);
+        if (campaignRepository.transition(id, from, status, finishedAt) == 0) {
+            throw new IllegalStateException("Campaign " + id + " cannot be " + status.toLowerCase(Locale.ROOT)
+                    + " while " + campaign.getStatus());
+        }
+        return get(id);
+    }
+
+    /**
+     * Pick up RUNNING campaigns without a live lease: after a restart, or when the
+     * instance that was sending them died
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${campaign.poll-interval-ms:30000}", fixedDelayString = "${campaign.poll-interval-ms:30000}")
+    public void resumeUnleased() {
+        try {
+            for (Long id : campaignRepository.findUnleasedRunning(OffsetDateTime.now())) {
+                submit(id);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Could not look for campaigns to resume: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        runners.shutdownNow();
+    }
+
+    private void submit(Long id) {
+        if (!active.add(id)) {
+            return;
+        }
+        try {
+            runners.execute(() -> {
+                try {
+                    run(id);
+                } finally {
+                    active.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            active.remove(id);
+            logger.warn("Campaign {} not started now, runners are busy; it is retried on the next poll", id);
+        }
+    }
+
+    private void run(Long id) {
+        String owner = UUID.randomUUID().toString();
+        EmailCampaign campaign = campaignRepository.findById(id).orElse(null);
+        if (campaign == null) {
+            return;
+        }
+        double rate = Math.min(campaign.getRatePerSecond(), maxRate);
+        // Long enough to cover one page at the campaign's rate plus SMTP retries
+        long leaseSeconds = Math.max(minLeaseSeconds, (long) Math.ceil(batchSize / rate) * 2 + 60);
+        OffsetDateTime now = OffsetDateTime.now();
+        if (campaignRepository.acquireLease(id, owner, now, now.plusSeconds(leaseSeconds)) == 0) {
+            return; // another runner has it
+        }
+        if (!templates.exists(campaign.getTemplate())) {
+            campaignRepository.release(id, owner, EmailCampaign.PAUSED,
+                    "Unknown email template: " + campaign.getTemplate(), null);
+            return;
+        }
+        logger.info("Campaign {} ({}): sending to {} from recipient {} at {}/s", id, campaign.getName(),
+                campaign.getAudience(), campaign.getLastRecipientId(), rate);
+
+        SmtpConnection connection = new SmtpConnection(mailSender);
+        Pacer pacer = new Pacer(rate);
+        List<String> paragraphs = paragraphs(campaign.getContent());
+        long cursor = campaign.getLastRecipientId();
+        // Sent and failed since the last checkpoint
+        long pendingSent = 0;
+        long pendingFailed = 0;
+        // Checkpoint (and so extend the lease) well before it runs out, even mid-page
+        long checkpointEveryNanos = TimeUnit.SECONDS.toNanos(leaseSeconds) / 3;
+        long nextCheckpoint = System.nanoTime() + checkpointEveryNanos;
+        try {
+            while (running) {
+                List<Object[]> page = nextPage(campaign.getAudience(), cursor);
+                if (page.isEmpty()) {
+                    campaignRepository.release(id, owner, EmailCampaign.COMPLETED, null, OffsetDateTime.now());
+                    logger.info("Campaign {} completed", id);
+                    return;
+                }
+                for (Object[] row : page) {
+                    pacer.await();
+                    String email = (String) row[1];
+                    String name = row.length > 2 ? (String) row[2] : null;
+                    try {
+                        deliver(campaign, email, name, paragraphs, connection);
+                        pendingSent++;
+                        sent.increment();
+                    } catch (RecipientRejectedException e) {
+                        pendingFailed++;
+                        failed.increment();
+                        logger.debug("Campaign {}: {} rejected: {}", id, email, e.getMessage());
+                    } catch (SmtpUnavailableException e) {
+                        // Keep what was sent, then stop until an admin resumes the campaign
+                        campaignRepository.checkpoint(id, owner, cursor, pendingSent, pendingFailed,
+                                OffsetDateTime.now().plusSeconds(leaseSeconds));
+                        campaignRepository.release(id, owner, EmailCampaign.PAUSED, truncate(e.getMessage()), null);
+                        logger.error("Campaign {} paused after recipient {}: {}", id, cursor, e.getMessage());
+                        return;
+                    }
+                    cursor = ((Number) row[0]).longValue();
+                    if (System.nanoTime() - nextCheckpoint >= 0) {
+                        if (!checkpoint(id, owner, cursor, pendingSent, pendingFailed, leaseSeconds)) {
+                            return;
+                        }
+                        pendingSent = 0;
+                        pendingFailed = 0;
+                        nextCheckpoint = System.nanoTime() + checkpointEveryNanos;
+                    }
+                }
+                if (!checkpoint(id, owner, cursor, pendingSent, pendingFailed, leaseSeconds)) {
+                    return;
+                }
+                pendingSent = 0;
+                pendingFailed = 0;
+                nextCheckpoint = System.nanoTime() + checkpointEveryNanos;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Database trouble or a template that cannot render: keep the progress made since
+            // the last checkpoint and pause with the error until an admin resumes
+            logger.error("Campaign {} runner failed after recipient {}: {}", id, cursor, e.getMessage(), e);
+            try {
+                campaignRepository.checkpoint(id, owner, cursor, pendingSent, pendingFailed,
+                        OffsetDateTime.now().plusSeconds(leaseSeconds));
+                campaignRepository.release(id, owner, EmailCampaign.PAUSED, truncate(String.valueOf(e.getMessage())),
+                        null);
+            } catch (RuntimeException inner) {
+                // The lease expires and the campaign resumes from its last checkpoint
+                logger.error("Campaign {}: could not record the failure: {}", id, inner.getMessage());
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Record progress and extend the lease
+     *
+     * @return false when the campaign was paused or cancelled (or the lease lost) and the runner must stop
+     */
+    private boolean checkpoint(Long id, String owner, long cursor, long sentCount, long failedCount,
+            long leaseSeconds) {
+        if (campaignRepository.checkpoint(id, owner, cursor, sentCount, failedCount,
+                OffsetDateTime.now().plusSeconds(leaseSeconds)) == 0) {
+            campaignRepository.dropLease(id, owner);
+            logger.info("Campaign {} stopped after recipient {} (paused or cancelled)", id, cursor);
+            return false;
+        }
+        return true;
+    }
+
+    private List<Object[]> nextPage(String audience, long cursor) {
+        PageRequest page = PageRequest.of(0, batchSize);
+        return EmailCampaign.CUSTOMERS.equals(audience)
+                ? userRepository.findCampaignRecipientsAfter(cursor, page)
+                : subscriberRepository.findActiveAfter(cursor, page);
+    }
+
+    private void deliver(EmailCampaign campaign, String email, String name, List<String> paragraphs,
+            SmtpConnection connection) throws RecipientRejectedException, SmtpUnavailableException,
+            InterruptedException {
+        String unsubscribeUrl = newsletterService.unsubscribeUrl(email);
+        Map<String, Object> model = new HashMap<>();
+        model.put("email", email);
+        model.put("name", name);
+        model.put("subject", campaign.getSubject());
+        model.put("paragraphs", paragraphs);
+        model.put("unsubscribeUrl", unsubscribeUrl);
+        String body = templates.render(campaign.getTemplate(), model);
+
+        Exception last = null;
+        for (int attempt = 1; attempt <= sendAttempts; attempt++) {
+            try {
+                MimeMessage message = connection.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, false, "UTF-8");
+                helper.setFrom(from);
+                helper.setTo(email);
+                helper.setSubject(campaign.getSubject());
+                helper.setText(body, campaign.getTemplate().endsWith(".html"));
+                message.addHeader("List-Unsubscribe", "<" + unsubscribeUrl + ">");
+                message.addHeader("List-Unsubscribe-Post", "List-Unsubscribe=One-Click");
+                connection.send(message);
+                return;
+            } catch (SmtpConnection.ConnectFailedException e) {
+                last = (Exception) e.getCause();
+            } catch (MessagingException | MailException e) {
+                if (SmtpConnection.isPermanent(e)) {
+                    throw new RecipientRejectedException(e.getMessage());
+                }
+                last = e;
+                connection.close(); // the session may be in a bad state
+            }
+            if (attempt < sendAttempts) {
+                TimeUnit.SECONDS.sleep(1L << attempt);
+            }
+        }
+        throw new SmtpUnavailableException(last != null ? last.getMessage() : "SMTP send failed");
+    }
+
+    private static List<String> paragraphs(String content) {
+        List<String> result = new ArrayList<>();
+        if (content == null) {
+            return result;
+        }
+        for (String paragraph : content.split("\\r?\\n\\s*\\r?\\n")) {
+            if (!paragraph.isBlank()) {
+                result.add(paragraph.trim());
+            }
+        }
+        return result;
+    }
+
+    private static String requireText(Map<String, Object> request, String field) {
+        Object value = request.get(field);
+        if (value == null || value.toString().isBlank()) {
+            throw new IllegalArgumentException(field + " is required");
+        }
+        return value.toString().trim();
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+
+    /**
+     * Spaces sends evenly at a fixed rate. After a stall (slow SMTP, retries) it does not
+     * burst to catch up.
+     */
+    private static final class Pacer {
+        private final long intervalNanos;
+        private long next = System.nanoTime();
+
+        Pacer(double ratePerSecond) {
+            this.intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        }
+
+        void await() throws InterruptedException {
+            long now = System.nanoTime();
+            if (next > now) {
+                TimeUnit.NANOSECONDS.sleep(next - now);
+            } else if (now - next > intervalNanos) {
+                next = now;
+            }
+            next += intervalNanos;
+        }
+    }
+
+    // The server refused this recipient; counted as failed and skipped
+    private static final class RecipientRejectedException extends Exception {
+        RecipientRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    // SMTP kept failing after all attempts; the campaign is paused
+    private static final class SmtpUnavailableException extends Exception {
+        SmtpUnavailableException(String message) {
+            super(message);
+        }
+    }
+}
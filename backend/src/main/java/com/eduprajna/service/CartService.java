@@ -1,5 +1,8 @@
 package com.eduprajna.service;
 
+import com.eduprajna.config.DatabasePlatform;
+import com.eduprajna.dto.CartBulkAddResult;
+import com.eduprajna.dto.CartItemDTO;
 import com.eduprajna.entity.CartItem;
 import com.eduprajna.entity.Product;
 import com.eduprajna.entity.ProductVariant;
@@ -7,96 +10,284 @@ import com.eduprajna.entity.User;
 import com.eduprajna.repository.CartItemRepository;
 import com.eduprajna.repository.ProductRepository;
 import com.eduprajna.repository.ProductVariantRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class CartService {
+    private static final Logger logger = LoggerFactory.getLogger(CartService.class);
+
+    private static final String UNIQUE_INDEX = "uk_cart_items_user_product_variant";
+    // NULLs never conflict in UNIQUE_INDEX: lines without a variant get their own key
+    // (a partial index on PostgreSQL, a generated COALESCE(variant_id, 0) column on MySQL)
+    private static final String NO_VARIANT_INDEX = "uk_cart_items_user_product_no_variant";
+
+    private static final String INSERT_COLUMNS =
+            "INSERT INTO cart_items (user_id, product_id, variant_id, quantity, price_at_add, variant_name, weight_value, weight_unit, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ";
+
+    private static final String POSTGRES_MERGE = "DO UPDATE SET "
+            + "quantity = cart_items.quantity + EXCLUDED.quantity, "
+            + "price_at_add = COALESCE(?, cart_items.price_at_add), "
+            + "variant_name = COALESCE(EXCLUDED.variant_name, cart_items.variant_name), "
+            + "weight_value = COALESCE(EXCLUDED.weight_value, cart_items.weight_value), "
+            + "weight_unit = COALESCE(EXCLUDED.weight_unit, cart_items.weight_unit), "
+            + "updated_at = EXCLUDED.updated_at";
+
+    private static final String UPSERT_POSTGRES = INSERT_COLUMNS
+            + "ON CONFLICT (user_id, product_id, variant_id) " + POSTGRES_MERGE;
+
+    private static final String UPSERT_POSTGRES_NO_VARIANT = INSERT_COLUMNS
+            + "ON CONFLICT (user_id, product_id) WHERE variant_id IS NULL " + POSTGRES_MERGE;
+
+    // Row alias form (MySQL 8.0.19+); VALUES() in ON DUPLICATE KEY UPDATE is deprecated.
+    // Any unique key fires it, so it serves lines with and without a variant.
+    private static final String UPSERT_MYSQL = INSERT_COLUMNS
+            + "AS incoming ON DUPLICATE KEY UPDATE "
+            + "quantity = cart_items.quantity + incoming.quantity, "
+            + "price_at_add = COALESCE(?, cart_items.price_at_add), "
+            + "variant_name = COALESCE(incoming.variant_name, cart_items.variant_name), "
+            + "weight_value = COALESCE(incoming.weight_value, cart_items.weight_value), "
+            + "weight_unit = COALESCE(incoming.weight_unit, cart_items.weight_unit), "
+            + "updated_at = incoming.updated_at";
+
+    /**
+     * One line of a bulk add; optional fields behave like the single add endpoint
+     */
+    public record BulkLine(Long productId, Long variantId, int quantity, String variantName,
+            Double weightValue, String weightUnit, Double price) {}
+
+    private record LineKey(Long productId, Long variantId) {}
+
     private final CartItemRepository cartRepo;
     private final ProductRepository productRepo;
     private final ProductVariantRepository productVariantRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final CartWriteBehindBuffer writeBehind;
 
-    public CartService(CartItemRepository cartRepo, ProductRepository productRepo, ProductVariantRepository productVariantRepo) {
+    public CartService(CartItemRepository cartRepo, ProductRepository productRepo, ProductVariantRepository productVariantRepo,
+            JdbcTemplate jdbcTemplate, DatabasePlatform databasePlatform, CartWriteBehindBuffer writeBehind) {
         this.cartRepo = cartRepo;
         this.productRepo = productRepo;
         this.productVariantRepo = productVariantRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.databasePlatform = databasePlatform;
+        this.writeBehind = writeBehind;
     }
 
     public List<CartItem> getCart(User user) {
-        return cartRepo.findByUser(user);
+        return writeBehind.overlay(user.getId(), cartRepo.findByUser(user));
     }
 
+    /**
+     * Cart lines as DTOs from one projection query; use this for read-only views
+     */
+    public List<CartItemDTO> getCartView(User user) {
+        return writeBehind.overlayView(user.getId(), cartRepo.findCartView(user));
+    }
+
+    /**
+     * Clear the price-changed flags once the customer has been shown the new prices
+     */
+    @Transactional
+    public void acknowledgePriceChanges(User user) {
+        cartRepo.clearPriceChanged(user);
+    }
+
+    /**
+     * Add a product (variant) to the cart, merging with an existing line for the same
+     * (user, product, variant). Lines are merged by a single upsert statement backed by
+     * the unique index (NO_VARIANT_INDEX for lines without a variant).
+     *
+     * The stock limit is checked after the upsert, on the quantity it produced: the upsert
+     * holds the line's row lock until commit, so a concurrent add for the same line waits
+     * and then sees this one. Going over the limit rolls the upsert back.
+     */
+    @Transactional
     public CartItem addToCart(User user, Long productId, int quantity, Long variantId, String variantName,
             Double weightValue, String weightUnit, Double price) {
-        final Product product = productRepo.findById(productId).orElseThrow();
-        final ProductVariant variant;
-        final Integer stockQty;
-        if (variantId != null) {
-            variant = productVariantRepo.findById(variantId).orElseThrow();
-            stockQty = variant.getStockQuantity();
-        } else {
-            variant = null;
-            stockQty = null;
-        }
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be at least 1");
         }
+        writeBehind.flushUser(user.getId());
+        final ProductVariant variant = variantId != null ? productVariantRepo.findById(variantId).orElseThrow() : null;
+        if (variant != null && (variant.getProduct() == null || !variant.getProduct().getId().equals(productId))) {
+            throw new IllegalArgumentException("Variant does not belong to this product");
+        }
+        final Integer stockQty = variant != null ? variant.getStockQuantity() : null;
         if (stockQty != null && stockQty <= 0) {
             throw new IllegalStateException("Variant is out of stock");
         }
-        // Check for existing item with SAME product and SAME variant
-        final List<CartItem> userItems = cartRepo.findByUser(user);
-        final Long finalVariantId = variantId;
-        final String finalVariantName = variantName;
-        final Double finalWeightValue = weightValue;
-        final String finalWeightUnit = weightUnit;
-        final Double finalPrice = price;
-        Optional<CartItem> existing = userItems.stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .filter(item -> {
-                    if (finalVariantId != null) {
-                        return finalVariantId.equals(item.getVariantId());
-                    }
-                    return item.getVariantId() == null;
-                })
-                .findFirst();
-
-        CartItem item = existing.orElseGet(() -> {
-            CartItem ci = new CartItem();
-            ci.setUser(user);
-            ci.setProduct(product);
-            ci.setPriceAtAdd(finalPrice != null ? finalPrice : (variant != null && variant.getPrice() != null ? variant.getPrice() : (product.getPrice() != null ? product.getPrice().doubleValue() : 0.0)));
-            ci.setQuantity(0);
-            ci.setVariantId(finalVariantId);
-            ci.setVariantName(finalVariantName);
-            ci.setWeightValue(finalWeightValue);
-            ci.setWeightUnit(finalWeightUnit);
-            return ci;
-        });
-        int current = item.getQuantity() == null ? 0 : item.getQuantity();
-        int newQty = current + quantity;
-        if (stockQty != null && newQty > stockQty) {
-            throw new IllegalStateException("Stock limit exceeded. Available: " + stockQty);
+
+        if (variant == null) {
+            return addWithoutVariant(user, productId, quantity, variantName, weightValue, weightUnit, price);
         }
-        item.setQuantity(Math.max(1, newQty));
-        if (price != null) {
-            item.setPriceAtAdd(price);
+
+        Double priceAtAdd = price != null ? price : variant.getPrice();
+        if (priceAtAdd == null) {
+            Product product = productRepo.findById(productId).orElseThrow();
+            priceAtAdd = product.getPrice() != null ? product.getPrice().doubleValue() : 0.0;
         }
-        if (variantName != null) {
-            item.setVariantName(variantName);
+        jdbcTemplate.update(databasePlatform.isPostgres() ? UPSERT_POSTGRES : UPSERT_MYSQL,
+                user.getId(), productId, variantId, quantity, priceAtAdd, variantName, weightValue, weightUnit,
+                Timestamp.from(Instant.now()), price);
+
+        if (stockQty != null) {
+            // Scalar read: loading the entity first would leave a stale instance if this throws
+            int total = cartRepo.findQuantity(user, productId, variantId).orElse(0);
+            if (total > stockQty) {
+                throw new IllegalStateException("Stock limit exceeded. Available: " + stockQty);
+            }
         }
-        if (variantId != null) {
-            item.setVariantId(variantId);
+        return cartRepo.findByUserAndProductIdAndVariantId(user, productId, variantId).orElseThrow();
+    }
+
+    private CartItem addWithoutVariant(User user, Long productId, int quantity, String variantName,
+            Double weightValue, String weightUnit, Double price) {
+        Product product = productRepo.findById(productId).orElseThrow();
+        Double priceAtAdd = price != null ? price : (product.getPrice() != null ? product.getPrice().doubleValue() : 0.0);
+        jdbcTemplate.update(databasePlatform.isPostgres() ? UPSERT_POSTGRES_NO_VARIANT : UPSERT_MYSQL,
+                user.getId(), productId, null, quantity, priceAtAdd, variantName, weightValue, weightUnit,
+                Timestamp.from(Instant.now()), price);
+        return cartRepo.findByUserAndProductIdWithoutVariant(user, productId).orElseThrow();
+    }
+
+    /**
+     * Add many lines at once (guest cart merge). Products and variants are resolved with
+     * one query each, merged with the current cart in memory and written with JDBC
+     * batches. Invalid lines are reported and skipped; the rest are applied. Variant
+     * lines are checked against stock again after the upserts (see addToCart); a concurrent
+     * add that pushed one over the limit rolls the whole batch back.
+     */
+    @Transactional
+    public CartBulkAddResult addAllToCart(User user, List<BulkLine> lines) {
+        writeBehind.flushUser(user.getId());
+        CartBulkAddResult result = new CartBulkAddResult();
+        result.requested = lines.size();
+
+        // Coalesce repeated lines for the same product/variant
+        Map<LineKey, BulkLine> requested = new LinkedHashMap<>();
+        for (BulkLine line : lines) {
+            if (line.productId() == null || line.quantity() <= 0) {
+                result.rejected.add(new CartBulkAddResult.Rejection(line.productId(), line.variantId(),
+                        "Product ID and a positive quantity are required"));
+                continue;
+            }
+            requested.merge(new LineKey(line.productId(), line.variantId()), line,
+                    (a, b) -> new BulkLine(a.productId(), a.variantId(), a.quantity() + b.quantity(),
+                            b.variantName() != null ? b.variantName() : a.variantName(),
+                            b.weightValue() != null ? b.weightValue() : a.weightValue(),
+                            b.weightUnit() != null ? b.weightUnit() : a.weightUnit(),
+                            b.price() != null ? b.price() : a.price()));
         }
-        if (weightValue != null) {
-            item.setWeightValue(weightValue);
+        if (requested.isEmpty()) {
+            return result;
+        }
+
+        Set<Long> productIds = requested.keySet().stream().map(LineKey::productId).collect(Collectors.toSet());
+        Set<Long> variantIds = requested.keySet().stream().map(LineKey::variantId).filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Product> products = productRepo.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        Map<Long, ProductVariant> variants = variantIds.isEmpty() ? Map.of()
+                : productVariantRepo.findAllById(variantIds).stream()
+                        .collect(Collectors.toMap(ProductVariant::getId, Function.identity()));
+
+        Map<LineKey, Integer> existing = new HashMap<>();
+        for (Object[] row : cartRepo.findLineKeysByUser(user)) {
+            existing.put(new LineKey((Long) row[1], (Long) row[2]), row[3] != null ? ((Number) row[3]).intValue() : 0);
         }
-        if (weightUnit != null) {
-            item.setWeightUnit(weightUnit);
+
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> noVariantUpserts = new ArrayList<>();
+        for (Map.Entry<LineKey, BulkLine> entry : requested.entrySet()) {
+            BulkLine line = entry.getValue();
+            Product product = products.get(line.productId());
+            ProductVariant variant = line.variantId() != null ? variants.get(line.variantId()) : null;
+            if (product == null) {
+                result.rejected.add(new CartBulkAddResult.Rejection(line.productId(), line.variantId(), "Product not found"));
+                continue;
+            }
+            if (line.variantId() != null && (variant == null || variant.getProduct() == null
+                    || !product.getId().equals(variant.getProduct().getId()))) {
+                result.rejected.add(new CartBulkAddResult.Rejection(line.productId(), line.variantId(), "Variant not found"));
+                continue;
+            }
+
+            Integer current = existing.get(entry.getKey());
+            int newQty = (current != null ? current : 0) + line.quantity();
+            Integer stockQty = variant != null ? variant.getStockQuantity() : null;
+            if (stockQty != null && stockQty <= 0) {
+                result.rejected.add(new CartBulkAddResult.Rejection(line.productId(), line.variantId(), "Variant is out of stock"));
+                continue;
+            }
+            if (stockQty != null && newQty > stockQty) {
+                result.rejected.add(new CartBulkAddResult.Rejection(line.productId(), line.variantId(),
+                        "Stock limit exceeded. Available: " + stockQty));
+                continue;
+            }
+
+            Double priceAtAdd = line.price() != null ? line.price()
+                    : (variant != null && variant.getPrice() != null ? variant.getPrice()
+                            : (product.getPrice() != null ? product.getPrice().doubleValue() : 0.0));
+            if (variant != null) {
+                Double weightValue = line.weightValue() != null ? line.weightValue() : variant.getWeightValue();
+                String weightUnit = line.weightUnit() != null ? line.weightUnit() : variant.getWeightUnit();
+                upserts.add(new Object[] { user.getId(), product.getId(), variant.getId(), line.quantity(), priceAtAdd,
+                        line.variantName(), weightValue, weightUnit, now, line.price() });
+            } else {
+                noVariantUpserts.add(new Object[] { user.getId(), product.getId(), null, line.quantity(), priceAtAdd,
+                        line.variantName(), line.weightValue(), line.weightUnit(), now, line.price() });
+            }
+            if (current != null) {
+                result.merged++;
+            } else {
+                result.added++;
+            }
         }
-        return cartRepo.save(item);
+
+        if (!upserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(databasePlatform.isPostgres() ? UPSERT_POSTGRES : UPSERT_MYSQL, upserts);
+            for (Object[] row : cartRepo.findLineKeysByUser(user)) {
+                ProductVariant variant = row[2] != null ? variants.get((Long) row[2]) : null;
+                Integer stockQty = variant != null ? variant.getStockQuantity() : null;
+                if (stockQty != null && row[3] != null && ((Number) row[3]).intValue() > stockQty
+                        && requested.containsKey(new LineKey((Long) row[1], (Long) row[2]))) {
+                    throw new IllegalStateException("Stock limit exceeded. Available: " + stockQty);
+                }
+            }
+        }
+        if (!noVariantUpserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(databasePlatform.isPostgres() ? UPSERT_POSTGRES_NO_VARIANT : UPSERT_MYSQL,
+                    noVariantUpserts);
+        }
+        return result;
     }
 
     // Keep the old signature for backward compatibility
@@ -104,49 +295,148 @@ public class CartService {
         return addToCart(user, productId, quantity, null, null, null, null, null);
     }
 
-    public void removeItemByProductId(User user, Long productId) {
-        List<CartItem> items = cartRepo.findByUser(user);
-        for (CartItem item : items) {
-            if (item.getProduct().getId().equals(productId)) {
-                cartRepo.delete(item);
+    /**
+     * Set a line's quantity. With the write-behind buffer enabled the new quantity is
+     * only recorded in memory and the returned item is an unmanaged copy.
+     */
+    @Transactional
+    public CartItem updateQuantity(User user, Long productId, int quantity, Long variantId) {
+        if (variantId != null) {
+            ProductVariant variant = productVariantRepo.findById(variantId).orElseThrow();
+            Integer stockQty = variant.getStockQuantity();
+            if (stockQty != null && stockQty <= 0) {
+                throw new IllegalStateException("Variant is out of stock");
+            }
+            if (quantity <= 0) {
+                throw new IllegalArgumentException("Quantity must be at least 1");
             }
+            if (stockQty != null && quantity > stockQty) {
+                throw new IllegalStateException("Stock limit exceeded. Available: " + stockQty);
+            }
+        } else if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be at least 1");
         }
-    }
 
-    public CartItem updateQuantity(User user, Long productId, int quantity, Long variantId) {
-        Product product = productRepo.findById(productId).orElseThrow();
-        ProductVariant variant = null;
-        if (variantId != null) {
-            variant = productVariantRepo.findById(variantId).orElseThrow();
+        if (writeBehind.isEnabled()) {
+            CartItem item = cartRepo.findItem(user, productId, variantId).orElseThrow();
+            writeBehind.bufferQuantity(user.getId(), productId, variantId, quantity);
+            return CartWriteBehindBuffer.withQuantity(item, quantity);
         }
-        CartItem item = cartRepo.findByUser(user).stream()
-            .filter(ci -> ci.getProduct().getId().equals(productId) && ((variantId == null && ci.getVariantId() == null) || (variantId != null && variantId.equals(ci.getVariantId()))))
-            .findFirst().orElseThrow();
-        Integer stockQty = variant != null ? variant.getStockQuantity() : null;
-        if (stockQty != null && stockQty <= 0) {
-            throw new IllegalStateException("Variant is out of stock");
+
+        int updated = variantId != null
+                ? cartRepo.updateQuantity(user, productId, variantId, quantity, OffsetDateTime.now())
+                : cartRepo.updateQuantityWithoutVariant(user, productId, quantity, OffsetDateTime.now());
+        if (updated == 0) {
+            throw new NoSuchElementException("Cart item not found");
         }
-        if (quantity <= 0) {
-            throw new IllegalArgumentException("Quantity must be at least 1");
+        return cartRepo.findItem(user, productId, variantId).orElseThrow();
+    }
+
+    /**
+     * Remove one variant's line, or every line of the product when no variant is given
+     */
+    public void removeItem(User user, Long productId, Long variantId) {
+        writeBehind.flushUser(user.getId());
+        if (variantId != null) {
+            cartRepo.deleteByUserAndProductIdAndVariantId(user, productId, variantId);
+        } else {
+            cartRepo.deleteByUserAndProductId(user, productId);
         }
-        if (stockQty != null && quantity > stockQty) {
-            throw new IllegalStateException("Stock limit exceeded. Available: " + stockQty);
+    }
+
+    public void clearCart(User user) {
+        writeBehind.flushUser(user.getId());
+        cartRepo.deleteByUser(user);
+    }
+
+    /**
+     * Hibernate cannot add the unique indexes while duplicate lines exist (older concurrent
+     * adds could create them), and cannot express NO_VARIANT_INDEX at all, so merge
+     * duplicates into the newest line and create them here.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureUniqueIndex() {
+        try {
+            Map<String, Set<String>> indexes = uniqueIndexes();
+            boolean hasVariantIndex = indexes.containsValue(Set.of("user_id", "product_id", "variant_id"));
+            boolean hasNoVariantIndex = indexes.containsKey(NO_VARIANT_INDEX);
+            if (hasVariantIndex && hasNoVariantIndex) {
+                return;
+            }
+            int merged = mergeDuplicateLines();
+            if (!hasVariantIndex) {
+                jdbcTemplate.execute("CREATE UNIQUE INDEX " + UNIQUE_INDEX + " ON cart_items (user_id, product_id, variant_id)");
+                logger.info("Created {} on cart_items", UNIQUE_INDEX);
+            }
+            if (!hasNoVariantIndex) {
+                createNoVariantIndex();
+            }
+            logger.info("Merged {} duplicate cart lines", merged);
+        } catch (Exception e) {
+            logger.warn("Could not ensure the unique indexes on cart_items: {}", e.getMessage());
         }
-        item.setQuantity(quantity);
-        return cartRepo.save(item);
     }
 
-    public void removeItem(User user, Long productId) {
-        Product product = productRepo.findById(productId).orElseThrow();
-        List<CartItem> items = cartRepo.findByUser(user);
-        for (CartItem item : items) {
-            if (item.getProduct().getId().equals(productId)) {
-                cartRepo.delete(item);
+    private void createNoVariantIndex() {
+        if (databasePlatform.isPostgres()) {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX " + NO_VARIANT_INDEX
+                    + " ON cart_items (user_id, product_id) WHERE variant_id IS NULL");
+        } else if (databasePlatform.isMySql()) {
+            // MySQL has no partial indexes; key on a column that maps NULL to 0 (ids start at 1)
+            if (!hasColumn("variant_key")) {
+                jdbcTemplate.execute("ALTER TABLE cart_items ADD COLUMN variant_key BIGINT AS (COALESCE(variant_id, 0)) STORED");
             }
+            jdbcTemplate.execute("CREATE UNIQUE INDEX " + NO_VARIANT_INDEX + " ON cart_items (user_id, product_id, variant_key)");
+        } else {
+            logger.warn("{} is not supported on {}; lines without a variant are not deduplicated",
+                    NO_VARIANT_INDEX, databasePlatform.getProductName());
+            return;
         }
+        logger.info("Created {} on cart_items", NO_VARIANT_INDEX);
     }
 
-    public void clearCart(User user) {
-        cartRepo.deleteByUser(user);
+    // Lower-cased index name -> lower-cased columns
+    private Map<String, Set<String>> uniqueIndexes() {
+        return jdbcTemplate.execute((Connection c) -> {
+            DatabaseMetaData meta = c.getMetaData();
+            Map<String, Set<String>> columnsByIndex = new HashMap<>();
+            try (ResultSet rs = meta.getIndexInfo(c.getCatalog(), null, tableName(meta), true, false)) {
+                while (rs.next()) {
+                    String index = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (index != null && column != null) {
+                        columnsByIndex.computeIfAbsent(index.toLowerCase(), k -> new HashSet<>()).add(column.toLowerCase());
+                    }
+                }
+            }
+            return columnsByIndex;
+        });
+    }
+
+    private boolean hasColumn(String column) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((Connection c) -> {
+            DatabaseMetaData meta = c.getMetaData();
+            try (ResultSet rs = meta.getColumns(c.getCatalog(), null, tableName(meta), column)) {
+                return rs.next();
+            }
+        }));
+    }
+
+    private static String tableName(DatabaseMetaData meta) throws SQLException {
+        return meta.storesUpperCaseIdentifiers() ? "CART_ITEMS" : "cart_items";
+    }
+
+    private int mergeDuplicateLines() {
+        // Fold quantities into the newest line of each group, then drop the older ones.
+        // GROUP BY puts NULL variants together, so lines without a variant are merged too.
+        jdbcTemplate.update("UPDATE cart_items SET quantity = (SELECT t.total FROM "
+                + "(SELECT SUM(quantity) AS total, MAX(id) AS keep_id FROM cart_items "
+                + "GROUP BY user_id, product_id, variant_id HAVING COUNT(*) > 1) t "
+                + "WHERE t.keep_id = cart_items.id) "
+                + "WHERE id IN (SELECT k.keep_id FROM (SELECT MAX(id) AS keep_id FROM cart_items "
+                + "GROUP BY user_id, product_id, variant_id HAVING COUNT(*) > 1) k)");
+        return jdbcTemplate.update("DELETE FROM cart_items WHERE id NOT IN "
+                + "(SELECT k.keep_id FROM (SELECT MAX(id) AS keep_id FROM cart_items "
+                + "GROUP BY user_id, product_id, variant_id) k)");
     }
 }
@@ -0,0 +1,237 @@
+package com.eduprajna.service;
+
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.eduprajna.event.AbandonedCartEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Expires carts and checkout selections that have not been touched for N days.
+ *
+ * Both tables are walked in keyset order (user id for carts, id for selections) in
+ * bounded chunks; each chunk is deleted in its own short transaction so the job
+ * never holds locks for long. A cart is only deleted as a whole, and only while
+ * none of its lines has been touched since the cutoff. Carts with quantity changes still
+ * in the write-behind buffer count as touched; the buffer entries of deleted carts are
+ * discarded.
+ */
+@Service
+public class CartSweeperService {
+    private static final Logger logger = LoggerFactory.getLogger(CartSweeperService.class);
+
+    @Value("${carts.sweeper.enabled:false}")
+    private boolean enabled;
+
+    @Value("${carts.sweeper.cart-ttl-days:30}")
+    private int cartTtlDays;
+
+    @Value("${carts.sweeper.selection-ttl-days:7}")
+    private int selectionTtlDays;
+
+    @Value("${carts.sweeper.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${carts.sweeper.max-chunks-per-run:200}")
+    private int maxChunksPerRun;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AbandonedCartEventPublisher abandonedCartEvents;
+    private final CartWriteBehindBuffer writeBehind;
+    private final Counter cartLinesDeleted;
+    private final Counter cartsExpired;
+    private final Counter selectionsDeleted;
+    private final Timer runTimer;
+
+    private record StaleCart(Long userId, String email, int itemCount, double cartValue, Timestamp lastUpdatedAt) {}
+
+    public CartSweeperService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            AbandonedCartEventPublisher abandonedCartEvents, CartWriteBehindBuffer writeBehind,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.abandonedCartEvents = abandonedCartEvents;
+        this.writeBehind = writeBehind;
+        this.cartLinesDeleted = Counter.builder("carts.sweeper.deleted").tag("table", "cart_items").register(meterRegistry);
+        this.cartsExpired = Counter.builder("carts.sweeper.carts.expired").register(meterRegistry);
+        this.selectionsDeleted = Counter.builder("carts.sweeper.deleted").tag("table", "checkout_selections").register(meterRegistry);
+        this.runTimer = Timer.builder("carts.sweeper.run").register(meterRegistry);
+    }
+
+    /**
+     * Rows created before updated_at existed start their TTL now instead of expiring at once
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillUpdatedAt() {
+        try {
+            Timestamp now = Timestamp.from(OffsetDateTime.now().toInstant());
+            int carts = jdbcTemplate.update("UPDATE cart_items SET updated_at = ? WHERE updated_at IS NULL", now);
+            int selections = jdbcTemplate.update("UPDATE checkout_selections SET updated_at = ? WHERE updated_at IS NULL", now);
+            if (carts > 0 || selections > 0) {
+                logger.info("Backfilled updated_at on {} cart lines and {} checkout selections", carts, selections);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not backfill updated_at for the cart sweeper: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${carts.sweeper.cron:0 15 4 * * *}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        runTimer.record(() -> {
+            int carts = sweepCarts(OffsetDateTime.now().minusDays(cartTtlDays));
+            int selections = sweepSelections(OffsetDateTime.now().minusDays(selectionTtlDays));
+            logger.info("Cart sweeper finished: {} carts and {} checkout selections expired", carts, selections);
+        });
+    }
+
+    /**
+     * Expire whole carts whose newest line is older than the cutoff
+     */
+    int sweepCarts(OffsetDateTime cutoff) {
+        Timestamp cutoffTs = Timestamp.from(cutoff.toInstant());
+        long lastUserId = 0L;
+        int total = 0;
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            // Each chunk covers the next chunkSize carts by user id, stale or not
+            Long upperUserId = jdbcTemplate.queryForObject(
+                    "SELECT MAX(user_id) FROM (SELECT DISTINCT user_id FROM cart_items WHERE user_id > ? "
+                            + "ORDER BY user_id LIMIT ?) page",
+                    Long.class, lastUserId, chunkSize);
+            if (upperUserId == null) {
+                break;
+            }
+            final long afterUserId = lastUserId;
+            List<StaleCart> expired = transactionTemplate.execute(
+                    status -> deleteCartChunk(afterUserId, upperUserId, cutoffTs));
+            if (expired != null && !expired.isEmpty()) {
+                // The lines are gone: drop anything buffered for them since the filter above
+                expired.forEach(c -> writeBehind.discardUser(c.userId()));
+                total += expired.size();
+                publishAbandoned(expired);
+            }
+            lastUserId = upperUserId;
+        }
+        return total;
+    }
+
+    /**
+     * Delete the stale carts with user ids in (afterUserId, upperUserId]
+     *
+     * @return the carts that were actually deleted
+     */
+    private List<StaleCart> deleteCartChunk(long afterUserId, long upperUserId, Timestamp cutoff) {
+        List<StaleCart> stale = jdbcTemplate.query(
+                "SELECT c.user_id, u.email, COUNT(*) AS item_count, SUM(c.quantity * c.price_at_add) AS cart_value, "
+                        + "MAX(c.updated_at) AS last_updated FROM cart_items c JOIN users u ON u.id = c.user_id "
+                        + "WHERE c.user_id > ? AND c.user_id <= ? GROUP BY c.user_id, u.email "
+                        + "HAVING MAX(c.updated_at) < ? ORDER BY c.user_id",
+                (rs, rowNum) -> new StaleCart(rs.getLong("user_id"), rs.getString("email"), rs.getInt("item_count"),
+                        rs.getDouble("cart_value"), rs.getTimestamp("last_updated")),
+                afterUserId, upperUserId, cutoff);
+        // A quantity change waiting in the write-behind buffer is a touch the table does not show yet
+        stale.removeIf(c -> writeBehind.hasPending(c.userId()));
+        if (stale.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String inUsers = placeholders(stale.size());
+        List<Object> args = new ArrayList<>(stale.size() * 2 + 2);
+        stale.forEach(c -> args.add(c.userId()));
+        args.add(cutoff);
+        stale.forEach(c -> args.add(c.userId()));
+        args.add(cutoff);
+        // A customer may have touched the cart since the select: skip any cart that now has a
+        // fresh line, so carts are deleted whole or not at all. The inner DISTINCT keeps MySQL
+        // from merging the derived table (it rejects reading the table a DELETE targets).
+        int deleted = jdbcTemplate.update("DELETE FROM cart_items WHERE user_id IN (" + inUsers
+                + ") AND updated_at < ? AND user_id NOT IN (SELECT user_id FROM (SELECT DISTINCT user_id "
+                + "FROM cart_items WHERE user_id IN (" + inUsers + ") AND updated_at >= ?) fresh)",
+                args.toArray());
+        if (deleted == 0) {
+            return Collections.emptyList();
+        }
+        cartLinesDeleted.increment(deleted);
+
+        Set<Long> remaining = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT DISTINCT user_id FROM cart_items WHERE user_id IN (" + inUsers + ")",
+                Long.class, stale.stream().map(StaleCart::userId).toArray()));
+        List<StaleCart> expired = new ArrayList<>(stale.size());
+        for (StaleCart c : stale) {
+            if (!remaining.contains(c.userId())) {
+                expired.add(c);
+            }
+        }
+        cartsExpired.increment(expired.size());
+        return expired;
+    }
+
+    /**
+     * Delete checkout selections not saved since the cutoff
+     */
+    int sweepSelections(OffsetDateTime cutoff) {
+        Timestamp cutoffTs = Timestamp.from(cutoff.toInstant());
+        long lastId = 0L;
+        int total = 0;
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM checkout_selections WHERE id > ? AND updated_at < ? ORDER BY id LIMIT ?",
+                    Long.class, lastId, cutoffTs, chunkSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<Object> args = new ArrayList<>(ids);
+            args.add(cutoffTs);
+            Integer deleted = transactionTemplate.execute(status -> jdbcTemplate.update(
+                    "DELETE FROM checkout_selections WHERE id IN (" + placeholders(ids.size()) + ") AND updated_at < ?",
+                    args.toArray()));
+            int count = deleted != null ? deleted : 0;
+            selectionsDeleted.increment(count);
+            total += count;
+            lastId = ids.get(ids.size() - 1);
+            if (ids.size() < chunkSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private void publishAbandoned(List<StaleCart> stale) {
+        if (!abandonedCartEvents.isEnabled()) {
+            return;
+        }
+        List<AbandonedCartEvent> events = new ArrayList<>(stale.size());
+        for (StaleCart c : stale) {
+            OffsetDateTime lastUpdated = c.lastUpdatedAt() != null
+                    ? OffsetDateTime.ofInstant(c.lastUpdatedAt().toInstant(), ZoneId.systemDefault())
+                    : null;
+            events.add(new AbandonedCartEvent(c.userId(), c.email(), c.itemCount(), c.cartValue(), lastUpdated));
+        }
+        abandonedCartEvents.enqueue(events);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,276 @@
+package com.eduprajna.service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.eduprajna.dto.CartItemDTO;
+import com.eduprajna.entity.CartItem;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Optional write-behind buffer for cart quantity changes.
+ *
+ * Quantity updates (the +/- buttons) are recorded in memory per user and written to
+ * cart_items in one JDBC batch per lock stripe on a short interval, so rapid clicks on
+ * the same line collapse into a single UPDATE. Any other cart mutation, checkout and
+ * shutdown flush the user's pending changes first so the table is authoritative again.
+ *
+ * State is split into lock stripes keyed by user id. A stripe's lock is held while its
+ * changes are written, so a newer value can never be overwritten by an older flush.
+ */
+@Component
+public class CartWriteBehindBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(CartWriteBehindBuffer.class);
+
+    private static final int STRIPES = 64;
+
+    private static final String UPDATE_WITH_VARIANT =
+            "UPDATE cart_items SET quantity = ?, updated_at = ? WHERE user_id = ? AND product_id = ? AND variant_id = ?";
+    private static final String UPDATE_WITHOUT_VARIANT =
+            "UPDATE cart_items SET quantity = ?, updated_at = ? WHERE user_id = ? AND product_id = ? AND variant_id IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    // Flushes commit on their own, independent of whichever request triggered them
+    private final TransactionTemplate flushTransaction;
+    private final boolean enabled;
+    private final int maxUsers;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger pendingUsers = new AtomicInteger();
+    private final Counter buffered;
+    private final Counter flushedRows;
+
+    private record LineKey(Long productId, Long variantId) {}
+
+    private record PendingUpdate(Long userId, LineKey key, int quantity) {}
+
+    private static final class Stripe {
+        final Map<Long, Map<LineKey, Integer>> users = new HashMap<>();
+    }
+
+    public CartWriteBehindBuffer(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            @Value("${cart.write-behind.enabled:false}") boolean enabled,
+            @Value("${cart.write-behind.max-users:50000}") int maxUsers,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.maxUsers = maxUsers;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.buffered = Counter.builder("cart.writebehind.buffered").register(meterRegistry);
+        this.flushedRows = Counter.builder("cart.writebehind.flushed.rows").register(meterRegistry);
+        meterRegistry.gauge("cart.writebehind.pending.users", pendingUsers);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private Stripe stripe(Long userId) {
+        return stripes[(Long.hashCode(userId) & 0x7fffffff) % STRIPES];
+    }
+
+    /**
+     * Record the new quantity of a cart line; the latest value per line wins
+     */
+    public void bufferQuantity(Long userId, Long productId, Long variantId, int quantity) {
+        Stripe stripe = stripe(userId);
+        boolean overCapacity;
+        synchronized (stripe) {
+            Map<LineKey, Integer> lines = stripe.users.get(userId);
+            if (lines == null) {
+                lines = new HashMap<>();
+                stripe.users.put(userId, lines);
+                pendingUsers.incrementAndGet();
+            }
+            lines.put(new LineKey(productId, variantId), quantity);
+            overCapacity = pendingUsers.get() > maxUsers;
+        }
+        buffered.increment();
+        if (overCapacity) {
+            // Too many dirty carts held in memory: write this one through immediately
+            flushUser(userId);
+        }
+    }
+
+    private Map<LineKey, Integer> pendingLines(Long userId) {
+        if (!enabled) {
+            return Map.of();
+        }
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            Map<LineKey, Integer> pending = stripe.users.get(userId);
+            return pending == null || pending.isEmpty() ? Map.of() : new HashMap<>(pending);
+        }
+    }
+
+    /**
+     * Return the cart with pending quantities applied. Lines with a pending change are
+     * replaced by unmanaged copies so the overlay can never be flushed by Hibernate.
+     */
+    public List<CartItem> overlay(Long userId, List<CartItem> items) {
+        Map<LineKey, Integer> lines = pendingLines(userId);
+        if (lines.isEmpty()) {
+            return items;
+        }
+        List<CartItem> result = new ArrayList<>(items.size());
+        for (CartItem item : items) {
+            Integer quantity = lines.get(new LineKey(item.getProduct().getId(), item.getVariantId()));
+            result.add(quantity != null ? withQuantity(item, quantity) : item);
+        }
+        return result;
+    }
+
+    /**
+     * Apply pending quantities to cart DTOs (projection read path)
+     */
+    public List<CartItemDTO> overlayView(Long userId, List<CartItemDTO> items) {
+        Map<LineKey, Integer> lines = pendingLines(userId);
+        if (lines.isEmpty()) {
+            return items;
+        }
+        for (CartItemDTO dto : items) {
+            Integer quantity = lines.get(new LineKey(dto.productId, dto.variantId));
+            if (quantity != null) {
+                dto.quantity = quantity;
+                dto.lineTotal = (dto.price != null ? dto.price : 0.0) * quantity;
+            }
+        }
+        return items;
+    }
+
+    public static CartItem withQuantity(CartItem item, int quantity) {
+        CartItem copy = new CartItem();
+        copy.setId(item.getId());
+        copy.setUser(item.getUser());
+        copy.setProduct(item.getProduct());
+        copy.setQuantity(quantity);
+        copy.setPriceAtAdd(item.getPriceAtAdd());
+        copy.setVariantId(item.getVariantId());
+        copy.setVariantName(item.getVariantName());
+        copy.setWeightValue(item.getWeightValue());
+        copy.setWeightUnit(item.getWeightUnit());
+        copy.setPriceChanged(item.getPriceChanged());
+        copy.setPreviousPrice(item.getPreviousPrice());
+        copy.setUpdatedAt(item.getUpdatedAt());
+        return copy;
+    }
+
+    /**
+     * Synchronously write one user's pending changes (before other cart mutations and checkout)
+     */
+    public void flushUser(Long userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            Map<LineKey, Integer> lines = stripe.users.get(userId);
+            if (lines == null) {
+                return;
+            }
+            List<PendingUpdate> updates = new ArrayList<>(lines.size());
+            lines.forEach((key, quantity) -> updates.add(new PendingUpdate(userId, key, quantity)));
+            write(updates);
+            stripe.users.remove(userId);
+            pendingUsers.decrementAndGet();
+        }
+    }
+
+    /**
+     * True if the user has changes that are not written yet
+     */
+    public boolean hasPending(Long userId) {
+        return !pendingLines(userId).isEmpty();
+    }
+
+    /**
+     * Drop a user's pending changes without writing them (their cart lines were deleted)
+     */
+    public void discardUser(Long userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            if (stripe.users.remove(userId) != null) {
+                pendingUsers.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Periodic flush: one batch per stripe with every dirty line in it
+     */
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-interval-ms:2000}")
+    public void flushAll() {
+        if (!enabled || pendingUsers.get() == 0) {
+            return;
+        }
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (stripe.users.isEmpty()) {
+                    continue;
+                }
+                List<PendingUpdate> updates = new ArrayList<>();
+                stripe.users.forEach((userId, lines) ->
+                        lines.forEach((key, quantity) -> updates.add(new PendingUpdate(userId, key, quantity))));
+                try {
+                    write(updates);
+                    pendingUsers.addAndGet(-stripe.users.size());
+                    stripe.users.clear();
+                } catch (RuntimeException e) {
+                    // Keep the changes buffered and retry on the next run
+                    logger.error("Failed to flush {} buffered cart updates", updates.size(), e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushAll();
+    }
+
+    private void write(List<PendingUpdate> updates) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> withVariant = new ArrayList<>();
+        List<Object[]> withoutVariant = new ArrayList<>();
+        for (PendingUpdate u : updates) {
+            if (u.key().variantId() != null) {
+                withVariant.add(new Object[] { u.quantity(), now, u.userId(), u.key().productId(), u.key().variantId() });
+            } else {
+                withoutVariant.add(new Object[] { u.quantity(), now, u.userId(), u.key().productId() });
+            }
+        }
+        flushTransaction.executeWithoutResult(status -> {
+            if (!withVariant.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_WITH_VARIANT, withVariant);
+            }
+            if (!withoutVariant.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_WITHOUT_VARIANT, withoutVariant);
+            }
+        });
+        flushedRows.increment(updates.size());
+    }
+}
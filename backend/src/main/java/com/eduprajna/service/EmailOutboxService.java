@@ -0,0 +1,374 @@
+package com.eduprajna.service;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.eduprajna.entity.OutboxEmail;
+import com.eduprajna.repository.OutboxEmailRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Persistent email outbox. Callers only insert a row (inside their own transaction, so a
+ * message is queued exactly when the change that caused it commits) and return at once.
+ *
+ * A few worker threads claim due rows in batches and send them over an SMTP connection
+ * each worker keeps open between batches (see {@link SmtpConnection}). Failed messages
+ * are retried with exponential backoff and jitter; permanent failures (rejected
+ * addresses) and messages that run out of attempts end up DEAD. Delivery is
+ * at-least-once: a worker that dies mid-batch has its claim released and the batch is
+ * sent again.
+ */
+@Service
+public class EmailOutboxService {
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    @Value("${email.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${email.outbox.batch-size:20}")
+    private int batchSize;
+
+    @Value("${email.outbox.poll-interval-ms:5000}")
+    private long pollIntervalMillis;
+
+    @Value("${email.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${email.outbox.backoff-initial-seconds:30}")
+    private long backoffInitialSeconds;
+
+    @Value("${email.outbox.backoff-max-seconds:3600}")
+    private long backoffMaxSeconds;
+
+    @Value("${email.outbox.connection-idle-ms:30000}")
+    private long connectionIdleMillis;
+
+    @Value("${email.outbox.claim-timeout-minutes:10}")
+    private long claimTimeoutMinutes;
+
+    @Value("${email.outbox.sent-retention-days:30}")
+    private long sentRetentionDays;
+
+    @Value("${email.outbox.dead-retention-days:14}")
+    private long deadRetentionDays;
+
+    // After this long a message whose invoice still cannot be rendered is sent without it
+    @Value("${email.outbox.invoice-max-wait-minutes:60}")
+    private long invoiceMaxWaitMinutes;
+
+    // Kinds whose body carries a secret (reset links): dropped when the message goes DEAD
+    private static final Set<String> SENSITIVE_KINDS = Set.of("password-reset", "credentials");
+
+    private final OutboxEmailRepository outboxRepository;
+    private final JavaMailSender mailSender;
+    private final InvoiceService invoiceService;
+    private final int workerCount;
+    private final ThreadPoolExecutor workers;
+    private final Semaphore wakeups = new Semaphore(0);
+    private volatile boolean running;
+    private final Counter enqueued;
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter dead;
+    private final Timer batchTimer;
+
+    public EmailOutboxService(OutboxEmailRepository outboxRepository, JavaMailSender mailSender,
+            InvoiceService invoiceService, @Value("${email.outbox.workers:2}") int workerCount,
+            MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.mailSender = mailSender;
+        this.invoiceService = invoiceService;
+        this.workerCount = Math.max(1, workerCount);
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(this.workerCount, this.workerCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "email-outbox-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.enqueued = Counter.builder("email.outbox.messages").tag("result", "enqueued").register(meterRegistry);
+        this.sent = Counter.builder("email.outbox.messages").tag("result", "sent").register(meterRegistry);
+        this.retried = Counter.builder("email.outbox.messages").tag("result", "retried").register(meterRegistry);
+        this.dead = Counter.builder("email.outbox.messages").tag("result", "dead").register(meterRegistry);
+        this.batchTimer = Timer.builder("email.outbox.batch").register(meterRegistry);
+    }
+
+    /**
+     * Queue a message; it is picked up as soon as the surrounding transaction commits
+     */
+    public void enqueue(String kind, String from, String to, String subject, String body, boolean html) {
+        enqueue(kind, from, to, subject, body, html, null);
+    }
+
+    /**
+     * Queue a message with an order's invoice PDF attached; the invoice is read from the
+     * invoice cache (or rendered) when the message is sent
+     */
+    public void enqueue(String kind, String from, String to, String subject, String body, boolean html,
+            Long invoiceOrderId) {
+        OutboxEmail email = new OutboxEmail();
+        email.setKind(kind);
+        email.setFromAddress(from);
+        email.setRecipient(to);
+        email.setSubject(subject);
+        email.setBody(body);
+        email.setHtml(html);
+        email.setInvoiceOrderId(invoiceOrderId);
+        outboxRepository.save(email);
+        enqueued.increment();
+        TransactionCallbacks.afterCommit(this::wake);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            logger.info("Email outbox worker disabled; messages stay queued");
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::runWorker);
+        }
+        logger.info("Email outbox: {} workers, batches of {}", workerCount, batchSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        wakeups.release(workerCount);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * True if a message of this kind for this order is waiting to be (or being) sent
+     */
+    public boolean isQueued(String kind, Long orderId) {
+        return outboxRepository.existsByKindAndInvoiceOrderIdAndStatusIn(kind, orderId,
+                List.of(OutboxEmail.PENDING, OutboxEmail.SENDING));
+    }
+
+    /**
+     * Put dead messages back in the queue (e.g. after fixing SMTP credentials). Messages
+     * whose body was dropped (reset links) are not resent; the user can ask for a new one.
+     */
+    public int requeueDead() {
+        int requeued = outboxRepository.requeueDead(OffsetDateTime.now());
+        wake();
+        return requeued;
+    }
+
+    /**
+     * Release claims of crashed batches and drop old sent and dead rows
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.housekeeping-interval-ms:60000}")
+    public void housekeeping() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            OffsetDateTime now = OffsetDateTime.now();
+            int released = outboxRepository.releaseStaleClaims(now.minusMinutes(claimTimeoutMinutes));
+            int purged = outboxRepository.deleteSentBefore(now.minusDays(sentRetentionDays));
+            int purgedDead = outboxRepository.deleteDeadBefore(now.minusDays(deadRetentionDays));
+            if (released > 0 || purged > 0 || purgedDead > 0) {
+                logger.info("Email outbox: {} stale claims released, {} sent and {} dead messages purged",
+                        released, purged, purgedDead);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Email outbox housekeeping failed: {}", e.getMessage());
+        }
+    }
+
+    private void wake() {
+        if (wakeups.availablePermits() < workerCount) {
+            wakeups.release();
+        }
+    }
+
+    private void runWorker() {
+        SmtpConnection connection = new SmtpConnection(mailSender);
+        try {
+            while (running) {
+                try {
+                    List<OutboxEmail> batch = claimBatch();
+                    if (batch == null) {
+                        continue; // another worker claimed these rows first
+                    }
+                    if (!batch.isEmpty()) {
+                        batchTimer.record(() -> sendBatch(batch, connection));
+                        continue;
+                    }
+                    connection.closeIfIdle(connectionIdleMillis);
+                } catch (RuntimeException e) {
+                    // Database trouble: back off for a poll interval, the claims are released later
+                    logger.warn("Email outbox worker error: {}", e.getMessage());
+                }
+                try {
+                    wakeups.tryAcquire(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    // Empty when nothing is due, null when the due rows were claimed by another worker
+    private List<OutboxEmail> claimBatch() {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<Long> ids = outboxRepository.findDueIds(now, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String token = UUID.randomUUID().toString();
+        if (outboxRepository.claim(ids, token, now) == 0) {
+            return null;
+        }
+        return outboxRepository.findClaimed(token);
+    }
+
+    private void sendBatch(List<OutboxEmail> batch, SmtpConnection connection) {
+        List<Long> delivered = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEmail email = batch.get(i);
+            try {
+                connection.send(toMimeMessage(email));
+                delivered.add(email.getId());
+            } catch (InvoiceUnavailableException e) {
+                // Nothing went wrong on the SMTP side: keep the connection and the attempt budget
+                defer(email, e);
+            } catch (SmtpConnection.ConnectFailedException e) {
+                // Server unreachable: the rest of the batch would fail the same way
+                for (OutboxEmail rest : batch.subList(i, batch.size())) {
+                    fail(rest, e.getCause(), false);
+                }
+                break;
+            } catch (MessagingException | MailException e) {
+                boolean permanent = SmtpConnection.isPermanent(e);
+                fail(email, e, permanent);
+                if (!permanent) {
+                    connection.close(); // the session may be in a bad state; reconnect for the next one
+                }
+            }
+        }
+        if (!delivered.isEmpty()) {
+            outboxRepository.markSent(delivered, OffsetDateTime.now());
+            sent.increment(delivered.size());
+        }
+    }
+
+    private MimeMessage toMimeMessage(OutboxEmail email) throws MessagingException, InvoiceUnavailableException {
+        Optional<InvoiceService.Invoice> invoice = Optional.empty();
+        if (email.getInvoiceOrderId() != null) {
+            try {
+                invoice = invoiceService.getInvoice(email.getInvoiceOrderId());
+                if (invoice.isEmpty()) {
+                    logger.warn("Email {}: order {} no longer exists, sending without invoice", email.getId(),
+                            email.getInvoiceOrderId());
+                }
+            } catch (RuntimeException e) {
+                // Render pool busy or failing: wait for the invoice, but not forever
+                boolean lastChance = email.getAttempts() + 1 >= maxAttempts || email.getCreatedAt()
+                        .isBefore(OffsetDateTime.now().minusMinutes(invoiceMaxWaitMinutes));
+                if (!lastChance) {
+                    throw new InvoiceUnavailableException("Invoice for order " + email.getInvoiceOrderId()
+                            + " not available: " + e.getMessage());
+                }
+                logger.warn("Email {}: invoice for order {} still not available, sending without it: {}",
+                        email.getId(), email.getInvoiceOrderId(), e.getMessage());
+            }
+        }
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, invoice.isPresent(), "UTF-8");
+        helper.setFrom(email.getFromAddress());
+        helper.setTo(email.getRecipient());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getBody() != null ? email.getBody() : "", Boolean.TRUE.equals(email.getHtml()));
+        if (invoice.isPresent()) {
+            helper.addAttachment(invoice.get().filename(), new FileSystemResource(invoice.get().path()),
+                    "application/pdf");
+        }
+        return message;
+    }
+
+    private void fail(OutboxEmail email, Throwable error, boolean permanent) {
+        int attempts = email.getAttempts() + 1;
+        boolean giveUp = permanent || attempts >= maxAttempts;
+        String message = error != null && error.getMessage() != null ? error.getMessage() : String.valueOf(error);
+        if (message.length() > 500) {
+            message = message.substring(0, 500);
+        }
+        outboxRepository.markFailed(email.getId(), giveUp ? OutboxEmail.DEAD : OutboxEmail.PENDING,
+                OffsetDateTime.now().plusSeconds(backoffSeconds(attempts)), message);
+        if (giveUp) {
+            if (SENSITIVE_KINDS.contains(email.getKind())) {
+                outboxRepository.clearDeadBody(email.getId());
+            }
+            dead.increment();
+            logger.error("Email {} ({}) to {} is dead after {} attempts: {}", email.getId(), email.getKind(),
+                    email.getRecipient(), attempts, message);
+        } else {
+            retried.increment();
+            logger.warn("Email {} ({}) to {} failed (attempt {}), retrying later: {}", email.getId(), email.getKind(),
+                    email.getRecipient(), attempts, message);
+        }
+    }
+
+    private void defer(OutboxEmail email, InvoiceUnavailableException e) {
+        outboxRepository.markDeferred(email.getId(), OffsetDateTime.now().plusSeconds(backoffSeconds(1)),
+                e.getMessage().length() > 500 ? e.getMessage().substring(0, 500) : e.getMessage());
+        logger.info("Email {} ({}) deferred: {}", email.getId(), email.getKind(), e.getMessage());
+    }
+
+    // initial * 2^(attempts-1), capped, with +-20% jitter so retries of one outage spread out
+    long backoffSeconds(int attempts) {
+        long delay = backoffInitialSeconds << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, backoffMaxSeconds);
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return Math.max(1, Math.round(delay * jitter));
+    }
+
+    // The message cannot be built yet; not an SMTP failure
+    private static final class InvoiceUnavailableException extends Exception {
+        InvoiceUnavailableException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,22 +1,37 @@
 package com.eduprajna.service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.eduprajna.entity.Order;
+import com.eduprajna.entity.OrderItem;
+
 /**
- * Service for sending emails
+ * Service for sending emails. Messages are written to the outbox and delivered by
+ * {@link EmailOutboxService} in the background, so callers never wait on SMTP.
  */
 @Service
 public class EmailService {
 
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
 
+    private static final String FROM = "noreply@sanathanaparampara.com";
+
+    @Autowired
+    private EmailOutboxService emailOutbox;
+
+    @Autowired
+    private EmailTemplateService templates;
+
     @Autowired
-    private JavaMailSender mailSender;
+    private InvoiceService invoiceService;
 
     /**
      * Send password reset email with reset link
@@ -24,75 +39,50 @@ public class EmailService {
      * @param recipientEmail User's email address
      * @param username       User's username
      * @param resetLink      Link containing reset token
-     * @return true if email sent successfully, false otherwise
+     * @return true if the email was queued, false otherwise
      */
     public boolean sendPasswordResetEmail(String recipientEmail, String username, String resetLink) {
         try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom("noreply@sanathanaparampara.com");
-            message.setTo(recipientEmail);
-            message.setSubject("Sanatana Parampara - Password Reset Request");
-
-            String emailBody = buildPasswordResetEmailBody(username, resetLink, recipientEmail);
-            message.setText(emailBody);
-
-            mailSender.send(message);
-            logger.info("Password reset email sent successfully to: {}", recipientEmail);
+            Map<String, Object> model = new HashMap<>();
+            model.put("username", username);
+            model.put("resetLink", resetLink);
+            model.put("email", recipientEmail);
+            String emailBody = templates.render("password-reset.txt", model);
+            emailOutbox.enqueue("password-reset", FROM, recipientEmail,
+                    "Sanatana Parampara - Password Reset Request", emailBody, false);
+            logger.info("Password reset email queued for: {}", recipientEmail);
             return true;
 
         } catch (Exception e) {
-            logger.error("Failed to send password reset email to: {}", recipientEmail, e);
+            logger.error("Failed to queue password reset email to: {}", recipientEmail, e);
             return false;
         }
     }
 
     /**
-     * Build the email body for password reset
-     */
-    private String buildPasswordResetEmailBody(String username, String resetLink, String email) {
-        return "Hello " + username + ",\n\n" +
-                "We received a request to reset your password. Click the link below to reset your password:\n\n" +
-                resetLink + "\n\n" +
-                "This link will expire in 24 hours.\n\n" +
-                "Your Account Details:\n" +
-                "- Username: " + username + "\n" +
-                "- Email: " + email + "\n\n" +
-                "If you did not request a password reset, please ignore this email.\n\n" +
-                "Best regards,\n" +
-                "Sanatana Parampara Support Team";
-    }
-
-    /**
-     * Send account credentials via email
+     * Send account credentials via email: the username and a link to set a new password
+     * (never the password itself)
      * 
      * @param recipientEmail User's email
      * @param username       User's username
-     * @param password       User's password
-     * @return true if email sent successfully
+     * @param resetLink      Link containing reset token
+     * @return true if the email was queued
      */
-    public boolean sendCredentialsEmail(String recipientEmail, String username, String password) {
+    public boolean sendCredentialsEmail(String recipientEmail, String username, String resetLink) {
         try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom("noreply@sanathanaparampara.com");
-            message.setTo(recipientEmail);
-            message.setSubject("Sanatana Parampara - Your Account Credentials");
-
-            String emailBody = "Hello " + username + ",\n\n" +
-                    "Here are your account credentials:\n\n" +
-                    "Email: " + recipientEmail + "\n" +
-                    "Username: " + username + "\n" +
-                    "Password: " + password + "\n\n" +
-                    "Please keep these credentials secure and change your password after first login.\n\n" +
-                    "Best regards,\n" +
-                    "Sanatana Parampara Support Team";
-
-            message.setText(emailBody);
-            mailSender.send(message);
-            logger.info("Credentials email sent successfully to: {}", recipientEmail);
+            Map<String, Object> model = new HashMap<>();
+            model.put("username", username);
+            model.put("email", recipientEmail);
+            model.put("resetLink", resetLink);
+            String emailBody = templates.render("credentials.txt", model);
+
+            emailOutbox.enqueue("credentials", FROM, recipientEmail,
+                    "Sanatana Parampara - Your Account Credentials", emailBody, false);
+            logger.info("Credentials email queued for: {}", recipientEmail);
             return true;
 
         } catch (Exception e) {
-            logger.error("Failed to send credentials email to: {}", recipientEmail, e);
+            logger.error("Failed to queue credentials email to: {}", recipientEmail, e);
             return false;
         }
     }
@@ -102,24 +92,17 @@ public class EmailService {
      */
     public boolean sendContactThankYou(String name, String email) {
         try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom("noreply@sanathanaparampara.com");
-            message.setTo(email);
-            message.setSubject("Thank you for contacting Sanatana Parampara");
+            Map<String, Object> model = new HashMap<>();
+            model.put("name", name);
+            String emailBody = templates.render("contact-thank-you.txt", model);
 
-            String emailBody = "Hello " + name + ",\n\n" +
-                    "Thank you for contacting Sanatana Parampara. We have received your inquiry and will get back to you shortly.\n\n"
-                    +
-                    "Best regards,\n" +
-                    "Sanatana Parampara Team";
-
-            message.setText(emailBody);
-            mailSender.send(message);
-            logger.info("Contact thank you email sent to: {}", email);
+            emailOutbox.enqueue("contact-thank-you", FROM, email,
+                    "Thank you for contacting Sanatana Parampara", emailBody, false);
+            logger.info("Contact thank you email queued for: {}", email);
             return true;
 
         } catch (Exception e) {
-            logger.error("Failed to send contact thank you email to: {}", email, e);
+            logger.error("Failed to queue contact thank you email to: {}", email, e);
             return false;
         }
     }
@@ -129,155 +112,95 @@ public class EmailService {
      */
     public boolean sendSubscriptionConfirmation(String email) {
         try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom("noreply@sanathanaparampara.com");
-            message.setTo(email);
-            message.setSubject("Welcome to Sanatana Parampara Family!");
-
-            String emailBody = "Hello,\n\n" +
-                    "Thank you for subscribing to our newsletter! You are now part of the Sanatana Parampara family.\n\n"
-                    +
-                    "Use code WELCOME10 for 10% off your first order.\n\n" +
-                    "Best regards,\n" +
-                    "Sanatana Parampara Team";
+            String emailBody = templates.render("subscription-confirmation.txt", Map.of());
 
-            message.setText(emailBody);
-            mailSender.send(message);
-            logger.info("Subscription confirmation email sent to: {}", email);
+            emailOutbox.enqueue("subscription-confirmation", FROM, email,
+                    "Welcome to Sanatana Parampara Family!", emailBody, false);
+            logger.info("Subscription confirmation email queued for: {}", email);
             return true;
 
         } catch (Exception e) {
-            logger.error("Failed to send subscription confirmation email to: {}", email, e);
+            logger.error("Failed to queue subscription confirmation email to: {}", email, e);
             return false;
         }
     }
 
     /**
-     * Send order confirmation email (Ported from Node.js)
+     * Ask an address that unsubscribed earlier to confirm subscribing again
      */
-    public boolean sendOrderConfirmation(java.util.Map<String, Object> orderData) {
+    public boolean sendResubscribeConfirmation(String email, String confirmLink) {
         try {
-            String email = (String) orderData.get("email");
-            Object orderIdObj = orderData.get("orderId");
-            String orderId = orderIdObj != null ? String.valueOf(orderIdObj) : "N/A";
-
-            @SuppressWarnings("unchecked")
-            java.util.List<java.util.Map<String, Object>> items = (java.util.List<java.util.Map<String, Object>>) orderData
-                    .get("items");
-
-            Double subtotal = parseDouble(orderData.get("subtotal"));
-            Double shippingCost = parseDouble(orderData.get("shippingCost"));
-            Double discountAmount = parseDouble(orderData.get("discountAmount"));
-            Double total = parseDouble(orderData.get("total"));
-
-            StringBuilder rowsHtml = new StringBuilder();
-            for (java.util.Map<String, Object> item : items) {
-                String name = (String) item.get("name");
-                Object weightVal = item.get("weightValue");
-                String weightUnit = (String) item.get("weightUnit");
-                String weightDisplay = (weightVal != null ? weightVal : "-") + " "
-                        + (weightUnit != null ? weightUnit : "");
-
-                int quantity = parseInt(item.get("quantity"));
-                Double price = parseDouble(item.get("price"));
-                Double itemTotal = quantity * price;
-
-                rowsHtml.append("<tr>")
-                        .append("<td style=\"padding: 10px; border: 1px solid #ddd;\">").append(name).append("</td>")
-                        .append("<td style=\"padding: 10px; border: 1px solid #ddd;\">").append(weightDisplay)
-                        .append("</td>")
-                        .append("<td style=\"padding: 10px; border: 1px solid #ddd; text-align: center;\">")
-                        .append(quantity).append("</td>")
-                        .append("<td style=\"padding: 10px; border: 1px solid #ddd; text-align: right;\">₹")
-                        .append(String.format("%.2f", price)).append("</td>")
-                        .append("<td style=\"padding: 10px; border: 1px solid #ddd; text-align: right;\">₹")
-                        .append(String.format("%.2f", itemTotal)).append("</td>")
-                        .append("</tr>");
-            }
-
-            String discountRow = "";
-            if (discountAmount > 0) {
-                discountRow = "<tr>" +
-                        "<td colspan=\"4\" style=\"padding: 10px; text-align: right; font-weight: bold; color: #e53e3e;\">Discount</td>"
-                        +
-                        "<td style=\"padding: 10px; text-align: right; color: #e53e3e;\">-₹"
-                        + String.format("%.2f", discountAmount) + "</td>" +
-                        "</tr>";
-            }
-
-            String emailBody = "<div style=\"font-family: Arial, sans-serif; max-width: 600px; margin: auto; border: 1px solid #eee; padding: 20px;\">"
-                    +
-                    "<div style=\"text-align: center; margin-bottom: 20px;\">" +
-                    "<h2>Sanatana Parampare</h2>" +
-                    "</div>" +
-                    "<h2 style=\"color: #4CAF50; text-align: center;\">Thank you for your order!</h2>" +
-                    "<p>Hi there,</p>" +
-                    "<p>Your order <strong>#" + orderId + "</strong> has been confirmed and is being processed.</p>" +
+            String emailBody = templates.render("resubscribe-confirmation.txt", Map.of("confirmLink", confirmLink));
 
-                    "<table style=\"width: 100%; border-collapse: collapse; margin-top: 20px;\">" +
-                    "<thead>" +
-                    "<tr style=\"background-color: #f8f8f8;\">" +
-                    "<th style=\"padding: 10px; border: 1px solid #ddd; text-align: left;\">Product</th>" +
-                    "<th style=\"padding: 10px; border: 1px solid #ddd; text-align: left;\">Weight</th>" +
-                    "<th style=\"padding: 10px; border: 1px solid #ddd; text-align: center;\">Qty</th>" +
-                    "<th style=\"padding: 10px; border: 1px solid #ddd; text-align: right;\">Price</th>" +
-                    "<th style=\"padding: 10px; border: 1px solid #ddd; text-align: right;\">Total</th>" +
-                    "</tr>" +
-                    "</thead>" +
-                    "<tbody>" +
-                    rowsHtml.toString() +
-                    "</tbody>" +
-                    "<tfoot>" +
-                    "<tr>" +
-                    "<td colspan=\"4\" style=\"padding: 10px; text-align: right; font-weight: bold;\">Subtotal</td>" +
-                    "<td style=\"padding: 10px; text-align: right;\">₹" + String.format("%.2f", subtotal) + "</td>" +
-                    "</tr>" +
-                    "<tr>" +
-                    "<td colspan=\"4\" style=\"padding: 10px; text-align: right; font-weight: bold;\">Shipping</td>" +
-                    "<td style=\"padding: 10px; text-align: right;\">₹" + String.format("%.2f", shippingCost) + "</td>"
-                    +
-                    "</tr>" +
-                    discountRow +
-                    "<tr style=\"background-color: #f8f8f8; font-size: 1.1em;\">" +
-                    "<td colspan=\"4\" style=\"padding: 10px; text-align: right; font-weight: bold;\">Grand Total</td>"
-                    +
-                    "<td style=\"padding: 10px; text-align: right; font-weight: bold; color: #4CAF50;\">₹"
-                    + String.format("%.2f", total) + "</td>" +
-                    "</tr>" +
-                    "</tfoot>" +
-                    "</table>" +
-
-                    "<p style=\"margin-top: 30px;\">An invoice PDF has been attached to this email for your records.</p>"
-                    +
-                    "<p>We'll notify you when your order is shipped!</p>" +
-
-                    "<div style=\"margin-top: 40px; border-top: 1px solid #eee; padding-top: 20px; font-size: 12px; color: #888; text-align: center;\">"
-                    +
-                    "<p>Sanatana Parampare - 100% Authentic Products</p>" +
-                    "<p>If you have any questions, contact us at techmindset@kvgengg.com</p>" +
-                    "</div>" +
-                    "</div>";
-
-            jakarta.mail.internet.MimeMessage mimeMessage = mailSender.createMimeMessage();
-            org.springframework.mail.javamail.MimeMessageHelper helper = new org.springframework.mail.javamail.MimeMessageHelper(
-                    mimeMessage, true, "UTF-8");
+            emailOutbox.enqueue("resubscribe-confirmation", FROM, email,
+                    "Confirm your Sanatana Parampara newsletter subscription", emailBody, false);
+            logger.info("Resubscribe confirmation email queued for: {}", email);
+            return true;
 
-            helper.setFrom("noreply@sanathanaparampara.com");
-            helper.setTo(email);
-            helper.setSubject("Order Confirmation #" + orderId + " - Sanatana Parampare");
-            helper.setText(emailBody, true); // true = isHtml
+        } catch (Exception e) {
+            logger.error("Failed to queue resubscribe confirmation email to: {}", email, e);
+            return false;
+        }
+    }
 
-            mailSender.send(mimeMessage);
-            logger.info("Order confirmation email sent to: {}", email);
+    /**
+     * Queue the confirmation of a placed order, with its invoice attached, to the order's
+     * own customer. Called inside the order transaction, so the message is queued exactly
+     * when the order commits; the invoice starts rendering right after the commit.
+     */
+    public boolean sendOrderConfirmation(Order order, String email) {
+        try {
+            Map<String, Object> model = orderConfirmationModel(order);
+            String emailBody = templates.render("order-confirmation.html", model);
+
+            emailOutbox.enqueue("order-confirmation", FROM, email,
+                    "Order Confirmation #" + order.getId() + " - Sanatana Parampare", emailBody, true, order.getId());
+            Long orderId = order.getId();
+            TransactionCallbacks.afterCommit(() -> invoiceService.prepare(orderId));
+            logger.info("Order confirmation email queued for order {}", orderId);
             return true;
 
         } catch (Exception e) {
-            logger.error("Failed to send order confirmation email", e);
+            logger.error("Failed to queue order confirmation email for order {}", order.getId(), e);
             return false;
         }
     }
 
-    private Double parseDouble(Object value) {
+    /**
+     * Template model for order-confirmation.html from a persisted order
+     */
+    static Map<String, Object> orderConfirmationModel(Order order) {
+        List<Map<String, Object>> rows = new ArrayList<>(order.getItems().size());
+        for (OrderItem item : order.getItems()) {
+            int quantity = item.getQuantity() != null ? item.getQuantity() : 0;
+            double price = item.getPrice() != null ? item.getPrice() : 0.0;
+
+            Map<String, Object> row = new HashMap<>();
+            row.put("name", item.getProductName() != null ? item.getProductName() : "Item");
+            row.put("weight", (item.getWeightValue() != null ? item.getWeightValue() : "-") + " "
+                    + (item.getWeightUnit() != null ? item.getWeightUnit() : ""));
+            row.put("quantity", quantity);
+            row.put("price", price);
+            row.put("total", quantity * price);
+            rows.add(row);
+        }
+
+        double subtotal = parseDouble(order.getSubtotal());
+        double shippingCost = parseDouble(order.getShippingFee());
+        double total = parseDouble(order.getTotal());
+        double discountAmount = Math.max(0.0, subtotal + shippingCost - total);
+        Map<String, Object> model = new HashMap<>();
+        model.put("orderId", String.valueOf(order.getId()));
+        model.put("items", rows);
+        model.put("subtotal", subtotal);
+        model.put("shippingCost", shippingCost);
+        model.put("discountAmount", discountAmount);
+        model.put("hasDiscount", discountAmount > 0.005);
+        model.put("total", total);
+        return model;
+    }
+
+    private static Double parseDouble(Object value) {
         if (value == null)
             return 0.0;
         if (value instanceof Number)
@@ -288,16 +211,4 @@ public class EmailService {
             return 0.0;
         }
     }
-
-    private int parseInt(Object value) {
-        if (value == null)
-            return 0;
-        if (value instanceof Number)
-            return ((Number) value).intValue();
-        try {
-            return Integer.parseInt(value.toString());
-        } catch (NumberFormatException e) {
-            return 0;
-        }
-    }
 }
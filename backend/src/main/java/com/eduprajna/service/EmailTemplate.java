@@ -0,0 +1,270 @@
+package com.eduprajna.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An email template compiled once into static text chunks and value slots.
+ *
+ * Supported tags (a small Mustache subset):
+ * - {{name}}            value from the model; HTML-escaped in .html templates
+ * - {{name|money}}      number with two decimals, e.g. 1234.5 -> 1234.50
+ * - {{#name}}..{{/name}} repeated for each element of a list (elements are maps whose
+ *                        keys shadow the outer model), or rendered once if the value
+ *                        is truthy (not null, false or an empty collection)
+ * - {{^name}}..{{/name}} rendered only if the value is falsy
+ * - {{! comment }}
+ *
+ * Rendering appends to a per-thread StringBuilder that is reused between renders, so a
+ * render allocates little besides the resulting String.
+ */
+public final class EmailTemplate {
+
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(8192));
+    // Buffers that grew past this are dropped instead of pinned to the thread
+    private static final int MAX_POOLED_CAPACITY = 256 * 1024;
+
+    private sealed interface Node permits Text, Slot, Section {}
+
+    private record Text(String chunk) implements Node {}
+
+    private record Slot(String name, boolean money, boolean escape) implements Node {}
+
+    private record Section(String name, boolean inverted, Node[] body) implements Node {}
+
+    private final String name;
+    private final Node[] nodes;
+
+    private EmailTemplate(String name, Node[] nodes) {
+        this.name = name;
+        this.nodes = nodes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Parse a template; .html names escape their values
+     *
+     * @throws IllegalArgumentException on unbalanced sections, unclosed tags or unknown formats
+     */
+    public static EmailTemplate compile(String name, String source) {
+        boolean escape = name.endsWith(".html");
+        Deque<List<Node>> bodies = new ArrayDeque<>();
+        Deque<String> openSections = new ArrayDeque<>();
+        Deque<Boolean> inverted = new ArrayDeque<>();
+        List<Node> current = new ArrayList<>();
+        int i = 0;
+        while (i < source.length()) {
+            int open = source.indexOf("{{", i);
+            if (open < 0) {
+                current.add(new Text(source.substring(i)));
+                break;
+            }
+            if (open > i) {
+                current.add(new Text(source.substring(i, open)));
+            }
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) {
+                throw new IllegalArgumentException(name + ": unclosed tag at line " + lineOf(source, open));
+            }
+            String tag = source.substring(open + 2, close).trim();
+            i = close + 2;
+            if (tag.isEmpty()) {
+                throw new IllegalArgumentException(name + ": empty tag at line " + lineOf(source, open));
+            }
+            char kind = tag.charAt(0);
+            if (kind == '!') {
+                continue;
+            }
+            if (kind == '#' || kind == '^') {
+                bodies.push(current);
+                openSections.push(tag.substring(1).trim());
+                inverted.push(kind == '^');
+                current = new ArrayList<>();
+            } else if (kind == '/') {
+                String closing = tag.substring(1).trim();
+                if (openSections.isEmpty() || !openSections.peek().equals(closing)) {
+                    throw new IllegalArgumentException(name + ": unexpected {{/" + closing + "}} at line "
+                            + lineOf(source, open));
+                }
+                Section section = new Section(openSections.pop(), inverted.pop(), merge(current));
+                current = bodies.pop();
+                current.add(section);
+            } else {
+                int pipe = tag.indexOf('|');
+                String key = pipe < 0 ? tag : tag.substring(0, pipe).trim();
+                String format = pipe < 0 ? null : tag.substring(pipe + 1).trim();
+                if (format != null && !format.equals("money")) {
+                    throw new IllegalArgumentException(name + ": unknown format '" + format + "' at line "
+                            + lineOf(source, open));
+                }
+                current.add(new Slot(key, format != null, escape));
+            }
+        }
+        if (!openSections.isEmpty()) {
+            throw new IllegalArgumentException(name + ": section {{#" + openSections.peek() + "}} is not closed");
+        }
+        return new EmailTemplate(name, merge(current));
+    }
+
+    // Adjacent text (left behind by comments) becomes one chunk
+    private static Node[] merge(List<Node> nodes) {
+        List<Node> merged = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            if (node instanceof Text text && !merged.isEmpty() && merged.get(merged.size() - 1) instanceof Text last) {
+                merged.set(merged.size() - 1, new Text(last.chunk() + text.chunk()));
+            } else {
+                merged.add(node);
+            }
+        }
+        return merged.toArray(new Node[0]);
+    }
+
+    private static int lineOf(String source, int index) {
+        int line = 1;
+        for (int i = 0; i < index; i++) {
+            if (source.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    public String render(Map<String, ?> model) {
+        StringBuilder out = BUFFERS.get();
+        out.setLength(0);
+        try {
+            render(nodes, new Scope(model, null), out);
+            return out.toString();
+        } finally {
+            if (out.capacity() > MAX_POOLED_CAPACITY) {
+                BUFFERS.remove();
+            } else {
+                out.setLength(0);
+            }
+        }
+    }
+
+    private record Scope(Object value, Scope parent) {
+        Object lookup(String key) {
+            if (key.equals(".")) {
+                return value;
+            }
+            for (Scope s = this; s != null; s = s.parent) {
+                if (s.value instanceof Map<?, ?> map && map.containsKey(key)) {
+                    return map.get(key);
+                }
+            }
+            return null;
+        }
+    }
+
+    private static void render(Node[] nodes, Scope scope, StringBuilder out) {
+        for (Node node : nodes) {
+            if (node instanceof Text text) {
+                out.append(text.chunk());
+            } else if (node instanceof Slot slot) {
+                Object value = scope.lookup(slot.name());
+                if (value == null) {
+                    continue;
+                }
+                if (slot.money() && value instanceof Number number) {
+                    appendMoney(out, number.doubleValue());
+                } else if (value instanceof Integer || value instanceof Long) {
+                    out.append(((Number) value).longValue());
+                } else if (slot.escape()) {
+                    appendEscaped(out, value.toString());
+                } else {
+                    out.append(value);
+                }
+            } else if (node instanceof Section section) {
+                Object value = scope.lookup(section.name());
+                boolean truthy = isTruthy(value);
+                if (section.inverted()) {
+                    if (!truthy) {
+                        render(section.body(), scope, out);
+                    }
+                } else if (truthy) {
+                    if (value instanceof Iterable<?> items) {
+                        for (Object item : items) {
+                            render(section.body(), new Scope(item, scope), out);
+                        }
+                    } else if (value instanceof Map<?, ?>) {
+                        render(section.body(), new Scope(value, scope), out);
+                    } else {
+                        render(section.body(), scope, out);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isTruthy(Object value) {
+        if (value == null || Boolean.FALSE.equals(value)) {
+            return false;
+        }
+        if (value instanceof Collection<?> collection) {
+            return !collection.isEmpty();
+        }
+        return true;
+    }
+
+    /**
+     * Same digits as String.format("%.2f", value) for amounts in rupees, without the
+     * Formatter: rounds to paise and writes the integer and fraction parts. Near a half
+     * paisa the double's product is ambiguous (1.005 * 100 is 100.4999...), so those
+     * values round the shortest decimal form half-up, which is what %.2f does. From ten
+     * million rupees up the product itself loses paise, so every digit comes from the
+     * decimal form.
+     */
+    static void appendMoney(StringBuilder out, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append(String.format("%.2f", value));
+            return;
+        }
+        // %.2f keeps the sign of amounts that round to zero: -0.001 -> -0.00
+        if (Double.doubleToRawLongBits(value) < 0) {
+            out.append('-');
+            value = -value;
+        }
+        if (value >= 1e7) {
+            out.append(new BigDecimal(Double.toString(value)).setScale(2, RoundingMode.HALF_UP).toPlainString());
+            return;
+        }
+        double scaled = value * 100;
+        long paise;
+        if (Math.abs(scaled - Math.floor(scaled) - 0.5) < 1e-6) {
+            paise = new BigDecimal(Double.toString(value)).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        } else {
+            paise = Math.round(scaled);
+        }
+        out.append(paise / 100).append('.');
+        long fraction = paise % 100;
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+
+    private static void appendEscaped(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.eduprajna.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Email templates (see {@link EmailTemplate} for the syntax), compiled once at startup
+ * from email-templates/ on the classpath. Point email.templates.location at a directory
+ * (e.g. file:/srv/email-templates/*) to edit them without rebuilding. A template that
+ * does not compile fails startup rather than the first send.
+ */
+@Service
+public class EmailTemplateService {
+    private static final Logger logger = LoggerFactory.getLogger(EmailTemplateService.class);
+
+    @Value("${email.templates.location:classpath*:email-templates/*}")
+    private String location;
+
+    private volatile Map<String, EmailTemplate> templates = Map.of();
+
+    @PostConstruct
+    public void load() throws IOException {
+        Map<String, EmailTemplate> compiled = new HashMap<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(location)) {
+            String name = resource.getFilename();
+            if (name == null || !resource.isReadable()) {
+                continue;
+            }
+            try (InputStream in = resource.getInputStream()) {
+                compiled.put(name, EmailTemplate.compile(name, new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+            }
+        }
+        templates = Map.copyOf(compiled);
+        logger.info("Compiled {} email templates from {}", compiled.size(), location);
+    }
+
+    public boolean exists(String name) {
+        return templates.containsKey(name);
+    }
+
+    public String render(String name, Map<String, ?> model) {
+        EmailTemplate template = templates.get(name);
+        if (template == null) {
+            throw new IllegalStateException("Unknown email template: " + name);
+        }
+        return template.render(model);
+    }
+}
@@ -0,0 +1,171 @@
+package com.eduprajna.service;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Builds responses for stored files (product images and other uploads).
+ *
+ * - Conditional GETs are answered from file metadata (strong ETag / Last-Modified) with 304.
+ * - Full-body GETs of larger files are handed to Tomcat's sendfile support, so the kernel
+ *   copies the file straight to the socket and the request thread is released immediately.
+ * - Everything else returns a FileSystemResource; Spring MVC serves Range requests from it
+ *   as 206 partial content.
+ * - Hot images are answered from the off-heap cache, without touching the disk at all.
+ */
+@Service
+public class FileServingService {
+
+    // Tomcat request attributes (see org.apache.catalina.Globals); used the same way by its DefaultServlet
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    private static final CacheControl DEFAULT = CacheControl.maxAge(Duration.ofDays(1)).cachePublic();
+    // The original standing in for a ?w= derivative: revalidate so the resized copy replaces it once ready
+    private static final CacheControl FALLBACK = CacheControl.noCache().cachePublic();
+
+    private final StorageService storageService;
+    private final ImageDerivativeService imageDerivatives;
+    private final OffHeapImageCache imageCache;
+
+    // Below this size a plain write is as cheap as setting up sendfile (Tomcat's own default is 48 KB)
+    @Value("${storage.serving.sendfile-min-bytes:49152}")
+    private long sendfileMinBytes;
+
+    public FileServingService(StorageService storageService, ImageDerivativeService imageDerivatives,
+            OffHeapImageCache imageCache) {
+        this.storageService = storageService;
+        this.imageDerivatives = imageDerivatives;
+        this.imageCache = imageCache;
+    }
+
+    public ResponseEntity<Resource> serve(String filename, HttpServletRequest request) throws IOException {
+        return serve(filename, null, request);
+    }
+
+    /**
+     * Serve an image resized to (at least) the requested width, e.g. /uploads/x.jpg?w=480.
+     * Falls back to the original when no derivative applies.
+     */
+    public ResponseEntity<Resource> serve(String filename, Integer width, HttpServletRequest request)
+            throws IOException {
+        String cacheKey = OffHeapImageCache.key(filename, width);
+        OffHeapImageCache.CachedImage cached = imageCache.get(cacheKey);
+        if (cached != null) {
+            return serveCached(cached, request);
+        }
+
+        StorageService.StoredFile file;
+        CacheControl cacheControl;
+        boolean fallback = false;
+        if (width == null) {
+            file = storageService.stat(filename);
+            cacheControl = cacheControl(file);
+        } else {
+            // Make sure the original exists (and is inside the upload directory) before resizing
+            StorageService.StoredFile original = storageService.stat(filename);
+            String variant = imageDerivatives.resolve(filename, width);
+            fallback = variant.equals(filename);
+            file = fallback ? original : storageService.stat(variant);
+            cacheControl = fallback ? FALLBACK : cacheControl(file);
+        }
+
+        // A fallback original is not cached under the ?w= key, or it would outlive the derivative
+        if (!fallback && "image".equals(file.mediaType().getType())
+                && !isNotModified(file.etag(), file.lastModified(), request)) {
+            cached = imageCache.admit(cacheKey, file.path(), file.size(), file.etag(), file.lastModified(),
+                    HttpHeaders.readOnlyHttpHeaders(bodyHeaders(file, cacheControl)));
+            if (cached != null) {
+                return serveCached(cached, request);
+            }
+        }
+        return serve(file, cacheControl, request);
+    }
+
+    // Precomputed headers, bytes from the off-heap pages (Range requests are sliced by Spring)
+    private ResponseEntity<Resource> serveCached(OffHeapImageCache.CachedImage cached, HttpServletRequest request) {
+        if (isNotModified(cached.etag(), cached.lastModified(), request)) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(cached.headers());
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        return new ResponseEntity<>(imageCache.resource(cached), cached.headers(), HttpStatus.OK);
+    }
+
+    private static CacheControl cacheControl(StorageService.StoredFile file) {
+        return file.immutable() ? IMMUTABLE : DEFAULT;
+    }
+
+    private static HttpHeaders validatorHeaders(StorageService.StoredFile file, CacheControl cacheControl) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(file.etag());
+        headers.setLastModified(file.lastModified());
+        headers.setCacheControl(cacheControl);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        return headers;
+    }
+
+    private static HttpHeaders bodyHeaders(StorageService.StoredFile file, CacheControl cacheControl) {
+        HttpHeaders headers = validatorHeaders(file, cacheControl);
+        headers.setContentType(file.mediaType());
+        return headers;
+    }
+
+    public ResponseEntity<Resource> serve(StorageService.StoredFile file, HttpServletRequest request) {
+        return serve(file, cacheControl(file), request);
+    }
+
+    private ResponseEntity<Resource> serve(StorageService.StoredFile file, CacheControl cacheControl,
+            HttpServletRequest request) {
+        if (isNotModified(file.etag(), file.lastModified(), request)) {
+            return new ResponseEntity<>(validatorHeaders(file, cacheControl), HttpStatus.NOT_MODIFIED);
+        }
+
+        HttpHeaders headers = bodyHeaders(file, cacheControl);
+        boolean fullBody = request.getHeader(HttpHeaders.RANGE) == null && "GET".equals(request.getMethod());
+        if (fullBody && file.size() >= sendfileMinBytes
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.path().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, file.size());
+            headers.setContentLength(file.size());
+            return new ResponseEntity<>(headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(new FileSystemResource(file.path()), headers, HttpStatus.OK);
+    }
+
+    static boolean isNotModified(String etag, long lastModified, HttpServletRequest request) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String t = tag.trim();
+                if (t.equals("*") || t.equals(etag) || t.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            // HTTP dates have second precision
+            return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.eduprajna.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Resized copies of uploaded images (placeholder, thumb, card, detail).
+ *
+ * When an image is stored it is decoded once on a small bounded pool and every size
+ * narrower than the original is written next to the upload under .derivatives/.
+ * Requests for a width that has not been generated yet (older uploads, or a job that
+ * was dropped because the queue was full) generate it on demand; concurrent requests
+ * for the same image share one job. If anything fails the original is served; images
+ * that cannot be decoded at all (corrupt, CMYK, over the pixel limit) are marked as
+ * failed so later requests serve the original without waiting on another attempt.
+ *
+ * Opaque images are written as progressive JPEG and images with transparency as PNG.
+ */
+@Service
+public class ImageDerivativeService {
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    public static final String DERIVATIVE_DIR = ".derivatives";
+
+    // Placeholder (blurred up client-side), thumb, card, detail
+    private static final int[] WIDTHS = { 24, 200, 480, 1200 };
+    private static final Set<String> RESIZABLE = Set.of("jpg", "jpeg", "png", "bmp");
+
+    @Value("${spring.servlet.multipart.location:./uploads}")
+    private String uploadDir;
+
+    @Value("${storage.images.derivatives.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.images.derivatives.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    // Refuse to decode images above this many pixels (decompression bombs)
+    @Value("${storage.images.derivatives.max-pixels:40000000}")
+    private long maxPixels;
+
+    @Value("${storage.images.derivatives.on-demand-timeout-ms:10000}")
+    private long onDemandTimeoutMillis;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final Counter generated;
+    private final Counter failed;
+    private final Counter rejected;
+    private final Timer generationTimer;
+
+    public ImageDerivativeService(@Value("${storage.images.derivatives.threads:2}") int threads,
+            @Value("${storage.images.derivatives.queue-capacity:200}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "image-derivatives-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.generated = Counter.builder("storage.images.derivatives.generated").register(meterRegistry);
+        this.failed = Counter.builder("storage.images.derivatives.failed").register(meterRegistry);
+        this.rejected = Counter.builder("storage.images.derivatives.rejected").register(meterRegistry);
+        this.generationTimer = Timer.builder("storage.images.derivatives.time").register(meterRegistry);
+        meterRegistry.gauge("storage.images.derivatives.queue.size", executor, e -> e.getQueue().size());
+    }
+
+    public static boolean isResizable(String filename) {
+        return RESIZABLE.contains(extension(filename));
+    }
+
+    /**
+     * Queue derivative generation for a freshly stored image; never blocks the upload
+     */
+    public void scheduleDerivatives(String filename) {
+        if (enabled && isResizable(filename)) {
+            submit(filename);
+        }
+    }
+
+    /**
+     * Path (relative to the upload directory) of the stored file to serve for a requested
+     * width: the smallest derivative at least that wide, or the original when it is not
+     * larger, not resizable, or the derivative cannot be produced in time.
+     */
+    public String resolve(String filename, int requestedWidth) {
+        if (!enabled || !isResizable(filename)) {
+            return filename;
+        }
+        Integer width = snapWidth(requestedWidth);
+        if (width == null) {
+            return filename;
+        }
+        String existing = findDerivative(filename, width);
+        if (existing != null) {
+            return existing;
+        }
+        if (Files.exists(markerPath(filename)) || Files.exists(failedMarkerPath(filename))) {
+            // Already processed (the original is narrower than this width) or cannot be resized
+            return filename;
+        }
+        CompletableFuture<Void> job = submit(filename);
+        if (job == null) {
+            return filename;
+        }
+        try {
+            job.get(onDemandTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            logger.debug("Derivative for {} not ready: {}", filename, e.getMessage());
+            return filename;
+        }
+        String created = findDerivative(filename, width);
+        return created != null ? created : filename;
+    }
+
+    /**
+     * Remove every derivative of an image (called when the original is deleted)
+     */
+    public void deleteDerivatives(String filename) {
+        try {
+            for (int width : WIDTHS) {
+                for (String ext : new String[] { "jpg", "png" }) {
+                    Files.deleteIfExists(derivativeDir().resolve(derivativeName(filename, width, ext)));
+                }
+            }
+            Files.deleteIfExists(markerPath(filename));
+            Files.deleteIfExists(failedMarkerPath(filename));
+        } catch (IOException e) {
+            logger.warn("Could not delete derivatives of {}: {}", filename, e.getMessage());
+        }
+    }
+
+    private CompletableFuture<Void> submit(String filename) {
+        CompletableFuture<Void> job = inFlight.computeIfAbsent(filename, name -> {
+            try {
+                return CompletableFuture.runAsync(() -> generate(name), executor);
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                return null;
+            }
+        });
+        if (job != null) {
+            job.whenComplete((v, e) -> inFlight.remove(filename, job));
+        }
+        return job;
+    }
+
+    // Widths above the largest configured size are served from detail (or the original)
+    private static Integer snapWidth(int requestedWidth) {
+        if (requestedWidth <= 0) {
+            return null;
+        }
+        for (int width : WIDTHS) {
+            if (requestedWidth <= width) {
+                return width;
+            }
+        }
+        return WIDTHS[WIDTHS.length - 1];
+    }
+
+    private String findDerivative(String filename, int width) {
+        for (String ext : new String[] { "jpg", "png" }) {
+            String name = derivativeName(filename, width, ext);
+            if (Files.exists(derivativeDir().resolve(name))) {
+                return DERIVATIVE_DIR + "/" + name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decode the original once and write every size narrower than it
+     */
+    private void generate(String filename) {
+        Path source = uploadRoot().resolve(filename).normalize();
+        if (!source.startsWith(uploadRoot()) || !Files.isRegularFile(source)) {
+            return;
+        }
+        Timer.Sample sample = Timer.start();
+        try {
+            BufferedImage original;
+            try {
+                original = decode(source);
+            } catch (IOException e) {
+                logger.warn("Could not decode {} for derivatives: {}", filename, e.getMessage());
+                original = null;
+            }
+            if (original != null && original.getColorModel().getColorSpace().getType() == ColorSpace.TYPE_CMYK) {
+                logger.warn("Skipping derivatives for {}: CMYK images are not supported", filename);
+                original = null;
+            }
+            if (original == null) {
+                // Retrying cannot help; remember it so requests stop waiting on new attempts
+                failed.increment();
+                Files.createDirectories(derivativeDir());
+                Files.write(failedMarkerPath(filename), new byte[0]);
+                return;
+            }
+            Files.createDirectories(derivativeDir());
+            boolean alpha = original.getColorModel().hasAlpha();
+            String ext = alpha ? "png" : "jpg";
+            // Largest first, each step scaled from the previous one to keep quality with bilinear steps
+            BufferedImage current = original;
+            for (int i = WIDTHS.length - 1; i >= 0; i--) {
+                int width = WIDTHS[i];
+                if (width >= original.getWidth()) {
+                    continue;
+                }
+                current = scale(current, width, alpha);
+                write(current, derivativeDir().resolve(derivativeName(filename, width, ext)), ext);
+                generated.increment();
+            }
+            Files.write(markerPath(filename), new byte[0]);
+        } catch (Exception e) {
+            failed.increment();
+            logger.warn("Could not generate derivatives for {}: {}", filename, e.getMessage());
+        } finally {
+            sample.stop(generationTimer);
+        }
+    }
+
+    private BufferedImage decode(Path source) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    logger.warn("Skipping derivatives for {}: {} pixels exceeds limit", source.getFileName(), pixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage src, int targetWidth, boolean alpha) {
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = src;
+        int width = src.getWidth();
+        // Halve repeatedly, then one final step: avoids the aliasing of a single large bilinear step
+        do {
+            int nextWidth = Math.max(targetWidth, width / 2);
+            int nextHeight = Math.max(1, (int) Math.round((double) src.getHeight() * nextWidth / src.getWidth()));
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+            width = nextWidth;
+        } while (width > targetWidth);
+        return current;
+    }
+
+    private void write(BufferedImage image, Path dest, String ext) throws IOException {
+        Path tmp = Files.createTempFile(dest.getParent(), "tmp-", "." + ext);
+        try {
+            if ("png".equals(ext)) {
+                ImageIO.write(image, "png", tmp.toFile());
+            } else {
+                ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+                try (ImageOutputStream out = ImageIO.createImageOutputStream(tmp.toFile())) {
+                    writer.setOutput(out);
+                    ImageWriteParam param = writer.getDefaultWriteParam();
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(jpegQuality);
+                    param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+                    writer.write(null, new IIOImage(image, null, null), param);
+                } finally {
+                    writer.dispose();
+                }
+            }
+            Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path uploadRoot() {
+        return Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    private Path derivativeDir() {
+        return uploadRoot().resolve(DERIVATIVE_DIR);
+    }
+
+    // Empty marker written once all derivatives of an image exist
+    private Path markerPath(String filename) {
+        return derivativeDir().resolve(baseName(filename) + ".done");
+    }
+
+    // Empty marker written when the original cannot be decoded, so it is always served as is
+    private Path failedMarkerPath(String filename) {
+        return derivativeDir().resolve(baseName(filename) + ".failed");
+    }
+
+    private static String derivativeName(String filename, int width, String ext) {
+        return baseName(filename) + "__w" + width + "." + ext;
+    }
+
+    // Keeps the original extension so photo.jpg and photo.png do not share derivatives
+    private static String baseName(String filename) {
+        return filename.replace('/', '_');
+    }
+
+    private static String extension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot >= 0 ? filename.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
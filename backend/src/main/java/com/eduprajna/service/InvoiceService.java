@@ -0,0 +1,520 @@
+package com.eduprajna.service;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.eduprajna.entity.Order;
+import com.eduprajna.entity.OrderItem;
+import com.eduprajna.entity.ShippingSnapshot;
+import com.eduprajna.exception.TooManyRequestsException;
+import com.eduprajna.repository.OrderRepository;
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.Font;
+import com.lowagie.text.FontFactory;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Phrase;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfWriter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Invoice PDFs for orders, rendered from the persisted order, its item snapshots and the
+ * shipping snapshot.
+ *
+ * Rendering runs on a small bounded pool and the result is written to the invoice cache
+ * directory as invoice-{orderId}-{version}.pdf, where the version is a hash of everything
+ * printed on the invoice (plus the layout revision). Downloads and email attachments read
+ * the same file; an order edited after its invoice was rendered gets a new version and the
+ * stale file is removed. Concurrent requests for the same invoice share one render.
+ */
+@Service
+public class InvoiceService {
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceService.class);
+
+    // Bump when the layout changes so cached invoices are rendered again
+    private static final String LAYOUT_REVISION = "1";
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd MMM yyyy");
+    private static final Color BORDER = new Color(0xDD, 0xDD, 0xDD);
+    private static final Color HEADER_FILL = new Color(0xF8, 0xF8, 0xF8);
+
+    /**
+     * A rendered invoice on disk
+     */
+    public record Invoice(Long orderId, String version, Path path) {
+        public String filename() {
+            return "invoice-" + orderId + ".pdf";
+        }
+    }
+
+    // Everything printed on an invoice, read from the order inside the loading query
+    private record InvoiceData(Long orderId, OffsetDateTime createdAt, String paymentMethod, String deliveryOption,
+            ShippingSnapshot shipping, List<Line> lines, double subtotal, double shippingFee, double total) {}
+
+    private record Line(String name, String weight, int quantity, double price) {}
+
+    @Value("${invoice.cache-dir:./invoices}")
+    private String cacheDir;
+
+    @Value("${invoice.render-timeout-ms:15000}")
+    private long renderTimeoutMillis;
+
+    @Value("${invoice.zone:Asia/Kolkata}")
+    private String zone;
+
+    private final OrderRepository orderRepository;
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final Map<String, CompletableFuture<Invoice>> inFlight = new ConcurrentHashMap<>();
+    private final Counter rendered;
+    private final Counter cacheHits;
+    private final Counter failed;
+    private final Counter rejected;
+    private final Timer renderTimer;
+
+    public InvoiceService(OrderRepository orderRepository,
+            @Value("${invoice.render-threads:2}") int threads,
+            @Value("${invoice.queue-capacity:100}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.threads = Math.max(1, threads);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "invoice-render-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.rendered = Counter.builder("invoice.renders").tag("result", "rendered").register(meterRegistry);
+        this.cacheHits = Counter.builder("invoice.renders").tag("result", "cached").register(meterRegistry);
+        this.failed = Counter.builder("invoice.renders").tag("result", "failed").register(meterRegistry);
+        this.rejected = Counter.builder("invoice.renders").tag("result", "rejected").register(meterRegistry);
+        this.renderTimer = Timer.builder("invoice.render.time").register(meterRegistry);
+        meterRegistry.gauge("invoice.render.queue.size", executor, e -> e.getQueue().size());
+    }
+
+    /**
+     * The invoice of an order, rendering it first if the cached copy is missing or stale.
+     * Empty when the order does not exist.
+     *
+     * @throws TooManyRequestsException when the render pool is full or the render does not
+     *                                  finish within invoice.render-timeout-ms
+     */
+    public Optional<Invoice> getInvoice(Long orderId) {
+        Optional<InvoiceData> data = load(orderId);
+        if (data.isEmpty()) {
+            return Optional.empty();
+        }
+        CompletableFuture<Invoice> job = resolve(data.get());
+        try {
+            return Optional.of(job.get(renderTimeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            throw new TooManyRequestsException("Invoice is still being generated", 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TooManyRequestsException("Invoice is still being generated", 5);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException("Could not render invoice for order " + orderId, e.getCause());
+        }
+    }
+
+    /**
+     * Start rendering an order's invoice in the background (e.g. when its confirmation
+     * email is queued) so the attachment is ready when the email goes out
+     */
+    public void prepare(Long orderId) {
+        try {
+            load(orderId).ifPresent(this::resolve);
+        } catch (RuntimeException e) {
+            logger.debug("Invoice for order {} not prepared: {}", orderId, e.getMessage());
+        }
+    }
+
+    /**
+     * Render the invoices of every order placed on a day (in invoice.zone), in parallel on
+     * the render pool. At most two renders per pool thread are queued at a time, so a
+     * batch never fills the queue that downloads and emails depend on.
+     */
+    public Map<String, Object> renderDay(LocalDate day) {
+        ZoneId zoneId = ZoneId.of(zone);
+        OffsetDateTime start = day.atStartOfDay(zoneId).toOffsetDateTime();
+        OffsetDateTime end = day.plusDays(1).atStartOfDay(zoneId).toOffsetDateTime();
+        List<Long> orderIds = orderRepository.findIdsCreatedBetween(start, end);
+
+        Semaphore slots = new Semaphore(threads * 2);
+        List<CompletableFuture<Invoice>> jobs = new ArrayList<>(orderIds.size());
+        AtomicInteger failures = new AtomicInteger();
+        long startedAt = System.nanoTime();
+        for (Long orderId : orderIds) {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            CompletableFuture<Invoice> job;
+            try {
+                job = load(orderId).map(this::resolve).orElse(CompletableFuture.completedFuture(null));
+            } catch (RuntimeException e) {
+                job = CompletableFuture.failedFuture(e);
+            }
+            jobs.add(job.whenComplete((invoice, error) -> {
+                slots.release();
+                if (error != null) {
+                    failures.incrementAndGet();
+                }
+            }));
+        }
+        CompletableFuture.allOf(jobs.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("date", day.toString());
+        result.put("orders", orderIds.size());
+        result.put("ready", jobs.size() - failures.get());
+        result.put("failed", failures.get());
+        result.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        logger.info("Invoice batch for {}: {}", day, result);
+        return result;
+    }
+
+    private Optional<InvoiceData> load(Long orderId) {
+        return orderRepository.findWithItemsById(orderId).map(InvoiceService::snapshot);
+    }
+
+    private static InvoiceData snapshot(Order order) {
+        List<Line> lines = new ArrayList<>(order.getItems().size());
+        for (OrderItem item : order.getItems()) {
+            String name = item.getProductName();
+            if (name == null && item.getProduct() != null) {
+                name = item.getProduct().getName();
+            }
+            if (item.getVariantName() != null && !item.getVariantName().isBlank()) {
+                name = (name != null ? name + " - " : "") + item.getVariantName();
+            }
+            String weight;
+            if (item.getVariantWeightValue() != null) {
+                weight = formatWeight(item.getVariantWeightValue()) + " " + nullToEmpty(item.getVariantWeightUnit());
+            } else if (item.getWeightValue() != null) {
+                weight = item.getWeightValue() + " " + nullToEmpty(item.getWeightUnit());
+            } else {
+                weight = "-";
+            }
+            lines.add(new Line(name != null ? name : "Item", weight.trim(),
+                    item.getQuantity() != null ? item.getQuantity() : 0,
+                    item.getPrice() != null ? item.getPrice() : 0.0));
+        }
+        return new InvoiceData(order.getId(), order.getCreatedAt(), order.getPaymentMethod(), order.getDeliveryOption(),
+                order.getShipping(), lines, valueOf(order.getSubtotal()), valueOf(order.getShippingFee()),
+                valueOf(order.getTotal()));
+    }
+
+    private CompletableFuture<Invoice> resolve(InvoiceData data) {
+        String version = version(data);
+        Invoice invoice = new Invoice(data.orderId(), version, cacheRoot().resolve(fileName(data.orderId(), version)));
+        if (Files.isRegularFile(invoice.path())) {
+            cacheHits.increment();
+            return CompletableFuture.completedFuture(invoice);
+        }
+        String key = data.orderId() + "-" + version;
+        CompletableFuture<Invoice> job = inFlight.computeIfAbsent(key, k -> {
+            try {
+                return CompletableFuture.supplyAsync(() -> render(data, invoice), executor);
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                return null;
+            }
+        });
+        if (job == null) {
+            throw new TooManyRequestsException("Too many invoices are being generated", 5);
+        }
+        job.whenComplete((v, e) -> inFlight.remove(key, job));
+        return job;
+    }
+
+    private Invoice render(InvoiceData data, Invoice invoice) {
+        Timer.Sample sample = Timer.start();
+        try {
+            Files.createDirectories(cacheRoot());
+            Path tmp = Files.createTempFile(cacheRoot(), "tmp-", ".pdf");
+            try {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+                    writePdf(data, out);
+                }
+                Files.move(tmp, invoice.path(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            deleteStaleVersions(invoice);
+            rendered.increment();
+            return invoice;
+        } catch (IOException | DocumentException e) {
+            failed.increment();
+            logger.warn("Could not render invoice for order {}: {}", data.orderId(), e.getMessage());
+            throw new IllegalStateException("Could not render invoice for order " + data.orderId(), e);
+        } finally {
+            sample.stop(renderTimer);
+        }
+    }
+
+    private void writePdf(InvoiceData data, OutputStream out) throws DocumentException {
+        Font title = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18);
+        Font bold = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10);
+        Font normal = FontFactory.getFont(FontFactory.HELVETICA, 10);
+        Font small = FontFactory.getFont(FontFactory.HELVETICA, 8, Color.GRAY);
+
+        Document document = new Document(PageSize.A4, 40, 40, 48, 40);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        writer.setFullCompression();
+        document.addTitle("Invoice #" + data.orderId());
+        document.addCreator("Sanatana Parampare");
+        document.open();
+        try {
+            Paragraph heading = new Paragraph("Sanatana Parampare", title);
+            heading.setAlignment(Element.ALIGN_CENTER);
+            document.add(heading);
+            Paragraph subtitle = new Paragraph("Tax Invoice", bold);
+            subtitle.setAlignment(Element.ALIGN_CENTER);
+            subtitle.setSpacingAfter(16);
+            document.add(subtitle);
+
+            PdfPTable meta = new PdfPTable(new float[] { 1, 1 });
+            meta.setWidthPercentage(100);
+            meta.addCell(plainCell(invoiceDetails(data), normal));
+            meta.addCell(plainCell(shippingDetails(data.shipping()), normal));
+            meta.setSpacingAfter(16);
+            document.add(meta);
+
+            PdfPTable items = new PdfPTable(new float[] { 5, 2, 1, 2, 2 });
+            items.setWidthPercentage(100);
+            items.setHeaderRows(1);
+            items.addCell(headerCell("Product", bold, Element.ALIGN_LEFT));
+            items.addCell(headerCell("Weight", bold, Element.ALIGN_LEFT));
+            items.addCell(headerCell("Qty", bold, Element.ALIGN_CENTER));
+            items.addCell(headerCell("Price", bold, Element.ALIGN_RIGHT));
+            items.addCell(headerCell("Total", bold, Element.ALIGN_RIGHT));
+            StringBuilder money = new StringBuilder(16);
+            for (Line line : data.lines()) {
+                items.addCell(bodyCell(line.name(), normal, Element.ALIGN_LEFT));
+                items.addCell(bodyCell(line.weight(), normal, Element.ALIGN_LEFT));
+                items.addCell(bodyCell(String.valueOf(line.quantity()), normal, Element.ALIGN_CENTER));
+                items.addCell(bodyCell(money(money, line.price()), normal, Element.ALIGN_RIGHT));
+                items.addCell(bodyCell(money(money, line.quantity() * line.price()), normal, Element.ALIGN_RIGHT));
+            }
+            addTotalRow(items, "Subtotal", money(money, data.subtotal()), bold, normal);
+            addTotalRow(items, "Shipping", money(money, data.shippingFee()), bold, normal);
+            double discount = data.subtotal() + data.shippingFee() - data.total();
+            if (discount > 0.005) {
+                addTotalRow(items, "Discount", "-" + money(money, discount), bold, normal);
+            }
+            addTotalRow(items, "Grand Total", money(money, data.total()), bold, bold);
+            document.add(items);
+
+            Paragraph footer = new Paragraph("Sanatana Parampare - 100% Authentic Products. "
+                    + "For questions about this invoice contact techmindset@kvgengg.com", small);
+            footer.setAlignment(Element.ALIGN_CENTER);
+            footer.setSpacingBefore(24);
+            document.add(footer);
+        } finally {
+            document.close();
+        }
+    }
+
+    private String invoiceDetails(InvoiceData data) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Invoice #").append(data.orderId()).append('\n');
+        if (data.createdAt() != null) {
+            sb.append("Date: ").append(DATE_FORMAT.format(data.createdAt().atZoneSameInstant(ZoneId.of(zone))))
+                    .append('\n');
+        }
+        sb.append("Payment: ").append(nullToEmpty(data.paymentMethod()).toUpperCase(Locale.ROOT)).append('\n');
+        sb.append("Delivery: ").append(nullToEmpty(data.deliveryOption()));
+        return sb.toString();
+    }
+
+    private static String shippingDetails(ShippingSnapshot shipping) {
+        if (shipping == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("Ship to:\n");
+        appendLine(sb, shipping.getName());
+        appendLine(sb, shipping.getStreet());
+        appendLine(sb, shipping.getLandmark());
+        String cityLine = String.join(", ", nonBlank(shipping.getCity(), shipping.getState()));
+        if (shipping.getPincode() != null && !shipping.getPincode().isBlank()) {
+            cityLine = cityLine.isEmpty() ? shipping.getPincode() : cityLine + " - " + shipping.getPincode();
+        }
+        appendLine(sb, cityLine);
+        if (shipping.getPhone() != null && !shipping.getPhone().isBlank()) {
+            appendLine(sb, "Phone: " + shipping.getPhone());
+        }
+        return sb.toString().trim();
+    }
+
+    private static PdfPCell plainCell(String text, Font font) {
+        PdfPCell cell = new PdfPCell(new Phrase(text, font));
+        cell.setBorder(Rectangle.NO_BORDER);
+        cell.setPadding(2);
+        return cell;
+    }
+
+    private static PdfPCell headerCell(String text, Font font, int alignment) {
+        PdfPCell cell = bodyCell(text, font, alignment);
+        cell.setBackgroundColor(HEADER_FILL);
+        return cell;
+    }
+
+    private static PdfPCell bodyCell(String text, Font font, int alignment) {
+        PdfPCell cell = new PdfPCell(new Phrase(text, font));
+        cell.setHorizontalAlignment(alignment);
+        cell.setBorderColor(BORDER);
+        cell.setPadding(6);
+        return cell;
+    }
+
+    private static void addTotalRow(PdfPTable table, String label, String amount, Font labelFont, Font amountFont) {
+        PdfPCell labelCell = new PdfPCell(new Phrase(label, labelFont));
+        labelCell.setColspan(4);
+        labelCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        labelCell.setBorder(Rectangle.NO_BORDER);
+        labelCell.setPadding(6);
+        table.addCell(labelCell);
+        PdfPCell amountCell = new PdfPCell(new Phrase(amount, amountFont));
+        amountCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        amountCell.setBorder(Rectangle.NO_BORDER);
+        amountCell.setPadding(6);
+        table.addCell(amountCell);
+    }
+
+    // The standard PDF fonts have no rupee sign
+    private static String money(StringBuilder buffer, double value) {
+        buffer.setLength(0);
+        buffer.append("Rs. ");
+        EmailTemplate.appendMoney(buffer, value);
+        return buffer.toString();
+    }
+
+    // Hash of everything printed on the invoice, so a changed order gets a new file
+    private static String version(InvoiceData data) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(LAYOUT_REVISION).append('|').append(data.orderId()).append('|').append(data.createdAt())
+                .append('|').append(data.paymentMethod()).append('|').append(data.deliveryOption())
+                .append('|').append(data.subtotal()).append('|').append(data.shippingFee()).append('|').append(data.total());
+        ShippingSnapshot s = data.shipping();
+        if (s != null) {
+            sb.append('|').append(s.getName()).append('|').append(s.getPhone()).append('|').append(s.getStreet())
+                    .append('|').append(s.getCity()).append('|').append(s.getState()).append('|').append(s.getPincode())
+                    .append('|').append(s.getLandmark());
+        }
+        for (Line line : data.lines()) {
+            sb.append('|').append(line.name()).append(';').append(line.weight()).append(';').append(line.quantity())
+                    .append(';').append(line.price());
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void deleteStaleVersions(Invoice current) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheRoot(), "invoice-" + current.orderId() + "-*.pdf")) {
+            for (Path path : stream) {
+                if (!path.equals(current.path())) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Could not remove old invoices of order {}: {}", current.orderId(), e.getMessage());
+        }
+    }
+
+    private Path cacheRoot() {
+        return Paths.get(cacheDir).toAbsolutePath().normalize();
+    }
+
+    private static String fileName(Long orderId, String version) {
+        return "invoice-" + orderId + "-" + version + ".pdf";
+    }
+
+    private static String formatWeight(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    private static void appendLine(StringBuilder sb, String value) {
+        if (value != null && !value.isBlank()) {
+            sb.append(value.trim()).append('\n');
+        }
+    }
+
+    private static List<String> nonBlank(String... values) {
+        List<String> result = new ArrayList<>(values.length);
+        for (String value : values) {
+            if (value != null && !value.isBlank()) {
+                result.add(value.trim());
+            }
+        }
+        return result;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static double valueOf(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
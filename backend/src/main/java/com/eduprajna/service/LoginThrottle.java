@@ -0,0 +1,132 @@
+package com.eduprajna.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.eduprajna.exception.TooManyRequestsException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * In-memory token buckets limiting login attempts per client IP and per account.
+ *
+ * State is split into lock stripes, each a small access-ordered map bounded by
+ * maxKeys / stripes, so contention stays low and a flood of distinct keys only
+ * evicts the least recently used buckets.
+ */
+@Component
+public class LoginThrottle {
+
+    private static final int STRIPES = 64;
+
+    private final Buckets ipBuckets;
+    private final Buckets accountBuckets;
+    private final Counter throttled;
+
+    public LoginThrottle(@Value("${auth.login.ip.capacity:20}") int ipCapacity,
+            @Value("${auth.login.ip.refill-per-minute:10}") double ipRefillPerMinute,
+            @Value("${auth.login.account.capacity:5}") int accountCapacity,
+            @Value("${auth.login.account.refill-per-minute:1}") double accountRefillPerMinute,
+            @Value("${auth.login.max-tracked-keys:100000}") int maxKeys,
+            MeterRegistry meterRegistry) {
+        this.ipBuckets = new Buckets(ipCapacity, ipRefillPerMinute, maxKeys);
+        this.accountBuckets = new Buckets(accountCapacity, accountRefillPerMinute, maxKeys);
+        this.throttled = Counter.builder("auth.login.throttled").register(meterRegistry);
+    }
+
+    /**
+     * Take one token from the IP bucket and one from the account bucket
+     *
+     * @throws TooManyRequestsException if either bucket is empty
+     */
+    public void acquire(String clientIp, String email) {
+        long now = System.nanoTime();
+        long ipWait = ipBuckets.tryAcquire(clientIp != null ? clientIp : "unknown", now);
+        long accountWait = ipWait == 0 ? accountBuckets.tryAcquire(UserCache.normalizeEmail(email), now) : 0;
+        long waitSeconds = Math.max(ipWait, accountWait);
+        if (waitSeconds > 0) {
+            throttled.increment();
+            throw new TooManyRequestsException("Too many login attempts, please try again later", waitSeconds);
+        }
+    }
+
+    /**
+     * A successful login restores the account's bucket so the owner is not locked out
+     * by their own earlier typos
+     */
+    public void onSuccess(String email) {
+        accountBuckets.reset(UserCache.normalizeEmail(email));
+    }
+
+    private static final class Bucket {
+        double tokens;
+        long lastRefillNanos;
+    }
+
+    private static final class Buckets {
+        private final double capacity;
+        private final double tokensPerNano;
+        private final Map<String, Bucket>[] stripes;
+
+        @SuppressWarnings("unchecked")
+        Buckets(int capacity, double refillPerMinute, int maxKeys) {
+            this.capacity = capacity;
+            this.tokensPerNano = refillPerMinute / 60_000_000_000d;
+            int perStripe = Math.max(16, maxKeys / STRIPES);
+            this.stripes = new Map[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new LinkedHashMap<>(32, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                        return size() > perStripe;
+                    }
+                };
+            }
+        }
+
+        private Map<String, Bucket> stripe(String key) {
+            return stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise the seconds until one is available
+         */
+        long tryAcquire(String key, long now) {
+            if (key == null) {
+                return 0;
+            }
+            Map<String, Bucket> stripe = stripe(key);
+            synchronized (stripe) {
+                Bucket bucket = stripe.get(key);
+                if (bucket == null) {
+                    bucket = new Bucket();
+                    bucket.tokens = capacity;
+                    bucket.lastRefillNanos = now;
+                    stripe.put(key, bucket);
+                } else {
+                    bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.lastRefillNanos) * tokensPerNano);
+                    bucket.lastRefillNanos = now;
+                }
+                if (bucket.tokens >= 1) {
+                    bucket.tokens -= 1;
+                    return 0;
+                }
+                return (long) Math.ceil((1 - bucket.tokens) / tokensPerNano / 1_000_000_000d);
+            }
+        }
+
+        void reset(String key) {
+            if (key == null) {
+                return;
+            }
+            Map<String, Bucket> stripe = stripe(key);
+            synchronized (stripe) {
+                stripe.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.eduprajna.service;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.Locale;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.eduprajna.entity.NewsletterSubscriber;
+import com.eduprajna.repository.NewsletterSubscriberRepository;
+
+/**
+ * Newsletter subscriptions and opt-outs. Unsubscribe links carry an HMAC of the address
+ * instead of a stored token, so the same link works for subscribers and for customers
+ * who never subscribed but receive customer campaigns. Links point at the API
+ * (app.api-base-url), which serves the unsubscribe and confirmation endpoints.
+ */
+@Service
+public class NewsletterService {
+    private static final Logger logger = LoggerFactory.getLogger(NewsletterService.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final long RESUBSCRIBE_LINK_DAYS = 7;
+    private static final String UNSUBSCRIBE_PREFIX = "unsub:";
+
+    private final NewsletterSubscriberRepository subscriberRepository;
+    private final SecretKeySpec key;
+    private final String publicBaseUrl;
+
+    public NewsletterService(NewsletterSubscriberRepository subscriberRepository,
+            @Value("${newsletter.unsubscribe-secret:}") String secret,
+            @Value("${auth.token.secret:}") String authSecret,
+            @Value("${newsletter.public-base-url:${app.api-base-url:http://56.228.81.193:8080}}") String publicBaseUrl) {
+        this.subscriberRepository = subscriberRepository;
+        byte[] keyBytes;
+        if (secret != null && !secret.isBlank()) {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        } else if (authSecret != null && !authSecret.isBlank()) {
+            // Never sign with the access-token key itself: a subscriber address shaped like a
+            // token payload would get mailed a valid token signature
+            keyBytes = hmac(new SecretKeySpec(authSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM),
+                    "newsletter-unsubscribe");
+        } else {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            logger.warn("newsletter.unsubscribe-secret is not set; unsubscribe links will not survive a restart");
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.publicBaseUrl = publicBaseUrl.endsWith("/") ? publicBaseUrl.substring(0, publicBaseUrl.length() - 1)
+                : publicBaseUrl;
+    }
+
+    public enum SubscribeResult {
+        SUBSCRIBED,
+        // The address opted out before; it is only re-activated from the confirmation link
+        CONFIRMATION_REQUIRED
+    }
+
+    /**
+     * Add an address to the newsletter. An address that unsubscribed earlier is not
+     * re-activated here: anyone can type it into the form, so the owner must confirm.
+     *
+     * Not transactional: a concurrent subscribe of the same address fails the insert in
+     * the repository's own transaction, and is handled here instead of leaving an outer
+     * transaction marked rollback-only.
+     */
+    public SubscribeResult subscribe(String email) {
+        String normalized = normalize(email);
+        NewsletterSubscriber subscriber = subscriberRepository.findByEmail(normalized).orElse(null);
+        if (subscriber == null) {
+            NewsletterSubscriber created = new NewsletterSubscriber();
+            created.setEmail(normalized);
+            try {
+                subscriberRepository.saveAndFlush(created);
+                return SubscribeResult.SUBSCRIBED;
+            } catch (DataIntegrityViolationException e) {
+                // Subscribed (or opted out) concurrently
+                subscriber = subscriberRepository.findByEmail(normalized).orElseThrow(() -> e);
+            }
+        }
+        return subscriber.getUnsubscribedAt() != null ? SubscribeResult.CONFIRMATION_REQUIRED
+                : SubscribeResult.SUBSCRIBED;
+    }
+
+    /**
+     * Re-activate an opted-out address from the link sent by resubscribeUrl
+     *
+     * @return false when the link is expired or does not match the address
+     */
+    public boolean confirmResubscribe(String email, long expiresEpochSecond, String token) {
+        String normalized = normalize(email);
+        if (expiresEpochSecond < OffsetDateTime.now().toEpochSecond()
+                || !matches(sign("resubscribe:" + expiresEpochSecond + ":" + normalized), token)) {
+            return false;
+        }
+        subscriberRepository.markResubscribed(normalized);
+        return true;
+    }
+
+    public String resubscribeUrl(String email) {
+        String normalized = normalize(email);
+        long expires = OffsetDateTime.now().plusDays(RESUBSCRIBE_LINK_DAYS).toEpochSecond();
+        return publicBaseUrl + "/api/newsletter/confirm?email=" + URLEncoder.encode(normalized, StandardCharsets.UTF_8)
+                + "&expires=" + expires + "&token=" + sign("resubscribe:" + expires + ":" + normalized);
+    }
+
+    /**
+     * Record an opt-out from an unsubscribe link (or a one-click unsubscribe POST)
+     *
+     * @return false when the token does not match the address
+     */
+    public boolean unsubscribe(String email, String token) {
+        String normalized = normalize(email);
+        if (!matches(sign(UNSUBSCRIBE_PREFIX + normalized), token)) {
+            return false;
+        }
+        OffsetDateTime now = OffsetDateTime.now();
+        if (subscriberRepository.markUnsubscribed(normalized, now) > 0
+                || subscriberRepository.findByEmail(normalized).isPresent()) {
+            return true;
+        }
+        // Customers who never subscribed get an opt-out row so customer campaigns skip them
+        NewsletterSubscriber optOut = new NewsletterSubscriber();
+        optOut.setEmail(normalized);
+        optOut.setUnsubscribedAt(now);
+        try {
+            subscriberRepository.saveAndFlush(optOut);
+        } catch (DataIntegrityViolationException e) {
+            // Inserted concurrently (subscribe or a second click): opt that row out
+            subscriberRepository.markUnsubscribed(normalized, now);
+        }
+        return true;
+    }
+
+    public String unsubscribeUrl(String email) {
+        String normalized = normalize(email);
+        return publicBaseUrl + "/api/newsletter/unsubscribe?email=" + URLEncoder.encode(normalized, StandardCharsets.UTF_8)
+                + "&token=" + sign(UNSUBSCRIBE_PREFIX + normalized);
+    }
+
+    private static boolean matches(String expected, String token) {
+        return token != null && MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                token.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Messages carry a purpose prefix ("unsub:", "resubscribe:") so one link's token is never valid for another
+    private String sign(String message) {
+        return ENCODER.encodeToString(hmac(key, message));
+    }
+
+    private static byte[] hmac(SecretKeySpec key, String message) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String normalize(String email) {
+        if (email == null || email.isBlank()) {
+            throw new IllegalArgumentException("Email is required");
+        }
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
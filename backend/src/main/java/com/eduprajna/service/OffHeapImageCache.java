@@ -0,0 +1,490 @@
+package com.eduprajna.service;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Size-bounded cache of hot image bytes held outside the Java heap.
+ *
+ * Memory is allocated once as direct ByteBuffer slabs split into fixed-size pages; an
+ * image occupies as many pages as it needs (not necessarily adjacent), so there is no
+ * fragmentation and nothing for the garbage collector to copy. Only small per-entry
+ * metadata (page numbers, validators, precomputed response headers) lives on the heap.
+ *
+ * Admission is plain TinyLFU in front of a single LRU (no admission window): every
+ * lookup is counted in a small count-min sketch that is periodically halved, and a new
+ * image that does not fit in free pages is admitted only if it has been requested more
+ * often than each LRU entry it would evict. One-hit wonders (crawlers walking the whole
+ * catalog) therefore cannot flush the hot set; the price is that a brand-new image needs
+ * a few requests before it can displace anything.
+ *
+ * Readers pin an entry while streaming it; an entry evicted or invalidated meanwhile
+ * keeps its pages until the last reader closes its stream.
+ */
+@Component
+public class OffHeapImageCache {
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapImageCache.class);
+
+    private final boolean enabled;
+    private final int pageSize;
+    private final int pagesPerSlab;
+    private final long maxEntryBytes;
+    private final ByteBuffer[] slabs;
+    private final int[] freePages;
+    private int freeCount;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, CachedImage> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter rejected;
+    private final Counter bytesServed;
+
+    /**
+     * Cached image: validators and response headers on the heap, bytes in slab pages
+     */
+    public static final class CachedImage {
+        private final String key;
+        private final Path path;
+        private final int[] pages;
+        private final int length;
+        private final String etag;
+        private final long lastModified;
+        private final HttpHeaders headers;
+        private int pins;
+        private boolean removed;
+
+        private CachedImage(String key, Path path, int[] pages, int length, String etag, long lastModified,
+                HttpHeaders headers) {
+            this.key = key;
+            this.path = path;
+            this.pages = pages;
+            this.length = length;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.headers = headers;
+        }
+
+        public String etag() { return etag; }
+        public long lastModified() { return lastModified; }
+        public HttpHeaders headers() { return headers; }
+        public int length() { return length; }
+    }
+
+    public OffHeapImageCache(@Value("${storage.image-cache.enabled:true}") boolean enabled,
+            @Value("${storage.image-cache.capacity-mb:64}") int capacityMb,
+            @Value("${storage.image-cache.page-kb:16}") int pageKb,
+            @Value("${storage.image-cache.max-entry-kb:2048}") int maxEntryKb,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled && capacityMb > 0;
+        this.pageSize = pageKb * 1024;
+        this.maxEntryBytes = maxEntryKb * 1024L;
+        int slabBytes = 4 * 1024 * 1024;
+        this.pagesPerSlab = slabBytes / pageSize;
+        int slabCount = this.enabled ? Math.max(1, capacityMb / 4) : 0;
+        this.slabs = new ByteBuffer[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            slabs[i] = ByteBuffer.allocateDirect(slabBytes);
+        }
+        int totalPages = slabCount * pagesPerSlab;
+        this.freePages = new int[totalPages];
+        for (int i = 0; i < totalPages; i++) {
+            freePages[i] = totalPages - 1 - i;
+        }
+        this.freeCount = totalPages;
+        this.sketch = new FrequencySketch(Math.max(1024, totalPages * 4));
+
+        this.hits = Counter.builder("storage.image-cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("storage.image-cache.requests").tag("result", "miss").register(meterRegistry);
+        this.rejected = Counter.builder("storage.image-cache.admission.rejected").register(meterRegistry);
+        this.bytesServed = Counter.builder("storage.image-cache.bytes.served").register(meterRegistry);
+        meterRegistry.gauge("storage.image-cache.hit.ratio", this, c -> {
+            double total = c.hits.count() + c.misses.count();
+            return total == 0 ? 0 : c.hits.count() / total;
+        });
+        meterRegistry.gauge("storage.image-cache.used.bytes", this, c -> c.usedBytes());
+        meterRegistry.gauge("storage.image-cache.entries", this, c -> c.size());
+        if (this.enabled) {
+            logger.info("Off-heap image cache: {} MB in {} pages of {} KB", slabCount * 4, totalPages, pageKb);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Cache key for a stored file, optionally at a requested width
+     */
+    public static String key(String filename, Integer width) {
+        return width == null ? filename : filename + "?w=" + width;
+    }
+
+    public CachedImage get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (this) {
+            sketch.increment(key);
+            CachedImage image = entries.get(key);
+            if (image != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+            }
+            return image;
+        }
+    }
+
+    /**
+     * Copy a file into the cache if admission allows it
+     *
+     * @return the cached entry, or null if the file was not admitted
+     */
+    public CachedImage admit(String key, Path path, long size, String etag, long lastModified, HttpHeaders headers) {
+        if (!enabled || size <= 0 || size > maxEntryBytes) {
+            return null;
+        }
+        int needed = (int) ((size + pageSize - 1) / pageSize);
+        int[] pages;
+        synchronized (this) {
+            if (entries.containsKey(key)) {
+                return entries.get(key);
+            }
+            if (!makeRoom(key, needed)) {
+                rejected.increment();
+                return null;
+            }
+            pages = new int[needed];
+            for (int i = 0; i < needed; i++) {
+                pages[i] = freePages[--freeCount];
+            }
+        }
+        // Pages are reserved for this thread only, so the copy runs outside the lock
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long remaining = size;
+            for (int page : pages) {
+                ByteBuffer target = pageBuffer(page, (int) Math.min(pageSize, remaining));
+                while (target.hasRemaining()) {
+                    if (channel.read(target) < 0) {
+                        throw new IOException("File shrank while caching: " + path);
+                    }
+                }
+                remaining -= pageSize;
+            }
+        } catch (IOException e) {
+            logger.debug("Could not cache {}: {}", key, e.getMessage());
+            synchronized (this) {
+                release(pages);
+            }
+            return null;
+        }
+        CachedImage image = new CachedImage(key, path, pages, (int) size, etag, lastModified, headers);
+        synchronized (this) {
+            CachedImage raced = entries.get(key);
+            if (raced != null) {
+                release(pages);
+                return raced;
+            }
+            entries.put(key, image);
+        }
+        return image;
+    }
+
+    // Free pages for a candidate, evicting LRU entries it is more popular than. Nothing is
+    // evicted unless the victims free enough pages right now.
+    private boolean makeRoom(String key, int needed) {
+        if (needed > freePages.length) {
+            return false;
+        }
+        if (freeCount >= needed) {
+            return true;
+        }
+        int candidateFrequency = sketch.frequency(key);
+        List<CachedImage> victims = new ArrayList<>();
+        int reclaimable = freeCount;
+        Iterator<CachedImage> lru = entries.values().iterator();
+        while (reclaimable < needed && lru.hasNext()) {
+            CachedImage victim = lru.next();
+            if (victim.pins > 0) {
+                // Being streamed: evicting it would only free its pages later
+                continue;
+            }
+            if (sketch.frequency(victim.key) >= candidateFrequency) {
+                return false;
+            }
+            victims.add(victim);
+            reclaimable += victim.pages.length;
+        }
+        if (reclaimable < needed) {
+            return false;
+        }
+        for (CachedImage victim : victims) {
+            remove(victim);
+        }
+        return true;
+    }
+
+    /**
+     * Drop an entry and every width variant of it (on store/delete of the file)
+     */
+    public void invalidate(String filename) {
+        if (!enabled || filename == null) {
+            return;
+        }
+        String widthPrefix = filename + "?w=";
+        synchronized (this) {
+            List<CachedImage> stale = new ArrayList<>();
+            for (CachedImage image : entries.values()) {
+                if (image.key.equals(filename) || image.key.startsWith(widthPrefix)) {
+                    stale.add(image);
+                }
+            }
+            stale.forEach(this::remove);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        new ArrayList<>(entries.values()).forEach(this::remove);
+    }
+
+    /**
+     * Resource streaming the cached bytes. If the entry's pages are already gone when the
+     * stream is opened, the file is read from disk instead.
+     */
+    public AbstractResource resource(CachedImage image) {
+        return new AbstractResource() {
+            @Override
+            public String getDescription() {
+                return "cached image [" + image.key + "]";
+            }
+
+            @Override
+            public long contentLength() {
+                return image.length;
+            }
+
+            @Override
+            public String getFilename() {
+                return image.path.getFileName().toString();
+            }
+
+            @Override
+            public boolean exists() {
+                return true;
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                if (!pin(image)) {
+                    return new FileInputStream(image.path.toFile());
+                }
+                bytesServed.increment(image.length);
+                return new PageInputStream(image);
+            }
+        };
+    }
+
+    private synchronized boolean pin(CachedImage image) {
+        if (image.removed && image.pins == 0) {
+            return false; // pages already returned to the pool
+        }
+        image.pins++;
+        return true;
+    }
+
+    private synchronized void unpin(CachedImage image) {
+        image.pins--;
+        if (image.removed && image.pins == 0) {
+            release(image.pages);
+        }
+    }
+
+    private void remove(CachedImage image) {
+        if (entries.get(image.key) == image) {
+            entries.remove(image.key);
+        }
+        if (!image.removed) {
+            image.removed = true;
+            if (image.pins == 0) {
+                release(image.pages);
+            }
+        }
+    }
+
+    private void release(int[] pages) {
+        for (int page : pages) {
+            freePages[freeCount++] = page;
+        }
+    }
+
+    // Independent view of one page, so concurrent readers never share buffer positions
+    private ByteBuffer pageBuffer(int page, int length) {
+        ByteBuffer slab = slabs[page / pagesPerSlab].duplicate();
+        int offset = (page % pagesPerSlab) * pageSize;
+        slab.limit(offset + length).position(offset);
+        return slab.slice();
+    }
+
+    private synchronized long usedBytes() {
+        return (long) (freePages.length - freeCount) * pageSize;
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private final class PageInputStream extends InputStream {
+        private final CachedImage image;
+        private int pageIndex;
+        private ByteBuffer current;
+        private int remaining;
+        private boolean closed;
+
+        PageInputStream(CachedImage image) {
+            this.image = image;
+            this.remaining = image.length;
+        }
+
+        private boolean advance() {
+            while (current == null || !current.hasRemaining()) {
+                if (remaining <= 0 || pageIndex >= image.pages.length) {
+                    return false;
+                }
+                int length = Math.min(pageSize, remaining);
+                current = pageBuffer(image.pages[pageIndex++], length);
+                remaining -= length;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() {
+            return advance() ? current.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!advance()) {
+                return -1;
+            }
+            int n = Math.min(len, current.remaining());
+            current.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = 0;
+            while (skipped < n && advance()) {
+                int step = (int) Math.min(n - skipped, current.remaining());
+                current.position(current.position() + step);
+                skipped += step;
+            }
+            return skipped;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                unpin(image);
+            }
+        }
+    }
+
+    /**
+     * Count-min sketch with 4-bit-style saturation and periodic halving, so frequencies
+     * reflect recent popularity
+     */
+    static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private final int[][] table;
+        private final int mask;
+        private final int[] seeds = new int[DEPTH];
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int width) {
+            int w = Integer.highestOneBit(width - 1) << 1;
+            this.table = new int[DEPTH][w];
+            this.mask = w - 1;
+            this.sampleSize = w * 10;
+            for (int i = 0; i < DEPTH; i++) {
+                seeds[i] = ThreadLocalRandom.current().nextInt() | 1;
+            }
+        }
+
+        void increment(String key) {
+            int h = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int idx = index(h, i);
+                if (table[i][idx] < MAX_COUNT) {
+                    table[i][idx]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(String key) {
+            int h = spread(key.hashCode());
+            int min = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, table[i][index(h, i)]);
+            }
+            return min;
+        }
+
+        private int index(int h, int row) {
+            int x = h * seeds[row];
+            return (x ^ (x >>> 16)) & mask;
+        }
+
+        private void reset() {
+            for (int[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>>= 1;
+                }
+            }
+            additions /= 2;
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 17;
+            h *= 0xed5ad4bb;
+            h ^= h >>> 11;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.eduprajna.service;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.eduprajna.config.DatabasePlatform;
+import com.eduprajna.dto.OrderDTO;
+import com.eduprajna.dto.OrderItemDTO;
+import com.eduprajna.entity.ShippingSnapshot;
+
+/**
+ * Moves old delivered orders (with their items and status history) out of the hot
+ * tables into archive tables, and reads them back when full history is requested.
+ *
+ * On PostgreSQL orders_archive is range-partitioned by month on created_at; on MySQL
+ * plain archive tables are used.
+ */
+@Service
+public class OrderArchiveService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderArchiveService.class);
+
+    private static final String ORDERS = "orders";
+    private static final String ORDER_ITEMS = "order_items";
+    private static final String ORDER_STATUS_HISTORY = "order_status_history";
+
+    @Value("${orders.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${orders.archive.after-months:6}")
+    private int afterMonths;
+
+    @Value("${orders.archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${orders.archive.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform platform;
+    private final TransactionTemplate transactionTemplate;
+
+    // Column lists shared by each hot table and its archive table, resolved at startup
+    private final Map<String, String> archivedColumns = new HashMap<>();
+    private final Set<YearMonth> knownPartitions = Collections.newSetFromMap(new java.util.concurrent.ConcurrentHashMap<>());
+    private volatile boolean ready;
+
+    public OrderArchiveService(JdbcTemplate jdbcTemplate, DatabasePlatform platform,
+            TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.platform = platform;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Create the archive tables if they do not exist yet
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureArchiveTables() {
+        try {
+            if (platform.isPostgres()) {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS orders_archive (LIKE orders INCLUDING DEFAULTS) PARTITION BY RANGE (created_at)");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_orders_archive_user ON orders_archive (user_id, created_at)");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_orders_archive_status ON orders_archive (status, created_at)");
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS order_items_archive (LIKE order_items INCLUDING DEFAULTS)");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_order_items_archive_order ON order_items_archive (order_id)");
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS order_status_history_archive (LIKE order_status_history INCLUDING DEFAULTS)");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_order_status_history_archive_order ON order_status_history_archive (order_id)");
+            } else if (platform.isMySql()) {
+                // LIKE copies the column definitions and indexes (but not foreign keys)
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS orders_archive LIKE orders");
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS order_items_archive LIKE order_items");
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS order_status_history_archive LIKE order_status_history");
+            } else {
+                logger.warn("Order archive is not supported on {}", platform.getProductName());
+                return;
+            }
+            archivedColumns.put(ORDERS, sharedColumns(ORDERS));
+            archivedColumns.put(ORDER_ITEMS, sharedColumns(ORDER_ITEMS));
+            archivedColumns.put(ORDER_STATUS_HISTORY, sharedColumns(ORDER_STATUS_HISTORY));
+            ready = true;
+            logger.info("Order archive tables ready (archiving {})", enabled ? "enabled" : "disabled");
+        } catch (Exception e) {
+            logger.error("Failed to prepare order archive tables: {}", e.getMessage(), e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Scheduled mover: relocates orders delivered more than N months ago in batches.
+     * Each batch runs in its own transaction so locks are held only briefly.
+     */
+    @Scheduled(cron = "${orders.archive.cron:0 30 3 * * *}")
+    public void archiveDeliveredOrders() {
+        if (!enabled || !ready) {
+            return;
+        }
+        OffsetDateTime cutoff = OffsetDateTime.now().minusMonths(afterMonths);
+        int total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            Integer moved = transactionTemplate.execute(status -> moveBatch(cutoff));
+            total += moved != null ? moved : 0;
+            if (moved == null || moved < batchSize) {
+                break;
+            }
+        }
+        logger.info("Order archive run finished: {} orders delivered before {} archived", total, cutoff);
+    }
+
+    private int moveBatch(OffsetDateTime cutoff) {
+        Timestamp cutoffTs = Timestamp.from(cutoff.toInstant());
+        // Delivered before the cutoff = delivered and no status change since the cutoff
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT o.id FROM orders o WHERE o.status = 'delivered' AND o.created_at < ? "
+                        + "AND NOT EXISTS (SELECT 1 FROM order_status_history h WHERE h.order_id = o.id AND h.changed_at >= ?) "
+                        + "ORDER BY o.id LIMIT ?",
+                Long.class, cutoffTs, cutoffTs, batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String in = placeholders(ids.size());
+        Object[] args = ids.toArray();
+
+        if (platform.isPostgres()) {
+            ensurePartitions(in, args);
+        }
+
+        String orderCols = archivedColumns.get(ORDERS);
+        String itemCols = archivedColumns.get(ORDER_ITEMS);
+        String historyCols = archivedColumns.get(ORDER_STATUS_HISTORY);
+        jdbcTemplate.update("INSERT INTO orders_archive (" + orderCols + ") SELECT " + orderCols
+                + " FROM orders WHERE id IN (" + in + ")", args);
+        jdbcTemplate.update("INSERT INTO order_items_archive (" + itemCols + ") SELECT " + itemCols
+                + " FROM order_items WHERE order_id IN (" + in + ")", args);
+        jdbcTemplate.update("INSERT INTO order_status_history_archive (" + historyCols + ") SELECT " + historyCols
+                + " FROM order_status_history WHERE order_id IN (" + in + ")", args);
+
+        jdbcTemplate.update("DELETE FROM order_status_history WHERE order_id IN (" + in + ")", args);
+        jdbcTemplate.update("DELETE FROM order_items WHERE order_id IN (" + in + ")", args);
+        jdbcTemplate.update("DELETE FROM orders WHERE id IN (" + in + ")", args);
+        logger.debug("Archived {} orders (ids {}..{})", ids.size(), ids.get(0), ids.get(ids.size() - 1));
+        return ids.size();
+    }
+
+    /**
+     * Create the monthly partitions needed to hold the given orders
+     */
+    private void ensurePartitions(String in, Object[] args) {
+        Map<String, Object> range = jdbcTemplate.queryForMap(
+                "SELECT MIN(created_at) AS min_created, MAX(created_at) AS max_created FROM orders WHERE id IN (" + in + ")", args);
+        YearMonth from = toYearMonth(range.get("min_created"));
+        YearMonth to = toYearMonth(range.get("max_created"));
+        if (from == null || to == null) {
+            return;
+        }
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            if (knownPartitions.contains(month)) {
+                continue;
+            }
+            LocalDate start = month.atDay(1);
+            LocalDate end = month.plusMonths(1).atDay(1);
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS orders_archive_p%04d%02d PARTITION OF orders_archive "
+                            + "FOR VALUES FROM ('%s 00:00:00+00') TO ('%s 00:00:00+00')",
+                    month.getYear(), month.getMonthValue(), start, end));
+            knownPartitions.add(month);
+        }
+    }
+
+    private YearMonth toYearMonth(Object value) {
+        if (value instanceof Timestamp ts) {
+            return YearMonth.from(ts.toInstant().atOffset(ZoneOffset.UTC));
+        }
+        if (value instanceof OffsetDateTime odt) {
+            return YearMonth.from(odt.withOffsetSameInstant(ZoneOffset.UTC));
+        }
+        return null;
+    }
+
+    // -------------------- Reads --------------------
+
+    /**
+     * Archived orders of a user, newest first
+     */
+    public List<OrderDTO> findArchivedOrdersByUser(Long userId) {
+        if (!ready) {
+            return List.of();
+        }
+        return loadOrders("WHERE a.user_id = ? ORDER BY a.created_at DESC", userId);
+    }
+
+    /**
+     * Archived orders with the given status, newest first
+     */
+    public List<OrderDTO> findArchivedOrdersByStatus(String status) {
+        if (!ready) {
+            return List.of();
+        }
+        return loadOrders("WHERE a.status = ? ORDER BY a.created_at DESC", status);
+    }
+
+    /**
+     * A single archived order by id
+     */
+    public Optional<OrderDTO> findArchivedOrder(Long orderId) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        return loadOrders("WHERE a.id = ?", orderId).stream().findFirst();
+    }
+
+    private List<OrderDTO> loadOrders(String whereAndOrder, Object arg) {
+        List<OrderDTO> orders = jdbcTemplate.query(
+                "SELECT a.*, u.email AS user_email, u.name AS user_name FROM orders_archive a "
+                        + "LEFT JOIN users u ON u.id = a.user_id " + whereAndOrder,
+                (rs, rowNum) -> mapOrder(rs), arg);
+        if (orders.isEmpty()) {
+            return orders;
+        }
+
+        // Load all items for the page of orders in one query
+        List<Long> orderIds = orders.stream().map(OrderDTO::getId).collect(Collectors.toList());
+        Map<Long, List<OrderItemDTO>> itemsByOrder = new HashMap<>();
+        jdbcTemplate.query("SELECT * FROM order_items_archive WHERE order_id IN (" + placeholders(orderIds.size()) + ")",
+                rs -> {
+                    itemsByOrder.computeIfAbsent(rs.getLong("order_id"), k -> new ArrayList<>()).add(mapItem(rs));
+                }, orderIds.toArray());
+        for (OrderDTO order : orders) {
+            order.setItems(itemsByOrder.getOrDefault(order.getId(), new ArrayList<>()));
+        }
+        return orders;
+    }
+
+    private OrderDTO mapOrder(ResultSet rs) throws SQLException {
+        OrderDTO dto = new OrderDTO();
+        dto.setId(rs.getLong("id"));
+        dto.setUserId(rs.getLong("user_id"));
+        dto.setUserEmail(rs.getString("user_email"));
+        dto.setUserName(rs.getString("user_name"));
+        dto.setDeliveryOption(rs.getString("delivery_option"));
+        dto.setPaymentMethod(rs.getString("payment_method"));
+        dto.setStatus(rs.getString("status"));
+        dto.setSubtotal(rs.getDouble("subtotal"));
+        dto.setShippingFee(rs.getDouble("shipping_fee"));
+        dto.setTotal(rs.getDouble("total"));
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        if (createdAt != null) {
+            dto.setCreatedAt(OffsetDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault()));
+        }
+
+        ShippingSnapshot shipping = new ShippingSnapshot();
+        shipping.setName(rs.getString("name"));
+        shipping.setPhone(rs.getString("phone"));
+        shipping.setStreet(rs.getString("street"));
+        shipping.setCity(rs.getString("city"));
+        shipping.setState(rs.getString("state"));
+        shipping.setPincode(rs.getString("pincode"));
+        shipping.setLandmark(rs.getString("landmark"));
+        shipping.setAddressType(rs.getString("address_type"));
+        dto.setShipping(shipping);
+        return dto;
+    }
+
+    private OrderItemDTO mapItem(ResultSet rs) throws SQLException {
+        OrderItemDTO dto = new OrderItemDTO();
+        dto.setId(rs.getLong("id"));
+        long productId = rs.getLong("product_id");
+        dto.setProductId(rs.wasNull() ? null : productId);
+        // Archived orders are rendered from the snapshot taken at order time
+        dto.setProductName(rs.getString("product_name"));
+        dto.setProductImage(rs.getString("product_image_url"));
+        double variantPrice = rs.getDouble("variant_price");
+        dto.setProductPrice(rs.wasNull() ? null : variantPrice);
+        dto.setQuantity(rs.getInt("quantity"));
+        dto.setPrice(rs.getDouble("price"));
+        dto.setWeightValue(rs.getString("weight_value"));
+        dto.setWeightUnit(rs.getString("weight_unit"));
+        return dto;
+    }
+
+    // -------------------- Helpers --------------------
+
+    /**
+     * Columns present in both the hot table and its archive. Columns added to the hot table
+     * after the archive was created are not archived; they are logged so the archive can be altered.
+     */
+    private String sharedColumns(String table) {
+        Set<String> hot = columnsOf(table);
+        Set<String> archive = columnsOf(table + "_archive");
+        Set<String> shared = new LinkedHashSet<>(hot);
+        shared.retainAll(archive);
+        if (shared.size() < hot.size()) {
+            Set<String> missing = new LinkedHashSet<>(hot);
+            missing.removeAll(archive);
+            logger.warn("Columns {} of {} are missing from {}_archive and will not be archived", missing, table, table);
+        }
+        return String.join(", ", shared);
+    }
+
+    private Set<String> columnsOf(String table) {
+        return jdbcTemplate.query("SELECT * FROM " + table + " WHERE 1 = 0", rs -> {
+            ResultSetMetaData meta = rs.getMetaData();
+            Set<String> columns = new LinkedHashSet<>();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                columns.add(meta.getColumnName(i).toLowerCase());
+            }
+            return columns;
+        });
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
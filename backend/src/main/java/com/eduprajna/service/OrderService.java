@@ -1,13 +1,24 @@
 package com.eduprajna.service;
 
+import com.eduprajna.dto.BulkStatusUpdateResult;
 import com.eduprajna.entity.*;
 import com.eduprajna.repository.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -18,6 +29,11 @@ import java.util.stream.Collectors;
 public class OrderService {
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
 
+    // Bulk transitions look up and update orders in chunks to keep IN lists bounded
+    private static final int BULK_CHUNK_SIZE = 1000;
+    // Orders in these states cannot be moved to another status in bulk
+    private static final Set<String> TERMINAL_STATUSES = Set.of("delivered", "cancelled");
+
     private final OrderRepository orderRepo;
     private final CartItemRepository cartRepo;
     private final CheckoutSelectionRepository selectionRepo;
@@ -25,12 +41,22 @@ public class OrderService {
     private final com.eduprajna.repository.ProductRepository productRepo;
     private final com.eduprajna.repository.ProductVariantRepository productVariantRepo;
     private final OrderStatusHistoryRepository orderStatusHistoryRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final UserService userService;
+    private final CartWriteBehindBuffer cartWriteBehind;
+    private final EmailService emailService;
+    private final StorageService storageService;
 
     public OrderService(OrderRepository orderRepo, CartItemRepository cartRepo,
                        CheckoutSelectionRepository selectionRepo, AddressRepository addressRepo,
                        com.eduprajna.repository.ProductRepository productRepo,
                        com.eduprajna.repository.ProductVariantRepository productVariantRepo,
-                       OrderStatusHistoryRepository orderStatusHistoryRepo) {
+                       OrderStatusHistoryRepository orderStatusHistoryRepo,
+                       JdbcTemplate jdbcTemplate,
+                       UserService userService,
+                       CartWriteBehindBuffer cartWriteBehind,
+                       EmailService emailService,
+                       StorageService storageService) {
         this.orderRepo = orderRepo;
         this.cartRepo = cartRepo;
         this.selectionRepo = selectionRepo;
@@ -38,6 +64,11 @@ public class OrderService {
         this.productRepo = productRepo;
         this.productVariantRepo = productVariantRepo;
         this.orderStatusHistoryRepo = orderStatusHistoryRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.userService = userService;
+        this.cartWriteBehind = cartWriteBehind;
+        this.emailService = emailService;
+        this.storageService = storageService;
     }
 
     /**
@@ -49,7 +80,8 @@ public class OrderService {
     public Order placeOrder(User user) {
         logger.debug("Placing order for user: {}", user.getEmail());
         
-        // 1. Get cart items
+        // 1. Get cart items (buffered quantity changes are written first)
+        cartWriteBehind.flushUser(user.getId());
         List<CartItem> cart = cartRepo.findByUser(user);
         if (cart.isEmpty()) {
             throw new IllegalStateException("Cart is empty");
@@ -124,6 +156,8 @@ public class OrderService {
             if (product != null) {
                 orderItem.setProductName(product.getName());
                 orderItem.setProductImageUrl(product.getImageUrl());
+                // The snapshot keeps the image alive after the product changes it
+                storageService.addReference(product.getImageUrl());
             }
             // Use array as mutable holder for lambda
             final String[] weightValueHolder = {null};
@@ -178,8 +212,11 @@ public class OrderService {
         cartRepo.deleteByUser(user);
         logger.info("Cart cleared for user: {}", user.getEmail());
         
-        // 10. Update user's order count
-        user.incrementTotalOrders();
+        // 10. Update user's order count (user may be a cached, detached instance)
+        userService.incrementTotalOrders(user);
+
+        // 11. Queue the confirmation (with invoice) to the account that placed the order
+        emailService.sendOrderConfirmation(savedOrder, user.getEmail());
         
         return savedOrder;
     }
@@ -229,6 +266,99 @@ public class OrderService {
         }
     }
     
+    /**
+     * Move many orders to the same status in one transaction
+     * Current statuses are validated with one query per chunk, orders are updated with a
+     * set-based UPDATE and the history rows are inserted with JDBC batching
+     * @param orderIds IDs of the orders to update (duplicates and nulls are ignored)
+     * @param status The new status (already validated and lower-cased by the caller)
+     * @return Aggregated report of updated, unchanged, missing and rejected orders
+     */
+    @Transactional
+    public BulkStatusUpdateResult bulkUpdateStatus(Collection<Long> orderIds, String status) {
+        BulkStatusUpdateResult result = new BulkStatusUpdateResult();
+        result.status = status;
+
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+        ids.removeIf(id -> id == null);
+        result.requested = ids.size();
+
+        // 1. Validate transitions against current statuses
+        List<Long> toUpdate = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += BULK_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + BULK_CHUNK_SIZE, ids.size()));
+            Map<Long, String> current = new HashMap<>();
+            for (Object[] row : orderRepo.findIdAndStatusByIdIn(chunk)) {
+                current.put((Long) row[0], (String) row[1]);
+            }
+            for (Long id : chunk) {
+                if (!current.containsKey(id)) {
+                    result.notFound.add(id);
+                    continue;
+                }
+                String oldStatus = current.get(id);
+                if (status.equalsIgnoreCase(oldStatus)) {
+                    result.unchanged++;
+                } else if (oldStatus != null && TERMINAL_STATUSES.contains(oldStatus.toLowerCase())) {
+                    result.rejected.add(new BulkStatusUpdateResult.Rejection(id, oldStatus,
+                            "Order is already " + oldStatus.toLowerCase()));
+                } else {
+                    toUpdate.add(id);
+                }
+            }
+        }
+
+        if (toUpdate.isEmpty()) {
+            logger.info("Bulk status update to '{}': nothing to update ({} requested)", status, result.requested);
+            return result;
+        }
+
+        // 2. Apply the transition set-based. The UPDATE skips orders that became terminal
+        //    since step 1; those are reported as rejected and get no history row.
+        Set<Long> skipped = new HashSet<>();
+        for (int from = 0; from < toUpdate.size(); from += BULK_CHUNK_SIZE) {
+            List<Long> chunk = toUpdate.subList(from, Math.min(from + BULK_CHUNK_SIZE, toUpdate.size()));
+            if (orderRepo.updateStatusByIdIn(chunk, status, TERMINAL_STATUSES) == chunk.size()) {
+                continue;
+            }
+            Map<Long, String> after = new HashMap<>();
+            for (Object[] row : orderRepo.findIdAndStatusByIdIn(chunk)) {
+                after.put((Long) row[0], (String) row[1]);
+            }
+            for (Long id : chunk) {
+                String current = after.get(id);
+                if (!after.containsKey(id)) {
+                    // Deleted since step 1
+                    result.notFound.add(id);
+                    skipped.add(id);
+                } else if (!status.equalsIgnoreCase(current)) {
+                    result.rejected.add(new BulkStatusUpdateResult.Rejection(id, current,
+                            "Order is already " + current.toLowerCase()));
+                    skipped.add(id);
+                }
+            }
+        }
+        if (!skipped.isEmpty()) {
+            toUpdate.removeAll(skipped);
+        }
+
+        // 3. Record history rows in JDBC batches
+        Timestamp changedAt = Timestamp.from(OffsetDateTime.now().toInstant());
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO order_status_history (order_id, status, changed_at) VALUES (?, ?, ?)",
+                toUpdate, BULK_CHUNK_SIZE, (ps, id) -> {
+                    ps.setLong(1, id);
+                    ps.setString(2, status);
+                    ps.setTimestamp(3, changedAt);
+                });
+
+        result.updated = toUpdate.size();
+        result.updatedOrderIds = toUpdate;
+        logger.info("Bulk status update to '{}': requested={}, updated={}, unchanged={}, notFound={}, rejected={}",
+                status, result.requested, result.updated, result.unchanged, result.notFound.size(), result.rejected.size());
+        return result;
+    }
+    
     /**
      * Get order by ID with all details
      * @param orderId The ID of the order
@@ -240,6 +370,43 @@ public class OrderService {
             .orElseThrow(() -> new RuntimeException("Order not found with ID: " + orderId));
     }
     
+    /**
+     * True if the caller placed the order or is an admin
+     */
+    public boolean canAccess(Long orderId, User caller) {
+        if (caller == null) {
+            return false;
+        }
+        if ("admin".equalsIgnoreCase(caller.getRole())) {
+            return true;
+        }
+        return orderRepo.findUserIdById(orderId).map(caller.getId()::equals).orElse(false);
+    }
+
+    /**
+     * Queue the confirmation of an existing order again, to the order's own customer
+     * @return false if the order does not exist or could not be queued
+     */
+    @Transactional
+    public boolean resendConfirmation(Long orderId) {
+        Order order = orderRepo.findWithItemsById(orderId).orElse(null);
+        Long ownerId = orderRepo.findUserIdById(orderId).orElse(null);
+        User owner = ownerId != null ? userService.findById(ownerId).orElse(null) : null;
+        if (order == null || owner == null) {
+            return false;
+        }
+        return emailService.sendOrderConfirmation(order, owner.getEmail());
+    }
+
+    /**
+     * Find an order by ID in the hot orders table
+     * @param orderId The ID of the order
+     * @return The order, or empty if it does not exist (or has been archived)
+     */
+    public java.util.Optional<Order> findOrderById(Long orderId) {
+        return orderRepo.findById(orderId);
+    }
+    
     /**
      * Get orders by status
      * @param status The status to filter by
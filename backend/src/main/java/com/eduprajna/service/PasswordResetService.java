@@ -5,7 +5,6 @@ import com.eduprajna.entity.User;
 import com.eduprajna.repository.PasswordResetTokenRepository;
 import com.eduprajna.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,7 +32,10 @@ public class PasswordResetService {
     private EmailService emailService;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private UserCache userCache;
 
     /**
      * Generate password reset token for user email
@@ -54,7 +56,19 @@ public class PasswordResetService {
         }
 
         User user = userOpt.get();
+        String token = createResetToken(email);
+
+        // Send reset email
+        String resetLink = buildResetLink(token);
+        emailService.sendPasswordResetEmail(email, user.getName(), resetLink);
 
+        return token;
+    }
+
+    /**
+     * Replace any open tokens for the email with a new one that expires in 24 hours
+     */
+    private String createResetToken(String email) {
         // Invalidate any existing tokens for this email
         invalidateExistingTokens(email);
 
@@ -69,11 +83,6 @@ public class PasswordResetService {
         tokenRepository.save(resetToken);
 
         logger.info("Password reset token generated for email: {}", email);
-
-        // Send reset email
-        String resetLink = buildResetLink(token);
-        emailService.sendPasswordResetEmail(email, user.getName(), resetLink);
-
         return token;
     }
 
@@ -148,8 +157,9 @@ public class PasswordResetService {
         }
 
         User user = userOpt.get();
-        user.setPasswordHash(passwordEncoder.encode(newPassword));
+        user.setPasswordHash(passwordHashingService.encode(newPassword));
         userRepository.save(user);
+        userCache.invalidate(user);
 
         // Mark token as used
         resetToken.setIsUsed(true);
@@ -163,8 +173,11 @@ public class PasswordResetService {
      * Send forgotten credentials to email
      * Conditions:
      * 1. User with given email must exist
-     * 2. Sends username and a temporary password
-     * 3. User should change password on first login
+     * 2. Sends the username and a link to set a new password
+     * 3. The current password keeps working until the link is used
+     *
+     * No password is generated or mailed: queued mail sits in the outbox (and a dead
+     * letter there can stay for days), so it must not carry a usable password.
      * 
      * @param email User's email
      * @return true if credentials sent, false otherwise
@@ -177,16 +190,10 @@ public class PasswordResetService {
         }
 
         User user = userOpt.get();
-
-        // Generate temporary password
-        String temporaryPassword = generateTemporaryPassword();
-
-        // Update user with temporary password
-        user.setPasswordHash(passwordEncoder.encode(temporaryPassword));
-        userRepository.save(user);
+        String resetLink = buildResetLink(createResetToken(email));
 
         // Send credentials email
-        boolean emailSent = emailService.sendCredentialsEmail(email, user.getName(), temporaryPassword);
+        boolean emailSent = emailService.sendCredentialsEmail(email, user.getName(), resetLink);
 
         if (emailSent) {
             logger.info("Forgotten credentials sent to email: {}", email);
@@ -218,21 +225,4 @@ public class PasswordResetService {
         // Adjust URL to your frontend domain
         return "http://56.228.81.193/reset-password?token=" + token;
     }
-
-    /**
-     * Generate temporary password (8 characters: mix of uppercase, lowercase,
-     * numbers)
-     */
-    private String generateTemporaryPassword() {
-        String uppercase = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-        String lowercase = "abcdefghijklmnopqrstuvwxyz";
-        String digits = "0123456789";
-        String all = uppercase + lowercase + digits;
-
-        StringBuilder password = new StringBuilder();
-        for (int i = 0; i < 8; i++) {
-            password.append(all.charAt((int) (Math.random() * all.length())));
-        }
-        return password.toString();
-    }
 }
@@ -1,6 +1,13 @@
 package com.eduprajna.service;
 
+import java.time.OffsetDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -17,6 +24,8 @@ import com.eduprajna.repository.WishlistItemRepository;
 
 @Service
 public class ProductService {
+    private static final Logger logger = LoggerFactory.getLogger(ProductService.class);
+
     @Autowired
     private ProductVariantRepository productVariantRepository;
 
@@ -32,6 +41,12 @@ public class ProductService {
     @Autowired
     private WishlistItemRepository wishlistItemRepository;
 
+    @Autowired
+    private WishlistMembershipCache wishlistMembership;
+
+    @Autowired
+    private StorageService storageService;
+
     // Fetch all product variants (for admin and user)
     public List<ProductVariant> getAllVariants() {
         return productVariantRepository.findAll();
@@ -43,13 +58,61 @@ public class ProductService {
     }
 
     // --- RESTORED PRODUCT CRUD METHODS (NO STOCK LOGIC) ---
+    @Transactional
     public Product save(Product p) {
         if (p.getVariants() != null) {
             for (ProductVariant variant : p.getVariants()) {
                 variant.setProduct(p);
             }
         }
-        return productRepository.save(p);
+        if (p.getId() == null) {
+            Product created = productRepository.save(p);
+            storageService.addReference(created.getImageUrl());
+            return created;
+        }
+        String oldImageUrl = productRepository.findImageUrlById(p.getId()).orElse(null);
+
+        // Capture the stored prices before the update so open carts can follow the change
+        Double oldProductPrice = productRepository.findPriceById(p.getId()).orElse(null);
+        Map<Long, Double> oldVariantPrices = new HashMap<>();
+        for (Object[] row : productVariantRepository.findPricesByProductId(p.getId())) {
+            oldVariantPrices.put((Long) row[0], (Double) row[1]);
+        }
+
+        Product saved = productRepository.save(p);
+        if (!Objects.equals(oldImageUrl, saved.getImageUrl())) {
+            // New upload, library pick or removal: move the reference
+            storageService.addReference(saved.getImageUrl());
+            storageService.releaseReference(oldImageUrl);
+        }
+        repriceCarts(saved, oldProductPrice, oldVariantPrices);
+        return saved;
+    }
+
+    /**
+     * Propagate changed prices to cart lines: one set-based UPDATE per changed variant
+     * (plus one for lines without a variant), flagging each repriced line for checkout review.
+     */
+    private void repriceCarts(Product saved, Double oldProductPrice, Map<Long, Double> oldVariantPrices) {
+        int repriced = 0;
+        OffsetDateTime now = OffsetDateTime.now();
+        if (saved.getVariants() != null) {
+            for (ProductVariant variant : saved.getVariants()) {
+                Double newPrice = variant.getPrice();
+                if (variant.getId() == null || newPrice == null || !oldVariantPrices.containsKey(variant.getId())) {
+                    continue;
+                }
+                if (!Objects.equals(oldVariantPrices.get(variant.getId()), newPrice)) {
+                    repriced += cartItemRepository.repriceVariant(variant.getId(), newPrice, now);
+                }
+            }
+        }
+        if (saved.getPrice() != null && oldProductPrice != null && !oldProductPrice.equals(saved.getPrice())) {
+            repriced += cartItemRepository.repriceProductWithoutVariant(saved.getId(), saved.getPrice(), now);
+        }
+        if (repriced > 0) {
+            logger.info("Repriced {} cart lines after price change on product {}", repriced, saved.getId());
+        }
     }
 
     public Product getById(Long id) {
@@ -60,8 +123,14 @@ public class ProductService {
         return productRepository.findAll();
     }
 
+    @Transactional
     public void delete(Long id) {
+        String imageUrl = productRepository.findImageUrlById(id).orElse(null);
         productRepository.deleteById(id);
+        // The file itself stays until the upload GC finds nothing referencing it
+        storageService.releaseReference(imageUrl);
+        // Wishlist rows for the product may be gone with it; rebuild bitmaps lazily
+        wishlistMembership.invalidateAll();
     }
 
 	// Update stock for a variant (reduce or add)
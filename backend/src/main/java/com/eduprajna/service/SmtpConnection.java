@@ -0,0 +1,99 @@
+package com.eduprajna.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * One sender thread's SMTP connection, opened on first use and kept between messages so
+ * STARTTLS and AUTH are paid once per idle period instead of once per message. Not
+ * thread-safe: each outbox worker and campaign run owns its own.
+ */
+final class SmtpConnection {
+    private static final Logger logger = LoggerFactory.getLogger(SmtpConnection.class);
+
+    private final JavaMailSender mailSender;
+    private Transport transport;
+    private long lastUsed;
+
+    SmtpConnection(JavaMailSender mailSender) {
+        this.mailSender = mailSender;
+    }
+
+    MimeMessage createMimeMessage() {
+        return mailSender.createMimeMessage();
+    }
+
+    void send(MimeMessage message) throws MessagingException, ConnectFailedException {
+        if (!(mailSender instanceof JavaMailSenderImpl impl)) {
+            mailSender.send(message);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // isConnected() costs a NOOP round trip, so only check connections that sat idle
+        if (transport != null && now - lastUsed > 1000 && !transport.isConnected()) {
+            close();
+        }
+        if (transport == null) {
+            try {
+                Transport t = impl.getSession().getTransport(impl.getProtocol() != null ? impl.getProtocol() : "smtp");
+                t.connect(impl.getHost(), impl.getPort(), impl.getUsername(), impl.getPassword());
+                transport = t;
+            } catch (MessagingException e) {
+                throw new ConnectFailedException(e);
+            }
+        }
+        message.saveChanges();
+        transport.sendMessage(message, message.getAllRecipients());
+        lastUsed = System.currentTimeMillis();
+    }
+
+    void closeIfIdle(long idleMillis) {
+        if (transport != null && System.currentTimeMillis() - lastUsed > idleMillis) {
+            close();
+        }
+    }
+
+    void close() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                logger.debug("Error closing SMTP connection: {}", e.getMessage());
+            }
+            transport = null;
+        }
+    }
+
+    // Rejected or malformed addresses will not get better with retries
+    static boolean isPermanent(Exception e) {
+        Throwable t = e;
+        while (t != null) {
+            if (t instanceof AddressException) {
+                return true;
+            }
+            if (t instanceof SendFailedException sfe && sfe.getInvalidAddresses() != null
+                    && sfe.getInvalidAddresses().length > 0) {
+                return true;
+            }
+            t = t.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * The server could not be reached; every following message would fail the same way
+     */
+    static final class ConnectFailedException extends Exception {
+        ConnectFailedException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
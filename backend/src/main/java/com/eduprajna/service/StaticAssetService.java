@@ -0,0 +1,331 @@
+package com.eduprajna.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Serves the React build (copied to ./static in the Docker image).
+ *
+ * At startup the build directory is indexed once: media type, validators and the
+ * precompressed .br/.gz siblings of every file. Text assets without a .gz get one written
+ * next to them, so nothing is compressed per request. Files listed in Vite's build
+ * manifest carry a content hash in their name and are cached as immutable; everything
+ * else is revalidated.
+ *
+ * index.html is kept in memory (plain and compressed) with a content ETag, since every
+ * client route is answered with it.
+ */
+@Service
+public class StaticAssetService {
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssetService.class);
+
+    private static final String INDEX = "index.html";
+    private static final String MANIFEST = ".vite/manifest.json";
+    private static final Set<String> COMPRESSIBLE = Set.of("js", "mjs", "css", "html", "svg", "json", "txt", "xml",
+            "webmanifest", "map", "ico");
+    // Vite's default [name]-[hash].[ext]; only used when the build has no manifest
+    private static final Pattern HASHED_NAME = Pattern.compile("^assets/.+-(?=[A-Za-z0-9_-]*[A-Z0-9])[A-Za-z0-9_-]{8}\\.[a-z0-9]+$");
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    private static final CacheControl SHORT = CacheControl.maxAge(Duration.ofHours(1)).cachePublic();
+    private static final MediaType TEXT_HTML_UTF8 = MediaType.parseMediaType("text/html;charset=UTF-8");
+
+    @Value("${frontend.static-dir:./static}")
+    private String staticDir;
+
+    @Value("${frontend.assets.precompress:true}")
+    private boolean precompress;
+
+    @Value("${frontend.assets.precompress-min-bytes:1024}")
+    private long precompressMinBytes;
+
+    private final ObjectMapper objectMapper;
+    private volatile Map<String, Asset> assets = Map.of();
+    private volatile IndexPage indexPage;
+
+    private record Variant(Path path, long size, String etag) {}
+
+    private record Asset(MediaType mediaType, long lastModified, boolean immutable, Variant identity, Variant gzip,
+            Variant brotli) {}
+
+    private record IndexPage(byte[] identity, byte[] gzip, byte[] brotli, String etag, long lastModified) {}
+
+    public StaticAssetService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void load() {
+        Path root = Paths.get(staticDir).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            logger.info("No frontend build at {}; only a bundled index.html (if any) will be served", root);
+            indexPage = loadIndex(new ClassPathResource("static/" + INDEX));
+            return;
+        }
+        Set<String> fingerprinted = readManifest(root);
+        Map<String, Asset> index = new HashMap<>();
+        int written = 0;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file)) {
+                    continue;
+                }
+                String relative = root.relativize(file).toString().replace(File.separatorChar, '/');
+                if (relative.startsWith(".") || relative.contains("/.") || relative.endsWith(".gz")
+                        || relative.endsWith(".br")) {
+                    continue;
+                }
+                if (precompress && ensureGzip(file, relative)) {
+                    written++;
+                }
+                boolean immutable = fingerprinted != null ? fingerprinted.contains(relative)
+                        : HASHED_NAME.matcher(relative).matches();
+                index.put(relative, indexFile(file, immutable));
+            }
+        } catch (IOException e) {
+            logger.error("Could not index frontend build at {}", root, e);
+        }
+        assets = Map.copyOf(index);
+        indexPage = loadIndex(new FileSystemResource(root.resolve(INDEX)));
+        logger.info("Indexed {} frontend assets ({} immutable, {} gzip variants written)", index.size(),
+                index.values().stream().filter(Asset::immutable).count(), written);
+    }
+
+    // Output files of every manifest chunk (js, css and imported assets); null without a manifest
+    private Set<String> readManifest(Path root) {
+        Path manifest = root.resolve(MANIFEST);
+        if (!Files.isRegularFile(manifest)) {
+            return null;
+        }
+        Set<String> files = new HashSet<>();
+        try {
+            for (JsonNode chunk : objectMapper.readTree(manifest.toFile())) {
+                if (chunk.hasNonNull("file")) {
+                    files.add(chunk.get("file").asText());
+                }
+                for (String field : List.of("css", "assets")) {
+                    chunk.path(field).forEach(f -> files.add(f.asText()));
+                }
+            }
+            files.remove(INDEX);
+            return files;
+        } catch (IOException e) {
+            logger.warn("Could not read build manifest {}: {}", manifest, e.getMessage());
+            return null;
+        }
+    }
+
+    private Asset indexFile(Path file, boolean immutable) throws IOException {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        long size = Files.size(file);
+        String tag = Long.toHexString(size) + "-" + Long.toHexString(lastModified);
+        MediaType mediaType = MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        return new Asset(mediaType, lastModified, immutable, new Variant(file, size, "\"" + tag + "\""),
+                sibling(file, ".gz", lastModified, tag), sibling(file, ".br", lastModified, tag));
+    }
+
+    // A precompressed variant is only used if it is at least as new as the original
+    private static Variant sibling(Path file, String suffix, long lastModified, String tag) throws IOException {
+        Path variant = file.resolveSibling(file.getFileName() + suffix);
+        if (!Files.isRegularFile(variant) || Files.getLastModifiedTime(variant).toMillis() < lastModified) {
+            return null;
+        }
+        return new Variant(variant, Files.size(variant), "\"" + tag + suffix.replace('.', '-') + "\"");
+    }
+
+    // Write file.gz for text assets that do not have an up-to-date one yet
+    private boolean ensureGzip(Path file, String relative) {
+        String name = file.getFileName().toString();
+        String ext = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        if (!COMPRESSIBLE.contains(ext)) {
+            return false;
+        }
+        Path gz = file.resolveSibling(name + ".gz");
+        try {
+            if (Files.size(file) < precompressMinBytes || (Files.isRegularFile(gz)
+                    && Files.getLastModifiedTime(gz).compareTo(Files.getLastModifiedTime(file)) >= 0)) {
+                return false;
+            }
+            Path tmp = file.resolveSibling(name + ".gz.tmp");
+            try (InputStream in = Files.newInputStream(file); OutputStream out = Files.newOutputStream(tmp)) {
+                gzip(in, out);
+            }
+            Files.move(tmp, gz, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            // Read-only image: serve this file uncompressed rather than failing startup
+            logger.debug("Could not precompress {}: {}", relative, e.getMessage());
+            return false;
+        }
+    }
+
+    private static void gzip(InputStream in, OutputStream out) throws IOException {
+        try (GZIPOutputStream gz = new GZIPOutputStream(out, 64 * 1024) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            in.transferTo(gz);
+        }
+    }
+
+    private IndexPage loadIndex(Resource resource) {
+        if (!resource.exists()) {
+            return null;
+        }
+        try {
+            byte[] html;
+            try (InputStream in = resource.getInputStream()) {
+                html = in.readAllBytes();
+            }
+            ByteArrayOutputStream gz = new ByteArrayOutputStream(html.length / 3 + 64);
+            gzip(new ByteArrayInputStream(html), gz);
+            byte[] brotli = null;
+            if (resource instanceof FileSystemResource fileResource) {
+                Path br = fileResource.getFile().toPath().resolveSibling(INDEX + ".br");
+                if (Files.isRegularFile(br) && Files.getLastModifiedTime(br).toMillis() >= resource.lastModified()) {
+                    brotli = Files.readAllBytes(br);
+                }
+            }
+            String etag = "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(html), 0, 8) + "\"";
+            return new IndexPage(html, gz.toByteArray(), brotli, etag, resource.lastModified());
+        } catch (Exception e) {
+            logger.error("Could not load {}: {}", resource.getDescription(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The SPA shell, answered from memory for every client-side route
+     */
+    public ResponseEntity<byte[]> index(HttpServletRequest request) {
+        IndexPage page = indexPage;
+        if (page == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String accept = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        String encoding = page.brotli() != null && accepts(accept, "br") ? "br"
+                : accepts(accept, "gzip") ? "gzip" : null;
+        byte[] body = "br".equals(encoding) ? page.brotli() : "gzip".equals(encoding) ? page.gzip() : page.identity();
+        String etag = encoding == null ? page.etag()
+                : page.etag().substring(0, page.etag().length() - 1) + "-" + encoding + "\"";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setCacheControl(CacheControl.noCache());
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        if (FileServingService.isNotModified(etag, page.lastModified(), request)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        headers.setContentType(TEXT_HTML_UTF8);
+        if (encoding != null) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * A file from the build by its path relative to the build root (e.g. assets/index-B1x2y3z4.js)
+     */
+    public ResponseEntity<Resource> serve(String path, HttpServletRequest request) {
+        Asset asset = assets.get(path);
+        if (asset == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String accept = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        Variant variant = asset.identity();
+        String encoding = null;
+        if (asset.brotli() != null && accepts(accept, "br")) {
+            variant = asset.brotli();
+            encoding = "br";
+        } else if (asset.gzip() != null && accepts(accept, "gzip")) {
+            variant = asset.gzip();
+            encoding = "gzip";
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(variant.etag());
+        headers.setLastModified(asset.lastModified());
+        headers.setCacheControl(asset.immutable() ? IMMUTABLE : SHORT);
+        if (asset.gzip() != null || asset.brotli() != null) {
+            headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        }
+        if (FileServingService.isNotModified(variant.etag(), asset.lastModified(), request)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        headers.setContentType(asset.mediaType());
+        if (encoding != null) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        return new ResponseEntity<>(new FileSystemResource(variant.path()), headers, HttpStatus.OK);
+    }
+
+    // True if the Accept-Encoding header allows coding (explicitly or via *) with q > 0
+    static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String name = params[0].trim();
+            if (!name.equalsIgnoreCase(coding) && !name.equals("*")) {
+                continue;
+            }
+            double q = 1.0;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            return q > 0;
+        }
+        return false;
+    }
+}
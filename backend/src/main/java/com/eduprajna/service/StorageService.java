@@ -1,92 +1,341 @@
 package com.eduprajna.service;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.eduprajna.entity.UploadedFile;
+import com.eduprajna.repository.UploadedFileRepository;
+
 @Service
 public class StorageService {
     // Read upload directory from Spring property; fallback to ./uploads
     @Value("${spring.servlet.multipart.location:./uploads}")
     private String uploadDir;
 
+    @Autowired
+    private ImageDerivativeService imageDerivatives;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Autowired
+    private OffHeapImageCache imageCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Media types by extension; anything else is probed once per extension and remembered
+    private static final Map<String, MediaType> MEDIA_TYPES = Map.ofEntries(
+            Map.entry("jpg", MediaType.IMAGE_JPEG),
+            Map.entry("jpeg", MediaType.IMAGE_JPEG),
+            Map.entry("png", MediaType.IMAGE_PNG),
+            Map.entry("gif", MediaType.IMAGE_GIF),
+            Map.entry("webp", MediaType.parseMediaType("image/webp")),
+            Map.entry("avif", MediaType.parseMediaType("image/avif")),
+            Map.entry("svg", MediaType.parseMediaType("image/svg+xml")),
+            Map.entry("ico", MediaType.parseMediaType("image/x-icon")),
+            Map.entry("bmp", MediaType.parseMediaType("image/bmp")),
+            Map.entry("pdf", MediaType.APPLICATION_PDF));
+    private final Map<String, MediaType> probedMediaTypes = new ConcurrentHashMap<>();
+
+    // Names that are never rewritten in place: a content hash, or the upload timestamp prefix used by store()
+    private static final Pattern FINGERPRINTED_NAME = Pattern.compile("^(\\d{13}_.+|(.*[^0-9a-f])?[0-9a-f]{32,}(\\..*)?)$");
+
+    private static final String TMP_DIR = ".tmp";
+    private static final Pattern SAFE_EXTENSION = Pattern.compile("[a-z0-9]{1,8}");
+    // Content-addressed layout: ab/cd/<sha256>.<ext>
+    private static final Pattern SHARDED_URL_SUFFIX = Pattern.compile("/([0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}\\.[a-z0-9]{1,8})$");
+
+    /**
+     * Metadata for serving a stored file, read with a single stat call
+     */
+    public record StoredFile(Path path, String filename, long size, long lastModified, String etag,
+            MediaType mediaType, boolean immutable) {}
+
+    /**
+     * Store an upload under its content hash (ab/cd/<sha256>.<ext>). The digest is computed
+     * while the upload is copied to a temp file; identical content is stored once.
+     */
     public String store(MultipartFile file) throws IOException {
-        String filename = System.currentTimeMillis() + "_" + StringUtils.cleanPath(file.getOriginalFilename());
-        Path dirPath = Paths.get(uploadDir).toAbsolutePath().normalize();
-        Files.createDirectories(dirPath);
-        Path dest = dirPath.resolve(filename);
-        file.transferTo(dest.toFile());
-        // Return /uploads/ path to match database format and UploadController endpoint
-        return "/uploads/" + filename;
+        Path tmp = Files.createTempFile(stagingDirectory(), "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return storeHashed(tmp, HexFormat.of().formatHex(digest.digest()), file.getOriginalFilename());
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
     }
 
-    public Resource loadAsResource(String filename) throws IOException {
-        Path filePath = Paths.get(uploadDir).resolve(filename).normalize();
-        if (!Files.exists(filePath)) {
-            throw new IOException("File not found: " + filename);
+    /**
+     * Store a file that is already written and hashed (streaming uploads hash while they
+     * write). The file is renamed into its content-addressed place, or dropped if that
+     * content is already stored.
+     */
+    public String storeHashed(Path tmp, String hash, String originalFilename) throws IOException {
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        try {
+            String relativePath = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + extensionOf(originalFilename);
+            long size = Files.size(tmp);
+            MediaType mediaType = probeMediaType(relativePath);
+            int[] dimensions = "image".equals(mediaType.getType()) ? UploadCatalogService.readDimensions(tmp) : null;
+
+            StoreOutcome outcome = recordUpload(hash, relativePath, size, mediaType, dimensions, originalFilename, tmp, root);
+            imageCache.invalidate(outcome.storagePath());
+            if (outcome.written()) {
+                imageDerivatives.scheduleDerivatives(outcome.storagePath());
+            }
+            // Return /uploads/ path to match database format and UploadController endpoint
+            return "/uploads/" + outcome.storagePath();
+        } finally {
+            Files.deleteIfExists(tmp);
         }
-        return new InputStreamResource(new FileInputStream(filePath.toFile())) {
-            @Override
-            public String getFilename() {
-                return filePath.getFileName().toString();
+    }
+
+    /**
+     * Directory for uploads in progress; on the same file system as the final location so
+     * a finished upload is moved with a rename
+     */
+    public Path stagingDirectory() throws IOException {
+        Path tmpDir = Paths.get(uploadDir).toAbsolutePath().normalize().resolve(TMP_DIR);
+        Files.createDirectories(tmpDir);
+        return tmpDir;
+    }
+
+    /**
+     * Extension a stored upload will get, from its original name ("bin" if it has none)
+     */
+    public static String extensionOf(String originalFilename) {
+        if (originalFilename != null) {
+            int dot = originalFilename.lastIndexOf('.');
+            if (dot >= 0) {
+                String ext = originalFilename.substring(dot + 1).toLowerCase(Locale.ROOT);
+                if (SAFE_EXTENSION.matcher(ext).matches()) {
+                    return ext;
+                }
             }
+        }
+        return "bin";
+    }
 
-            @Override
-            public long contentLength() throws IOException {
-                return Files.size(filePath);
+    private record StoreOutcome(String storagePath, boolean written) {}
+
+    private static final int RECORD_ATTEMPTS = 3;
+
+    // A concurrent upload of the same content may insert the row first (unique key) or
+    // deadlock with us on the row lock; both succeed on a retry
+    private StoreOutcome recordUpload(String hash, String relativePath, long size, MediaType mediaType,
+            int[] dimensions, String originalFilename, Path tmp, Path root) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return recordUploadOnce(hash, relativePath, size, mediaType, dimensions, originalFilename, tmp, root);
+            } catch (DataIntegrityViolationException | PessimisticLockingFailureException e) {
+                if (attempt >= RECORD_ATTEMPTS) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(10, 50L * attempt));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
             }
-        };
+        }
     }
 
-    public MediaType probeMediaType(String filename) {
+    // Find or create the catalog row under a row lock and make sure the file is in place.
+    // References are counted where urls are assigned (addReference), not per upload.
+    private StoreOutcome recordUploadOnce(String hash, String relativePath, long size, MediaType mediaType,
+            int[] dimensions, String originalFilename, Path tmp, Path root) {
+        return transactionTemplate.execute(status -> {
+            UploadedFile existing = uploadedFileRepository.findBySha256ForUpdate(hash).orElse(null);
+            String storedPath;
+            if (existing != null) {
+                storedPath = existing.getStoragePath();
+            } else {
+                UploadedFile created = new UploadedFile();
+                created.setSha256(hash);
+                created.setStoragePath(relativePath);
+                created.setSizeBytes(size);
+                created.setContentType(mediaType.toString());
+                if (dimensions != null) {
+                    created.setWidth(dimensions[0]);
+                    created.setHeight(dimensions[1]);
+                }
+                created.setOriginalFilename(StringUtils.cleanPath(String.valueOf(originalFilename)));
+                uploadedFileRepository.saveAndFlush(created);
+                storedPath = relativePath;
+            }
+            return new StoreOutcome(storedPath, moveIntoPlace(tmp, root.resolve(storedPath)));
+        });
+    }
+
+    // Content is immutable, so an existing file with this hash is already correct. Its mtime
+    // is refreshed so the upload GC's grace period covers the new reference.
+    private static boolean moveIntoPlace(Path tmp, Path dest) {
+        try {
+            if (Files.exists(dest)) {
+                Files.setLastModifiedTime(dest, FileTime.from(Instant.now()));
+                return false;
+            }
+            Files.createDirectories(dest.getParent());
+            Files.move(tmp, dest, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static MessageDigest sha256() {
         try {
-            Path filePath = Paths.get(uploadDir).resolve(filename).normalize();
-            String type = Files.probeContentType(filePath);
-            if (type != null) return MediaType.parseMediaType(type);
-        } catch (Exception ignored) {}
-        return MediaType.APPLICATION_OCTET_STREAM;
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * File-backed resource, so Spring can serve byte ranges and read from the file channel
+     */
+    public Resource loadAsResource(String filename) throws IOException {
+        Path filePath = resolveExisting(filename);
+        return new FileSystemResource(filePath);
+    }
+
+    /**
+     * Everything needed to answer a GET for a stored file: path, size, validators and type
+     */
+    public StoredFile stat(String filename) throws IOException {
+        Path filePath = resolveExisting(filename);
+        BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+        if (!attrs.isRegularFile()) {
+            throw new IOException("File not found: " + filename);
+        }
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        // Strong validator from metadata: a rewrite changes size or mtime
+        String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        String name = filePath.getFileName().toString();
+        return new StoredFile(filePath, name, size, lastModified, etag, probeMediaType(name),
+                FINGERPRINTED_NAME.matcher(name).matches());
     }
 
+    private Path resolveExisting(String filename) throws IOException {
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Path filePath = root.resolve(filename).normalize();
+        if (!filePath.startsWith(root) || !Files.exists(filePath)) {
+            throw new IOException("File not found: " + filename);
+        }
+        return filePath;
+    }
+
+    public MediaType probeMediaType(String filename) {
+        int dot = filename.lastIndexOf('.');
+        String ext = dot >= 0 ? filename.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+        MediaType known = MEDIA_TYPES.get(ext);
+        if (known != null) {
+            return known;
+        }
+        return probedMediaTypes.computeIfAbsent(ext, e -> {
+            try {
+                String type = Files.probeContentType(Paths.get(filename));
+                if (type != null) return MediaType.parseMediaType(type);
+            } catch (Exception ignored) {}
+            return MediaType.APPLICATION_OCTET_STREAM;
+        });
+    }
+
+    /**
+     * Every catalogued upload path (content-addressed and legacy), from the metadata table.
+     * Prefer UploadCatalogService.list for anything user-facing.
+     */
     public List<String> listAll() {
-        List<String> files = new ArrayList<>();
-        File dir = Paths.get(uploadDir).toFile();
-        if (dir.exists() && dir.isDirectory()) {
-            File[] list = dir.listFiles();
-            if (list != null) {
-                for (File f : list) {
-                    if (f.isFile()) {
-                        files.add(f.getName());
-                    }
-                }
+        return uploadedFileRepository.findAllStoragePaths();
+    }
+
+    /**
+     * Count a new reference (a product image or an order item snapshot) to the stored file
+     * an image url points at. Urls that are not local uploads are ignored.
+     *
+     * The file's mtime is refreshed too: a library image assigned to another product keeps
+     * the mtime of its original upload, and the UploadGarbageCollector only spares
+     * unmarked files inside the grace period, so a reference made after its mark phase
+     * would otherwise not protect the file.
+     */
+    public void addReference(String url) {
+        String filename = extractFilenameFromUrl(url);
+        if (filename != null && isLocalUpload(url)) {
+            uploadedFileRepository.incrementRefCount(filename);
+            try {
+                Files.setLastModifiedTime(resolveExisting(filename), FileTime.from(Instant.now()));
+            } catch (IOException e) {
+                // Missing file: nothing on disk to protect
             }
         }
-        return files;
     }
 
-    // Delete a stored file by its filename, returns true if deleted or not present
-    public boolean delete(String filename) {
-        if (filename == null || filename.isEmpty()) return false;
-        File f = Paths.get(uploadDir).resolve(filename).normalize().toFile();
-        if (!f.exists()) return true; // already gone
-        return f.delete();
+    /**
+     * Drop a reference counted by addReference. Files are never unlinked here: a file can
+     * gain a new reference (a re-upload of the same content, a library pick) at any moment,
+     * so removal is left to the UploadGarbageCollector, which checks the real references.
+     */
+    public void releaseReference(String url) {
+        String filename = extractFilenameFromUrl(url);
+        if (filename != null && isLocalUpload(url)) {
+            uploadedFileRepository.decrementRefCount(filename);
+        }
     }
 
-    // Extracts filename from an API url like "/api/admin/products/images/abc.jpg"
+    private static boolean isLocalUpload(String url) {
+        String u = url.trim();
+        return !u.isEmpty() && !u.startsWith("data:") && (!u.contains("://") || u.contains("/uploads/")
+                || u.contains("/api/admin/products/images/"));
+    }
+
+    // Extracts filename from an API url like "/api/admin/products/images/abc.jpg";
+    // content-addressed urls keep their shard directories ("ab/cd/<hash>.jpg")
     public String extractFilenameFromUrl(String url) {
         if (url == null) return null;
+        Matcher sharded = SHARDED_URL_SUFFIX.matcher(url);
+        if (sharded.find()) {
+            return sharded.group(1);
+        }
         int idx = url.lastIndexOf('/') + 1;
         if (idx <= 0 || idx >= url.length()) return null;
         return url.substring(idx);
@@ -0,0 +1,383 @@
+package com.eduprajna.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.eduprajna.dto.UploadSessionDTO;
+import com.eduprajna.exception.UploadRejectedException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Uploads streamed straight from the request body instead of through multipart spooling.
+ *
+ * Each chunk is read with a small buffer and, in the same pass, checked against the
+ * file type's magic bytes, fed to the SHA-256 digest and appended to a part file in the
+ * upload directory's staging area. Completing the upload renames that file into its
+ * content-addressed place (see StorageService.storeHashed), so the bytes hit the disk
+ * exactly once.
+ *
+ * Large uploads can be sent in chunks: open a session, append chunks at the offset the
+ * server reports, and re-query the offset to resume after a dropped connection. Sessions
+ * live in memory; idle ones (and part files left over from a restart) are cleaned up.
+ */
+@Service
+public class StreamingUploadService {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingUploadService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PART_PREFIX = "stream-";
+    private static final String PART_SUFFIX = ".part";
+
+    // Bytes expected at offset; any one of several same-length alternatives matches
+    private record Signature(int offset, byte[][] alternatives) {
+        static Signature of(int offset, String... hex) {
+            byte[][] alternatives = new byte[hex.length][];
+            for (int i = 0; i < hex.length; i++) {
+                alternatives[i] = HexFormat.of().parseHex(hex[i]);
+            }
+            return new Signature(offset, alternatives);
+        }
+
+        int end() {
+            return offset + alternatives[0].length;
+        }
+
+        boolean matches(byte[] head) {
+            for (byte[] bytes : alternatives) {
+                if (Arrays.equals(head, offset, offset + bytes.length, bytes, 0, bytes.length)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // Accepted extensions and the bytes their files must carry; anything else is refused
+    private static final Map<String, List<Signature>> SIGNATURES = Map.of(
+            "jpg", List.of(Signature.of(0, "ffd8ff")),
+            "jpeg", List.of(Signature.of(0, "ffd8ff")),
+            "png", List.of(Signature.of(0, "89504e470d0a1a0a")),
+            "gif", List.of(Signature.of(0, "47494638")),
+            "webp", List.of(Signature.of(0, "52494646"), Signature.of(8, "57454250")),
+            // ftyp box with the avif (still) or avis (sequence) brand
+            "avif", List.of(Signature.of(4, "66747970"), Signature.of(8, "61766966", "61766973")),
+            "bmp", List.of(Signature.of(0, "424d")),
+            "ico", List.of(Signature.of(0, "00000100")),
+            "pdf", List.of(Signature.of(0, "25504446")));
+
+    @Value("${storage.streaming.max-bytes:10485760}")
+    private long maxBytes;
+
+    @Value("${storage.streaming.max-sessions:16}")
+    private int maxSessions;
+
+    @Value("${storage.streaming.session-ttl-minutes:60}")
+    private long sessionTtlMinutes;
+
+    private final StorageService storageService;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private final Counter bytesReceived;
+    private final Counter completed;
+    private final Counter rejected;
+
+    private static final class UploadSession {
+        final String id;
+        final String filename;
+        final long declaredSize;
+        final Path part;
+        final List<Signature> signatures;
+        final MessageDigest digest = StorageService.sha256();
+        final byte[] head;
+        final ReentrantLock lock = new ReentrantLock();
+        int headLength;
+        boolean verified;
+        boolean closed;
+        long offset;
+        volatile long lastTouched = System.currentTimeMillis();
+
+        UploadSession(String id, String filename, long declaredSize, Path part, List<Signature> signatures) {
+            this.id = id;
+            this.filename = filename;
+            this.declaredSize = declaredSize;
+            this.part = part;
+            this.signatures = signatures;
+            int needed = 0;
+            for (Signature s : signatures) {
+                needed = Math.max(needed, s.end());
+            }
+            this.head = new byte[needed];
+        }
+
+        // Collect the leading bytes written at position and check them as soon as there
+        // are enough; a chunk retried from the same offset overwrites what it left before
+        void inspect(long position, byte[] buffer, int length) {
+            if (verified || position >= head.length) {
+                return;
+            }
+            int take = (int) Math.min(head.length - position, length);
+            System.arraycopy(buffer, 0, head, (int) position, take);
+            headLength = (int) position + take;
+            if (headLength == head.length) {
+                verify();
+            }
+        }
+
+        void verify() {
+            if (headLength < head.length) {
+                throw new UploadRejectedException(HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                        "Content is too short to be a ." + StorageService.extensionOf(filename) + " file");
+            }
+            for (Signature s : signatures) {
+                if (!s.matches(head)) {
+                    throw new UploadRejectedException(HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                            "Content does not match the ." + StorageService.extensionOf(filename) + " file type");
+                }
+            }
+            verified = true;
+        }
+
+        UploadSessionDTO toDTO() {
+            return new UploadSessionDTO(id, filename, offset, declaredSize >= 0 ? declaredSize : null);
+        }
+    }
+
+    public StreamingUploadService(StorageService storageService, MeterRegistry meterRegistry) {
+        this.storageService = storageService;
+        this.bytesReceived = Counter.builder("storage.streaming.bytes").register(meterRegistry);
+        this.completed = Counter.builder("storage.streaming.uploads").tag("result", "completed").register(meterRegistry);
+        this.rejected = Counter.builder("storage.streaming.uploads").tag("result", "rejected").register(meterRegistry);
+    }
+
+    /**
+     * Open a session for filename; size is the total length if the client knows it (or null)
+     */
+    public UploadSessionDTO open(String filename, Long size) throws IOException {
+        List<Signature> signatures = SIGNATURES.get(StorageService.extensionOf(filename));
+        if (signatures == null) {
+            throw new UploadRejectedException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Unsupported file type: " + filename);
+        }
+        if (size != null && (size <= 0 || size > maxBytes)) {
+            throw new UploadRejectedException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Upload size must be between 1 and " + maxBytes + " bytes");
+        }
+        String id = UUID.randomUUID().toString().replace("-", "");
+        Path part = storageService.stagingDirectory().resolve(PART_PREFIX + id + PART_SUFFIX);
+        UploadSession session = new UploadSession(id, filename, size != null ? size : -1, part, signatures);
+        // Check and claim the slot together so concurrent opens cannot overshoot the cap
+        synchronized (sessions) {
+            if (sessions.size() >= maxSessions) {
+                throw new UploadRejectedException(HttpStatus.SERVICE_UNAVAILABLE, "Too many uploads in progress");
+            }
+            sessions.put(id, session);
+        }
+        try {
+            Files.createFile(part);
+        } catch (IOException e) {
+            sessions.remove(id);
+            throw e;
+        }
+        return session.toDTO();
+    }
+
+    public UploadSessionDTO status(String id) {
+        return require(id).toDTO();
+    }
+
+    /**
+     * Append the body at offset, which must equal the bytes already received. Returns the
+     * new offset; after a broken connection everything read before the break is kept.
+     */
+    public long append(String id, long offset, InputStream body) throws IOException {
+        UploadSession session = require(id);
+        if (!session.lock.tryLock()) {
+            throw new UploadRejectedException(HttpStatus.CONFLICT, "Another chunk is being written", session.offset);
+        }
+        try {
+            if (session.closed) {
+                throw new UploadRejectedException(HttpStatus.NOT_FOUND, "Upload session not found: " + id);
+            }
+            if (offset != session.offset) {
+                throw new UploadRejectedException(HttpStatus.CONFLICT,
+                        "Chunk starts at " + offset + " but " + session.offset + " bytes were received", session.offset);
+            }
+            long limit = session.declaredSize >= 0 ? session.declaredSize : maxBytes;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (FileChannel channel = FileChannel.open(session.part, StandardOpenOption.WRITE)) {
+                // Drop anything past the offset left by a write that failed halfway
+                channel.truncate(session.offset);
+                channel.position(session.offset);
+                int n;
+                while ((n = body.read(buffer)) != -1) {
+                    if (session.offset + n > limit) {
+                        discard(session);
+                        throw new UploadRejectedException(HttpStatus.PAYLOAD_TOO_LARGE,
+                                "Upload exceeds " + limit + " bytes");
+                    }
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+                    while (chunk.hasRemaining()) {
+                        channel.write(chunk);
+                    }
+                    // Only bytes that reached the part file count; a failed write leaves the
+                    // offset (and head, digest) where the client's retry will start
+                    try {
+                        session.inspect(session.offset, buffer, n);
+                    } catch (UploadRejectedException e) {
+                        discard(session);
+                        throw e;
+                    }
+                    session.digest.update(buffer, 0, n);
+                    session.offset += n;
+                    bytesReceived.increment(n);
+                }
+            } finally {
+                session.lastTouched = System.currentTimeMillis();
+            }
+            return session.offset;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Finish the upload: check it is whole and well-typed, then move it into storage
+     *
+     * @return the /uploads/... url of the stored file
+     */
+    public String complete(String id) throws IOException {
+        UploadSession session = require(id);
+        if (!session.lock.tryLock()) {
+            throw new UploadRejectedException(HttpStatus.CONFLICT, "A chunk is still being written", session.offset);
+        }
+        try {
+            if (session.closed) {
+                throw new UploadRejectedException(HttpStatus.NOT_FOUND, "Upload session not found: " + id);
+            }
+            if (session.declaredSize >= 0 && session.offset != session.declaredSize) {
+                throw new UploadRejectedException(HttpStatus.CONFLICT,
+                        "Upload incomplete: " + session.offset + " of " + session.declaredSize + " bytes", session.offset);
+            }
+            try {
+                session.verify();
+            } catch (UploadRejectedException e) {
+                discard(session);
+                throw e;
+            }
+            session.closed = true;
+            sessions.remove(id);
+            String hash = HexFormat.of().formatHex(session.digest.digest());
+            String url = storageService.storeHashed(session.part, hash, session.filename);
+            completed.increment();
+            return url;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Single-request upload: the whole body is one chunk
+     */
+    public String upload(String filename, Long size, InputStream body) throws IOException {
+        UploadSessionDTO session = open(filename, size != null && size >= 0 ? size : null);
+        try {
+            append(session.id, 0, body);
+            return complete(session.id);
+        } catch (IOException | RuntimeException e) {
+            abort(session.id);
+            throw e;
+        }
+    }
+
+    public void abort(String id) {
+        UploadSession session = sessions.get(id);
+        if (session != null) {
+            session.lock.lock();
+            try {
+                discard(session);
+            } finally {
+                session.lock.unlock();
+            }
+        }
+    }
+
+    // Caller holds the session lock
+    private void discard(UploadSession session) {
+        if (session.closed) {
+            return;
+        }
+        session.closed = true;
+        sessions.remove(session.id);
+        rejected.increment();
+        try {
+            Files.deleteIfExists(session.part);
+        } catch (IOException e) {
+            logger.warn("Could not delete upload part {}: {}", session.part, e.getMessage());
+        }
+    }
+
+    private UploadSession require(String id) {
+        UploadSession session = id != null ? sessions.get(id) : null;
+        if (session == null) {
+            throw new UploadRejectedException(HttpStatus.NOT_FOUND, "Upload session not found: " + id);
+        }
+        return session;
+    }
+
+    /**
+     * Drop idle sessions, and part files no session owns (e.g. from before a restart)
+     */
+    @Scheduled(fixedDelayString = "${storage.streaming.cleanup-interval-ms:600000}")
+    public void expireIdleSessions() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(sessionTtlMinutes);
+        int expired = 0;
+        for (UploadSession session : sessions.values()) {
+            if (session.lastTouched < cutoff && session.lock.tryLock()) {
+                try {
+                    discard(session);
+                    expired++;
+                } finally {
+                    session.lock.unlock();
+                }
+            }
+        }
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(storageService.stagingDirectory(),
+                PART_PREFIX + "*" + PART_SUFFIX)) {
+            for (Path part : parts) {
+                String name = part.getFileName().toString();
+                String id = name.substring(PART_PREFIX.length(), name.length() - PART_SUFFIX.length());
+                if (!sessions.containsKey(id) && Files.getLastModifiedTime(part).toMillis() < cutoff) {
+                    Files.deleteIfExists(part);
+                    expired++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not clean up stale upload parts: {}", e.getMessage());
+        }
+        if (expired > 0) {
+            logger.info("Expired {} idle streaming uploads", expired);
+        }
+    }
+}
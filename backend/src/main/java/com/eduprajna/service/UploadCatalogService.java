@@ -0,0 +1,242 @@
+package com.eduprajna.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import com.eduprajna.dto.UploadedFileDTO;
+import com.eduprajna.dto.UploadedFilePageDTO;
+import com.eduprajna.entity.UploadedFile;
+import com.eduprajna.repository.ProductRepository;
+import com.eduprajna.repository.UploadedFileRepository;
+
+/**
+ * Media library over the uploaded_files catalog.
+ *
+ * The admin listing is a paginated, filterable query on the table (with the products
+ * using each file resolved in one query per page) instead of a directory walk. Files
+ * written before the catalog existed are added once by a startup scan of the flat
+ * upload directory; the scan also fills in missing image dimensions.
+ */
+@Service
+public class UploadCatalogService {
+    private static final Logger logger = LoggerFactory.getLogger(UploadCatalogService.class);
+
+    public static final int MAX_PAGE_SIZE = 200;
+    private static final int BACKFILL_BATCH = 200;
+
+    @Value("${spring.servlet.multipart.location:./uploads}")
+    private String uploadDir;
+
+    @Value("${storage.catalog.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    private final UploadedFileRepository uploadedFileRepository;
+    private final ProductRepository productRepository;
+    private final StorageService storageService;
+
+    public UploadCatalogService(UploadedFileRepository uploadedFileRepository, ProductRepository productRepository,
+            StorageService storageService) {
+        this.uploadedFileRepository = uploadedFileRepository;
+        this.productRepository = productRepository;
+        this.storageService = storageService;
+    }
+
+    /**
+     * One page of the media library, newest first (or by name / size)
+     */
+    public UploadedFilePageDTO list(int page, int size, String mediaType, String query, String sort) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        Sort order = switch (sort == null ? "" : sort) {
+            case "name" -> Sort.by("originalFilename").ascending().and(Sort.by("id"));
+            case "size" -> Sort.by("sizeBytes").descending().and(Sort.by("id"));
+            case "oldest" -> Sort.by("createdAt").ascending().and(Sort.by("id"));
+            default -> Sort.by("createdAt").descending().and(Sort.by(Sort.Direction.DESC, "id"));
+        };
+        String typeFilter = mediaType == null ? "" : mediaType.trim().toLowerCase(Locale.ROOT);
+        String nameFilter = query == null || query.isBlank() ? ""
+                : "%" + query.trim().toLowerCase(Locale.ROOT).replace("%", "").replace("_", "") + "%";
+        Page<UploadedFile> result = uploadedFileRepository.search(typeFilter, nameFilter,
+                PageRequest.of(Math.max(page, 0), pageSize, order));
+
+        // Products referencing the files on this page, in one query
+        Map<String, UploadedFileDTO> byUrl = new HashMap<>();
+        List<UploadedFileDTO> items = new ArrayList<>(result.getNumberOfElements());
+        for (UploadedFile f : result.getContent()) {
+            UploadedFileDTO dto = toDTO(f);
+            items.add(dto);
+            byUrl.put(dto.url, dto);
+            byUrl.put("/api/admin/products/images/" + f.getStoragePath(), dto);
+        }
+        if (!byUrl.isEmpty()) {
+            for (Object[] row : productRepository.findIdsByImageUrlIn(byUrl.keySet())) {
+                UploadedFileDTO dto = byUrl.get((String) row[1]);
+                if (dto != null) {
+                    dto.productIds.add((Long) row[0]);
+                }
+            }
+        }
+
+        UploadedFilePageDTO dto = new UploadedFilePageDTO();
+        dto.items = items;
+        dto.page = result.getNumber();
+        dto.size = result.getSize();
+        dto.totalElements = result.getTotalElements();
+        dto.totalPages = result.getTotalPages();
+        return dto;
+    }
+
+    private static UploadedFileDTO toDTO(UploadedFile f) {
+        UploadedFileDTO dto = new UploadedFileDTO();
+        dto.id = f.getId();
+        dto.name = f.getOriginalFilename();
+        dto.url = "/uploads/" + f.getStoragePath();
+        dto.sha256 = f.getSha256();
+        dto.sizeBytes = f.getSizeBytes();
+        dto.mediaType = f.getContentType();
+        dto.width = f.getWidth();
+        dto.height = f.getHeight();
+        dto.createdAt = f.getCreatedAt();
+        dto.legacy = Boolean.TRUE.equals(f.getLegacy());
+        dto.productIds = new ArrayList<>();
+        return dto;
+    }
+
+    /**
+     * Image width and height from the file header (no full decode); null if not an image
+     */
+    public static int[] readDimensions(Path file) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new int[] { reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!backfillOnStartup) {
+            return;
+        }
+        try {
+            int legacy = catalogLegacyFiles();
+            int dimensions = fillMissingDimensions();
+            if (legacy > 0 || dimensions > 0) {
+                logger.info("Upload catalog backfill: {} legacy files added, {} dimensions filled", legacy, dimensions);
+            }
+        } catch (Exception e) {
+            logger.warn("Upload catalog backfill failed: {}", e.getMessage());
+        }
+    }
+
+    // Regular files directly in the upload directory (shards, derivatives and temp dirs are skipped)
+    private int catalogLegacyFiles() throws IOException {
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        Set<String> known = new LinkedHashSet<>(uploadedFileRepository.findAllStoragePaths());
+        List<UploadedFile> batch = new ArrayList<>(BACKFILL_BATCH);
+        int added = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(".") || known.contains(name)) {
+                    continue;
+                }
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attrs.isRegularFile()) {
+                    continue;
+                }
+                UploadedFile row = new UploadedFile();
+                row.setStoragePath(name);
+                row.setLegacy(true);
+                row.setSizeBytes(attrs.size());
+                row.setContentType(storageService.probeMediaType(name).toString());
+                row.setOriginalFilename(name.replaceFirst("^\\d{13}_", ""));
+                row.setCreatedAt(OffsetDateTime.ofInstant(attrs.lastModifiedTime().toInstant(), ZoneId.systemDefault()));
+                int[] dims = row.getContentType().startsWith("image/") ? readDimensions(file) : null;
+                if (dims != null) {
+                    row.setWidth(dims[0]);
+                    row.setHeight(dims[1]);
+                }
+                batch.add(row);
+                if (batch.size() == BACKFILL_BATCH) {
+                    uploadedFileRepository.saveAll(batch);
+                    added += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            uploadedFileRepository.saveAll(batch);
+            added += batch.size();
+        }
+        return added;
+    }
+
+    private int fillMissingDimensions() {
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        long afterId = 0L;
+        int filled = 0;
+        while (true) {
+            List<UploadedFile> rows = uploadedFileRepository.findImagesWithoutDimensions(afterId,
+                    PageRequest.of(0, BACKFILL_BATCH));
+            if (rows.isEmpty()) {
+                return filled;
+            }
+            List<UploadedFile> updated = new ArrayList<>();
+            for (UploadedFile row : rows) {
+                int[] dims = readDimensions(root.resolve(row.getStoragePath()));
+                if (dims != null) {
+                    row.setWidth(dims[0]);
+                    row.setHeight(dims[1]);
+                    updated.add(row);
+                }
+            }
+            uploadedFileRepository.saveAll(updated);
+            filled += updated.size();
+            afterId = rows.get(rows.size() - 1).getId();
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.eduprajna.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.eduprajna.repository.UploadedFileRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Mark-and-sweep collector for uploaded files nothing points at any more.
+ *
+ * Mark: every image url on products and order item snapshots (including archived order
+ * items) is streamed from the database and reduced to a 64-bit hash of its storage path
+ * in a primitive hash set, so even a large catalog costs a few MB. All tables are read in
+ * one repeatable-read transaction: the order archiver moves rows from order_items to
+ * order_items_archive, and separate reads could see such a row in neither table.
+ *
+ * Sweep: the upload directory is walked lazily, skipping .trash, .derivatives and .tmp.
+ * Unreferenced files older than the grace period (so an upload whose product is still
+ * being saved is never touched) are moved to .trash/<date>/ with their catalog row and
+ * derivatives removed. The mtime is read again right before the move, so a file that
+ * gained a reference during the run (StorageService.addReference refreshes it) stays.
+ * Trash directories older than the retention period are deleted for good; the bytes
+ * freed that way are reported as reclaimed.
+ *
+ * If any mark query fails the sweep is skipped: an incomplete mark set would make live
+ * files look orphaned.
+ */
+@Service
+public class UploadGarbageCollector {
+    private static final Logger logger = LoggerFactory.getLogger(UploadGarbageCollector.class);
+
+    public static final String TRASH_DIR = ".trash";
+    private static final DateTimeFormatter TRASH_DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+    // Columns holding image urls; tables that do not exist (e.g. no archive yet) are skipped
+    private static final String[][] REFERENCE_COLUMNS = {
+            { "product", "image_url" },
+            { "order_items", "product_image_url" },
+            { "order_items_archive", "product_image_url" },
+    };
+
+    @Value("${spring.servlet.multipart.location:./uploads}")
+    private String uploadDir;
+
+    @Value("${storage.gc.enabled:false}")
+    private boolean enabled;
+
+    @Value("${storage.gc.grace-period-hours:72}")
+    private long gracePeriodHours;
+
+    @Value("${storage.gc.trash-retention-days:7}")
+    private int trashRetentionDays;
+
+    @Value("${storage.gc.batch-size:500}")
+    private int batchSize;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate markTransaction;
+    private final UploadedFileRepository uploadedFileRepository;
+    private final ImageDerivativeService imageDerivatives;
+    private final OffHeapImageCache imageCache;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter bytesTrashedCounter;
+    private final Counter bytesReclaimedCounter;
+    private volatile GcReport lastReport;
+
+    /**
+     * Outcome of one collection run
+     */
+    public record GcReport(Instant startedAt, long durationMillis, boolean dryRun, int references,
+            long filesScanned, long filesTrashed, long bytesTrashed, long filesPurged, long bytesReclaimed,
+            List<String> sampleTrashed) {}
+
+    public UploadGarbageCollector(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            UploadedFileRepository uploadedFileRepository, ImageDerivativeService imageDerivatives,
+            OffHeapImageCache imageCache, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.markTransaction = new TransactionTemplate(transactionManager);
+        this.markTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.markTransaction.setReadOnly(true);
+        this.uploadedFileRepository = uploadedFileRepository;
+        this.imageDerivatives = imageDerivatives;
+        this.imageCache = imageCache;
+        this.bytesTrashedCounter = Counter.builder("storage.gc.bytes").tag("phase", "trashed").register(meterRegistry);
+        this.bytesReclaimedCounter = Counter.builder("storage.gc.bytes").tag("phase", "reclaimed").register(meterRegistry);
+    }
+
+    public GcReport getLastReport() {
+        return lastReport;
+    }
+
+    // An hour after orders.archive.cron, so the two jobs do not compete for the database
+    @Scheduled(cron = "${storage.gc.cron:0 30 4 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            run(false);
+        }
+    }
+
+    /**
+     * Run a collection now; with dryRun nothing is moved or deleted
+     *
+     * @return the report, or null if a run is already in progress
+     */
+    public GcReport run(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            Instant startedAt = Instant.now();
+            Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+
+            LongHashSet marked = mark();
+            if (marked == null) {
+                return null;
+            }
+            SweepResult sweep = sweep(root, marked, dryRun);
+            long[] purged = dryRun ? new long[2] : purgeTrash(root);
+
+            GcReport report = new GcReport(startedAt, ChronoUnit.MILLIS.between(startedAt, Instant.now()), dryRun,
+                    marked.size(), sweep.scanned, sweep.trashed, sweep.bytesTrashed, purged[0], purged[1],
+                    sweep.sample);
+            lastReport = report;
+            logger.info("Upload GC{}: {} references, {} files scanned, {} trashed ({} bytes), {} purged ({} bytes reclaimed)",
+                    dryRun ? " (dry run)" : "", report.references(), report.filesScanned(), report.filesTrashed(),
+                    report.bytesTrashed(), report.filesPurged(), report.bytesReclaimed());
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private LongHashSet mark() {
+        // Probe outside the transaction: on PostgreSQL a failed statement aborts it
+        List<String[]> columns = new ArrayList<>();
+        for (String[] ref : REFERENCE_COLUMNS) {
+            if (tableExists(ref[0])) {
+                columns.add(ref);
+            }
+        }
+        try {
+            return markTransaction.execute(status -> markAll(columns));
+        } catch (RuntimeException e) {
+            logger.error("Upload GC aborted: could not open the mark transaction", e);
+            return null;
+        }
+    }
+
+    private LongHashSet markAll(List<String[]> columns) {
+        LongHashSet marked = new LongHashSet(1 << 12);
+        for (String[] ref : columns) {
+            String table = ref[0];
+            String column = ref[1];
+            try {
+                jdbcTemplate.query(con -> {
+                    var ps = con.prepareStatement("SELECT DISTINCT " + column + " FROM " + table
+                            + " WHERE " + column + " IS NOT NULL");
+                    ps.setFetchSize(batchSize);
+                    return ps;
+                }, rs -> {
+                    String key = storageKey(rs.getString(1));
+                    if (key != null) {
+                        marked.add(hash(key));
+                    }
+                });
+            } catch (DataAccessException e) {
+                logger.error("Upload GC aborted: could not read references from {}.{}", table, column, e);
+                return null;
+            }
+        }
+        return marked;
+    }
+
+    private boolean tableExists(String table) {
+        try {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE 1 = 0", Integer.class);
+            return true;
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+
+    private static final class SweepResult {
+        long scanned;
+        long trashed;
+        long bytesTrashed;
+        final List<String> sample = new ArrayList<>();
+    }
+
+    private SweepResult sweep(Path root, LongHashSet marked, boolean dryRun) {
+        SweepResult result = new SweepResult();
+        if (!Files.isDirectory(root)) {
+            return result;
+        }
+        Instant cutoff = Instant.now().minus(gracePeriodHours, ChronoUnit.HOURS);
+        Path trashDay = root.resolve(TRASH_DIR).resolve(LocalDate.now().format(TRASH_DAY));
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return isInternal(root, dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        sweepFile(root, file, attrs, marked, cutoff, trashDay, dryRun, result);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    logger.warn("Upload GC could not read {}: {}", file, e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            logger.error("Upload GC sweep stopped early", e);
+        }
+        bytesTrashedCounter.increment(result.bytesTrashed);
+        return result;
+    }
+
+    private void sweepFile(Path root, Path file, BasicFileAttributes attrs, LongHashSet marked, Instant cutoff,
+            Path trashDay, boolean dryRun, SweepResult result) {
+        try {
+            result.scanned++;
+            String relative = root.relativize(file).toString().replace('\\', '/');
+            if (marked.contains(hash(relative)) || attrs.lastModifiedTime().toInstant().isAfter(cutoff)) {
+                return;
+            }
+            if (!dryRun) {
+                // Referenced since the walk read it (addReference refreshes the mtime)
+                if (Files.getLastModifiedTime(file).toInstant().isAfter(cutoff)) {
+                    return;
+                }
+                Path target = trashDay.resolve(relative);
+                Files.createDirectories(target.getParent());
+                Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                uploadedFileRepository.deleteByStoragePath(relative);
+                imageDerivatives.deleteDerivatives(relative);
+                imageCache.invalidate(relative);
+            }
+            result.trashed++;
+            result.bytesTrashed += attrs.size();
+            if (result.sample.size() < 20) {
+                result.sample.add(relative);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Upload GC could not process {}: {}", file, e.getMessage());
+        }
+    }
+
+    // Derivatives go with their original; trash and in-progress uploads are not collectable
+    private static boolean isInternal(Path root, Path dir) {
+        if (!root.equals(dir.getParent())) {
+            return false;
+        }
+        String name = dir.getFileName().toString();
+        return name.equals(TRASH_DIR) || name.equals(ImageDerivativeService.DERIVATIVE_DIR) || name.equals(".tmp");
+    }
+
+    /**
+     * Permanently delete trash days older than the retention period
+     *
+     * @return [files deleted, bytes reclaimed]
+     */
+    private long[] purgeTrash(Path root) {
+        long[] purged = new long[2];
+        Path trash = root.resolve(TRASH_DIR);
+        if (!Files.isDirectory(trash)) {
+            return purged;
+        }
+        LocalDate oldestKept = LocalDate.now(ZoneId.systemDefault()).minusDays(trashRetentionDays);
+        try (Stream<Path> days = Files.list(trash)) {
+            for (Path day : (Iterable<Path>) days::iterator) {
+                LocalDate date;
+                try {
+                    date = LocalDate.parse(day.getFileName().toString(), TRASH_DAY);
+                } catch (RuntimeException e) {
+                    continue;
+                }
+                if (!date.isBefore(oldestKept)) {
+                    continue;
+                }
+                try (Stream<Path> contents = Files.walk(day)) {
+                    for (Path p : (Iterable<Path>) contents.sorted(Comparator.reverseOrder())::iterator) {
+                        if (Files.isRegularFile(p)) {
+                            purged[1] += Files.size(p);
+                            purged[0]++;
+                        }
+                        Files.deleteIfExists(p);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Upload GC could not purge trash: {}", e.getMessage());
+        }
+        bytesReclaimedCounter.increment(purged[1]);
+        return purged;
+    }
+
+    /**
+     * Storage path (relative to the upload directory) an image url points at, or null for
+     * urls that are not local uploads (external links, data: urls)
+     */
+    static String storageKey(String url) {
+        if (url == null) {
+            return null;
+        }
+        String u = url.trim();
+        if (u.isEmpty() || u.startsWith("data:")) {
+            return null;
+        }
+        int cut = indexOfAny(u, '?', '#');
+        if (cut >= 0) {
+            u = u.substring(0, cut);
+        }
+        for (String prefix : new String[] { "/uploads/", "/api/admin/products/images/" }) {
+            int i = u.indexOf(prefix);
+            if (i >= 0) {
+                return u.substring(i + prefix.length());
+            }
+        }
+        if (u.contains("://")) {
+            return null;
+        }
+        // Bare file name as stored by older code paths
+        return u.substring(u.lastIndexOf('/') + 1);
+    }
+
+    private static int indexOfAny(String s, char a, char b) {
+        int i = s.indexOf(a);
+        int j = s.indexOf(b);
+        return i < 0 ? j : (j < 0 ? i : Math.min(i, j));
+    }
+
+    // 64-bit FNV-1a; a collision can only keep an orphan alive, never delete a live file
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Open-addressing set of longs (8 bytes per slot, no boxing)
+     */
+    static final class LongHashSet {
+        private static final long EMPTY = 0L;
+        private long[] slots;
+        private boolean hasZero;
+        private int size;
+
+        LongHashSet(int initialCapacity) {
+            slots = new long[Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1];
+        }
+
+        int size() {
+            return size + (hasZero ? 1 : 0);
+        }
+
+        void add(long value) {
+            if (value == EMPTY) {
+                hasZero = true;
+                return;
+            }
+            if ((size + 1) * 2 > slots.length) {
+                resize();
+            }
+            if (insert(slots, value)) {
+                size++;
+            }
+        }
+
+        boolean contains(long value) {
+            if (value == EMPTY) {
+                return hasZero;
+            }
+            int mask = slots.length - 1;
+            for (int i = mix(value) & mask; ; i = (i + 1) & mask) {
+                if (slots[i] == EMPTY) {
+                    return false;
+                }
+                if (slots[i] == value) {
+                    return true;
+                }
+            }
+        }
+
+        private static boolean insert(long[] table, long value) {
+            int mask = table.length - 1;
+            for (int i = mix(value) & mask; ; i = (i + 1) & mask) {
+                if (table[i] == EMPTY) {
+                    table[i] = value;
+                    return true;
+                }
+                if (table[i] == value) {
+                    return false;
+                }
+            }
+        }
+
+        private void resize() {
+            long[] bigger = new long[slots.length << 1];
+            for (long v : slots) {
+                if (v != EMPTY) {
+                    insert(bigger, v);
+                }
+            }
+            slots = bigger;
+        }
+
+        private static int mix(long value) {
+            long h = value * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
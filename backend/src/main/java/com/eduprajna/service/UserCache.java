@@ -0,0 +1,158 @@
+package com.eduprajna.service;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.eduprajna.entity.User;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Bounded, TTL'd cache of User rows keyed by normalized email and by id.
+ *
+ * Cached users are detached entities: they can be passed to repositories as query
+ * parameters or relation targets, but must not be mutated. Writes go through
+ * {@link UserService} which invalidates the entry.
+ */
+@Component
+public class UserCache {
+
+    private final Map<String, Entry> byEmail = new ConcurrentHashMap<>();
+    private final Map<Long, Entry> byId = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Counter hits;
+    private final Counter misses;
+
+    private record Entry(User user, long expiresAt) {
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    public UserCache(@Value("${users.cache.max-size:10000}") int maxSize,
+            @Value("${users.cache.ttl-seconds:300}") long ttlSeconds,
+            MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.hits = Counter.builder("users.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("users.cache.requests").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("users.cache.size", byId, Map::size);
+    }
+
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Look a user up by email, calling the loader only on a miss. Absent users are not cached.
+     */
+    public Optional<User> getByEmail(String email, Supplier<Optional<User>> loader) {
+        String key = normalizeEmail(email);
+        if (key == null || key.isEmpty()) {
+            return loader.get();
+        }
+        Entry entry = byEmail.get(key);
+        if (entry != null && !entry.isExpired(System.currentTimeMillis())) {
+            hits.increment();
+            return Optional.of(entry.user());
+        }
+        misses.increment();
+        Optional<User> loaded = loader.get();
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    /**
+     * Look a user up by id, calling the loader only on a miss. Absent users are not cached.
+     */
+    public Optional<User> getById(Long id, Supplier<Optional<User>> loader) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        Entry entry = byId.get(id);
+        if (entry != null && !entry.isExpired(System.currentTimeMillis())) {
+            hits.increment();
+            return Optional.of(entry.user());
+        }
+        misses.increment();
+        Optional<User> loaded = loader.get();
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    public void put(User user) {
+        if (user == null || user.getId() == null || user.getEmail() == null) {
+            return;
+        }
+        if (byId.size() >= maxSize) {
+            evict();
+        }
+        Entry entry = new Entry(user, System.currentTimeMillis() + ttlMillis);
+        byId.put(user.getId(), entry);
+        byEmail.put(normalizeEmail(user.getEmail()), entry);
+    }
+
+    /**
+     * Drop a user from both indexes (call after any update to the users row)
+     */
+    public void invalidate(User user) {
+        if (user == null) {
+            return;
+        }
+        invalidateId(user.getId());
+        invalidateEmail(user.getEmail());
+    }
+
+    public void invalidateId(Long id) {
+        if (id == null) {
+            return;
+        }
+        Entry removed = byId.remove(id);
+        if (removed != null) {
+            byEmail.remove(normalizeEmail(removed.user().getEmail()), removed);
+        }
+    }
+
+    public void invalidateEmail(String email) {
+        String key = normalizeEmail(email);
+        if (key == null) {
+            return;
+        }
+        Entry removed = byEmail.remove(key);
+        if (removed != null) {
+            byId.remove(removed.user().getId(), removed);
+        }
+    }
+
+    public void clear() {
+        byId.clear();
+        byEmail.clear();
+    }
+
+    /**
+     * Remove expired entries; if the cache is still full, drop about a tenth of it
+     */
+    private synchronized void evict() {
+        long now = System.currentTimeMillis();
+        byId.values().removeIf(e -> e.isExpired(now));
+        byEmail.values().removeIf(e -> e.isExpired(now));
+        int toDrop = byId.size() - (maxSize - Math.max(1, maxSize / 10));
+        Iterator<Entry> it = byId.values().iterator();
+        while (toDrop > 0 && it.hasNext()) {
+            Entry e = it.next();
+            it.remove();
+            byEmail.remove(normalizeEmail(e.user().getEmail()), e);
+            toDrop--;
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package com.eduprajna.service;
 
+import java.time.OffsetDateTime;
 import java.util.Optional;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.eduprajna.entity.User;
 import com.eduprajna.repository.UserRepository;
@@ -10,8 +15,96 @@ import com.eduprajna.repository.UserRepository;
 @Service
 public class UserService {
     private final UserRepository userRepository;
-    public UserService(UserRepository userRepository) { this.userRepository = userRepository; }
+    private final UserCache userCache;
 
-    public Optional<User> findByEmail(String email) { return userRepository.findByEmail(email); }
-    public User save(User user) { return userRepository.save(user); }
-}
\ No newline at end of file
+    // Once tokens are required the legacy ?email= param no longer identifies anyone
+    @Value("${auth.tokens.required:false}")
+    private boolean tokensRequired;
+
+    public UserService(UserRepository userRepository, UserCache userCache) {
+        this.userRepository = userRepository;
+        this.userCache = userCache;
+    }
+
+    // Cached lookups return detached users: read them, don't modify them
+    public Optional<User> findByEmail(String email) {
+        return userCache.getByEmail(email, () -> userRepository.findByEmail(email));
+    }
+
+    public Optional<User> findById(Long id) {
+        return userCache.getById(id, () -> userRepository.findById(id));
+    }
+
+    // Uncached lookup for callers that are about to modify and save the user
+    public Optional<User> findByEmailForUpdate(String email) {
+        return userRepository.findByEmail(email);
+    }
+
+    /**
+     * Resolve the caller: the bearer token principal wins, the legacy email param is the fallback
+     */
+    public Optional<User> findCurrentUser(String email) {
+        AccessTokenService.Claims claims = currentClaims();
+        if (claims != null) {
+            return findById(claims.userId());
+        }
+        return tokensRequired || email == null || email.isBlank() ? Optional.empty() : findByEmail(email);
+    }
+
+    // Uncached variant of findCurrentUser for callers that modify and save the user
+    public Optional<User> findCurrentUserForUpdate(String email) {
+        AccessTokenService.Claims claims = currentClaims();
+        if (claims != null) {
+            return userRepository.findById(claims.userId());
+        }
+        return tokensRequired || email == null || email.isBlank() ? Optional.empty() : findByEmailForUpdate(email);
+    }
+
+    /**
+     * True if the request carries a verified token, or (until tokens are required) a non-blank email param
+     */
+    public boolean isIdentified(String email) {
+        return currentClaims() != null || (!tokensRequired && email != null && !email.trim().isEmpty());
+    }
+
+    /**
+     * True if the request carries a verified token with the admin role
+     */
+    public boolean isAdmin() {
+        AccessTokenService.Claims claims = currentClaims();
+        return claims != null && "ADMIN".equalsIgnoreCase(claims.role());
+    }
+
+    private static AccessTokenService.Claims currentClaims() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AccessTokenService.Claims claims) {
+            return claims;
+        }
+        return null;
+    }
+
+    public User save(User user) {
+        User saved = userRepository.save(user);
+        userCache.invalidate(user);
+        userCache.invalidate(saved);
+        return saved;
+    }
+
+    @Transactional
+    public void incrementTotalOrders(User user) {
+        userRepository.incrementTotalOrders(user.getId(), OffsetDateTime.now());
+        userCache.invalidate(user);
+    }
+
+    /**
+     * Store a rehashed password (same password, stronger work factor) without
+     * touching lastPasswordChange, so existing refresh tokens stay valid
+     */
+    @Transactional
+    public void upgradePasswordHash(User user, String newHash) {
+        userRepository.replacePasswordHash(user.getId(), user.getPasswordHash(), newHash);
+        userCache.invalidate(user);
+    }
+
+    public void evict(User user) { userCache.invalidate(user); }
+}
@@ -0,0 +1,199 @@
+package com.eduprajna.service;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.eduprajna.dto.UserSummaryDTO;
+
+/**
+ * Builds the admin user list with order count, wishlist count and lifetime spend
+ * computed by the database in grouped queries instead of per-user lookups.
+ *
+ * A page that is neither filtered nor sorted by those totals is selected from users
+ * alone, and the totals are then aggregated for the users on that page only. Filtering
+ * or sorting by a total needs it for every user, so those pages join the full aggregates.
+ */
+@Service
+public class UserSummaryService {
+
+    // Whitelisted sort keys (request value -> SQL expression)
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id", "u.id",
+            "name", "u.name",
+            "email", "u.email",
+            "createdAt", "u.created_at",
+            "loyaltyPoints", "u.loyalty_points",
+            "orderCount", "order_count",
+            "wishlistCount", "wishlist_count",
+            "lifetimeSpend", "lifetime_spend");
+    private static final Set<String> AGGREGATE_SORTS = Set.of("orderCount", "wishlistCount", "lifetimeSpend");
+
+    private static final String USER_COLUMNS = "SELECT u.id, u.name, u.email, u.phone, u.role, u.created_at, "
+            + "u.member_since, u.is_active, u.loyalty_points ";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final OrderArchiveService orderArchiveService;
+
+    public UserSummaryService(NamedParameterJdbcTemplate jdbcTemplate, OrderArchiveService orderArchiveService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.orderArchiveService = orderArchiveService;
+    }
+
+    /**
+     * Filters for the admin user list; null fields are ignored
+     */
+    public static class Filter {
+        public String query;
+        public Long minOrders;
+        public Double minSpend;
+        public Boolean active;
+    }
+
+    /**
+     * One page of non-admin users with their aggregates
+     *
+     * @return Map with content, page, size, totalElements and totalPages
+     */
+    public Map<String, Object> getPage(Filter filter, int page, int size, String sort, boolean ascending) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        boolean byTotals = filter.minOrders != null || filter.minSpend != null || AGGREGATE_SORTS.contains(sort);
+        String fromAndWhere = (byTotals ? fromClause() : "FROM users u ") + whereClause(filter, params);
+
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) " + fromAndWhere, params, Long.class);
+        long totalElements = total != null ? total : 0L;
+
+        params.addValue("limit", size);
+        params.addValue("offset", (long) page * size);
+        List<UserSummaryDTO> content = jdbcTemplate.query(
+                (byTotals ? selectClause() : USER_COLUMNS) + fromAndWhere + orderClause(sort, ascending)
+                        + " LIMIT :limit OFFSET :offset",
+                params, (rs, rowNum) -> mapRow(rs, byTotals));
+        if (!byTotals) {
+            loadTotals(content);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("content", content);
+        result.put("page", page);
+        result.put("size", size);
+        result.put("totalElements", totalElements);
+        result.put("totalPages", size > 0 ? (totalElements + size - 1) / size : 0);
+        return result;
+    }
+
+    /**
+     * All non-admin users with their aggregates (legacy unpaginated list)
+     */
+    public List<UserSummaryDTO> getAll() {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        return jdbcTemplate.query(
+                selectClause() + fromClause() + whereClause(new Filter(), params) + " ORDER BY u.id",
+                params, (rs, rowNum) -> mapRow(rs, true));
+    }
+
+    public static boolean isSortable(String sort) {
+        return SORT_COLUMNS.containsKey(sort);
+    }
+
+    private String selectClause() {
+        return USER_COLUMNS + ", COALESCE(oc.order_count, 0) AS order_count, "
+                + "COALESCE(oc.lifetime_spend, 0) AS lifetime_spend, COALESCE(wc.wishlist_count, 0) AS wishlist_count ";
+    }
+
+    private String fromClause() {
+        return "FROM users u "
+                + "LEFT JOIN (SELECT o.user_id, COUNT(*) AS order_count, SUM(o.total) AS lifetime_spend FROM "
+                + ordersSource("") + " o GROUP BY o.user_id) oc ON oc.user_id = u.id "
+                + "LEFT JOIN (SELECT w.user_id, COUNT(*) AS wishlist_count FROM wishlist_items w GROUP BY w.user_id) wc "
+                + "ON wc.user_id = u.id ";
+    }
+
+    // Archived orders still count towards a customer's totals
+    private String ordersSource(String where) {
+        return orderArchiveService.isReady()
+                ? "(SELECT user_id, total FROM orders " + where + " UNION ALL SELECT user_id, total FROM orders_archive "
+                        + where + ")"
+                : "(SELECT user_id, total FROM orders " + where + ")";
+    }
+
+    // Order and wishlist totals for just these users
+    private void loadTotals(List<UserSummaryDTO> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        Map<Long, UserSummaryDTO> byId = new HashMap<>();
+        for (UserSummaryDTO user : users) {
+            byId.put(user.getId(), user);
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", byId.keySet());
+        jdbcTemplate.query("SELECT o.user_id, COUNT(*), SUM(o.total) FROM " + ordersSource("WHERE user_id IN (:ids)")
+                + " o GROUP BY o.user_id", params, rs -> {
+                    UserSummaryDTO user = byId.get(rs.getLong(1));
+                    user.setOrderCount(rs.getLong(2));
+                    user.setLifetimeSpend(rs.getDouble(3));
+                });
+        jdbcTemplate.query("SELECT w.user_id, COUNT(*) FROM wishlist_items w WHERE w.user_id IN (:ids) GROUP BY w.user_id",
+                params, rs -> {
+                    byId.get(rs.getLong(1)).setWishlistCount(rs.getLong(2));
+                });
+    }
+
+    private String whereClause(Filter filter, MapSqlParameterSource params) {
+        StringBuilder where = new StringBuilder("WHERE (u.role IS NULL OR LOWER(u.role) <> 'admin')");
+        if (filter.query != null && !filter.query.isBlank()) {
+            where.append(" AND (LOWER(u.name) LIKE :q OR LOWER(u.email) LIKE :q OR u.phone LIKE :q)");
+            params.addValue("q", "%" + filter.query.trim().toLowerCase() + "%");
+        }
+        if (filter.minOrders != null) {
+            where.append(" AND COALESCE(oc.order_count, 0) >= :minOrders");
+            params.addValue("minOrders", filter.minOrders);
+        }
+        if (filter.minSpend != null) {
+            where.append(" AND COALESCE(oc.lifetime_spend, 0) >= :minSpend");
+            params.addValue("minSpend", filter.minSpend);
+        }
+        if (filter.active != null) {
+            where.append(" AND u.is_active = :active");
+            params.addValue("active", filter.active);
+        }
+        return where.toString();
+    }
+
+    private String orderClause(String sort, boolean ascending) {
+        String column = SORT_COLUMNS.getOrDefault(sort, "u.id");
+        return " ORDER BY " + column + (ascending ? " ASC" : " DESC") + ", u.id ASC";
+    }
+
+    // Nullable columns stay null rather than reading as false / 0
+    private UserSummaryDTO mapRow(ResultSet rs, boolean withTotals) throws SQLException {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        Date memberSince = rs.getDate("member_since");
+        UserSummaryDTO dto = new UserSummaryDTO(
+                rs.getLong("id"),
+                rs.getString("name"),
+                rs.getString("email"),
+                rs.getString("phone"),
+                rs.getString("role"),
+                createdAt != null ? OffsetDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault()) : null,
+                memberSince != null ? memberSince.toLocalDate() : null,
+                rs.getObject("is_active", Boolean.class),
+                withTotals ? rs.getLong("order_count") : 0L,
+                withTotals ? rs.getLong("wishlist_count") : 0L,
+                rs.getObject("loyalty_points", Integer.class));
+        dto.setLifetimeSpend(withTotals ? rs.getDouble("lifetime_spend") : 0.0);
+        return dto;
+    }
+}
@@ -0,0 +1,156 @@
+package com.eduprajna.service;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.eduprajna.entity.User;
+import com.eduprajna.repository.WishlistItemRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Per-user bitmap of wishlisted product ids, used to answer "is this product in my
+ * wishlist" for listing pages and the wishlist count without touching wishlist rows.
+ *
+ * Product ids are dense database sequence values, so a BitSet indexed by id stays
+ * small (a catalog of 10k products costs ~1.25 KB per cached user). Bitmaps are built
+ * from one scalar query on first use and kept in lock stripes, each an access-ordered
+ * map bounded by maxUsers / stripes.
+ *
+ * Mutations bump a per-stripe version; a bitmap loaded while a mutation raced with the
+ * load is not cached, so a stale read can never be installed over a newer change.
+ */
+@Component
+public class WishlistMembershipCache {
+
+    private static final int STRIPES = 64;
+
+    private final WishlistItemRepository wishlistRepo;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Counter hits;
+    private final Counter misses;
+
+    private static final class Stripe {
+        final Map<Long, BitSet> users;
+        long version;
+
+        Stripe(int maxEntries) {
+            this.users = new LinkedHashMap<>(32, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, BitSet> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+    }
+
+    public WishlistMembershipCache(WishlistItemRepository wishlistRepo,
+            @Value("${wishlist.membership-cache.max-users:50000}") int maxUsers,
+            MeterRegistry meterRegistry) {
+        this.wishlistRepo = wishlistRepo;
+        int perStripe = Math.max(16, maxUsers / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+        this.hits = Counter.builder("wishlist.membership.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("wishlist.membership.cache").tag("result", "miss").register(meterRegistry);
+    }
+
+    private Stripe stripe(Long userId) {
+        return stripes[(Long.hashCode(userId) & 0x7fffffff) % STRIPES];
+    }
+
+    /**
+     * Membership of each id in the user's wishlist (unknown or out-of-range ids are false)
+     */
+    public boolean[] contains(User user, List<Long> productIds) {
+        BitSet bits = bitmap(user);
+        boolean[] result = new boolean[productIds.size()];
+        for (int i = 0; i < result.length; i++) {
+            Long id = productIds.get(i);
+            result[i] = id != null && id >= 0 && id <= Integer.MAX_VALUE && bits.get(id.intValue());
+        }
+        return result;
+    }
+
+    public long count(User user) {
+        return bitmap(user).cardinality();
+    }
+
+    /**
+     * Record an added product once the surrounding transaction (if any) has committed
+     */
+    public void added(User user, Long productId) {
+        TransactionCallbacks.afterCommit(() -> update(user.getId(), productId, true));
+    }
+
+    /**
+     * Record a removed product once the surrounding transaction (if any) has committed
+     */
+    public void removed(User user, Long productId) {
+        TransactionCallbacks.afterCommit(() -> update(user.getId(), productId, false));
+    }
+
+    /**
+     * Drop every cached bitmap (e.g. after a product was deleted with its wishlist rows)
+     */
+    public void invalidateAll() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.users.clear();
+                stripe.version++;
+            }
+        }
+    }
+
+    private BitSet bitmap(User user) {
+        Long userId = user.getId();
+        Stripe stripe = stripe(userId);
+        long version;
+        synchronized (stripe) {
+            BitSet cached = stripe.users.get(userId);
+            if (cached != null) {
+                hits.increment();
+                // Copy so readers never observe a concurrent update
+                return (BitSet) cached.clone();
+            }
+            version = stripe.version;
+        }
+        misses.increment();
+
+        BitSet loaded = new BitSet();
+        for (Long productId : wishlistRepo.findProductIdsByUser(user)) {
+            if (productId != null && productId >= 0 && productId <= Integer.MAX_VALUE) {
+                loaded.set(productId.intValue());
+            }
+        }
+        synchronized (stripe) {
+            if (stripe.version == version) {
+                stripe.users.put(userId, (BitSet) loaded.clone());
+            }
+        }
+        return loaded;
+    }
+
+    private void update(Long userId, Long productId, boolean present) {
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            stripe.version++;
+            BitSet bits = stripe.users.get(userId);
+            if (bits == null) {
+                return;
+            }
+            if (productId == null || productId < 0 || productId > Integer.MAX_VALUE) {
+                stripe.users.remove(userId);
+            } else {
+                bits.set(productId.intValue(), present);
+            }
+        }
+    }
+}
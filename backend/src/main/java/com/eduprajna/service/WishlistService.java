@@ -11,29 +11,32 @@ import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 @Service
 public class WishlistService {
     private static final Logger log = LoggerFactory.getLogger(WishlistService.class);
     private final WishlistItemRepository wishlistRepo;
     private final ProductRepository productRepo;
+    private final WishlistMembershipCache membership;
 
-    public WishlistService(WishlistItemRepository wishlistRepo, ProductRepository productRepo) {
+    public WishlistService(WishlistItemRepository wishlistRepo, ProductRepository productRepo,
+            WishlistMembershipCache membership) {
         this.wishlistRepo = wishlistRepo;
         this.productRepo = productRepo;
+        this.membership = membership;
     }
 
     public List<WishlistItemDTO> getWishlist(User user) {
-        return wishlistRepo.findByUserOrderByCreatedAtDesc(user)
-                .stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        return wishlistRepo.findWishlistView(user);
     }
 
     public WishlistItemDTO addToWishlist(User user, Long productId) {
-        Product product = productRepo.findById(productId).orElseThrow();
+        Product product = productRepo.findById(productId)
+                .orElseThrow(() -> new NoSuchElementException("Product not found: " + productId));
         WishlistItem item = wishlistRepo.findByUserAndProduct(user, product).orElseGet(() -> {
             WishlistItem wi = new WishlistItem();
             wi.setUser(user);
@@ -41,6 +44,7 @@ public class WishlistService {
             return wi;
         });
         WishlistItem saved = wishlistRepo.save(item);
+        membership.added(user, productId);
         return toDTO(saved);
     }
 
@@ -55,13 +59,29 @@ public class WishlistService {
                 // Fallback to legacy approach if derived delete didn't match (e.g., older Spring Data behavior)
                 productRepo.findById(productId).ifPresent(product -> wishlistRepo.deleteByUserAndProduct(user, product));
             }
+            membership.removed(user, productId);
         } finally {
             log.info("Wishlist delete for user={} productId={} deletedRows={}", user.getId(), productId, deleted);
         }
     }
 
+    // Served from the membership bitmap rather than a COUNT query
     public long count(User user) {
-        return wishlistRepo.countByUser(user);
+        return membership.count(user);
+    }
+
+    /**
+     * Wishlist membership for a page of product ids, keyed by product id
+     */
+    public Map<Long, Boolean> contains(User user, List<Long> productIds) {
+        boolean[] present = membership.contains(user, productIds);
+        Map<Long, Boolean> result = new LinkedHashMap<>();
+        for (int i = 0; i < present.length; i++) {
+            if (productIds.get(i) != null) {
+                result.put(productIds.get(i), present[i]);
+            }
+        }
+        return result;
     }
 
     private WishlistItemDTO toDTO(WishlistItem item) {
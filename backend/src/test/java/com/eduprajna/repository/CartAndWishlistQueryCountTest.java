@@ -0,0 +1,117 @@
+package com.eduprajna.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.eduprajna.dto.CartItemDTO;
+import com.eduprajna.dto.WishlistItemDTO;
+import com.eduprajna.entity.CartItem;
+import com.eduprajna.entity.Product;
+import com.eduprajna.entity.ProductVariant;
+import com.eduprajna.entity.User;
+import com.eduprajna.entity.WishlistItem;
+
+/**
+ * The cart and wishlist read paths must issue one statement regardless of how many
+ * lines they return.
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.properties.hibernate.generate_statistics=true" })
+class CartAndWishlistQueryCountTest {
+
+	@Autowired
+	private TestEntityManager em;
+
+	@Autowired
+	private CartItemRepository cartRepo;
+
+	@Autowired
+	private WishlistItemRepository wishlistRepo;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		statistics = em.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@Test
+	void cartViewUsesOneStatementForAnyCartSize() {
+		User small = persistUserWithItems("small@example.com", 2);
+		User large = persistUserWithItems("large@example.com", 20);
+
+		assertThat(countStatements(() -> cartRepo.findCartView(small))).isEqualTo(1);
+		assertThat(countStatements(() -> cartRepo.findCartView(large))).isEqualTo(1);
+
+		List<CartItemDTO> items = cartRepo.findCartView(large);
+		assertThat(items).hasSize(20);
+		assertThat(items.get(0).name).isNotNull();
+		assertThat(items.get(0).stockQuantity).isEqualTo(7);
+		assertThat(items.get(0).currentPrice).isEqualTo(150.0);
+	}
+
+	@Test
+	void wishlistViewUsesOneStatementForAnyWishlistSize() {
+		User small = persistUserWithItems("small@example.com", 2);
+		User large = persistUserWithItems("large@example.com", 20);
+
+		assertThat(countStatements(() -> wishlistRepo.findWishlistView(small))).isEqualTo(1);
+		assertThat(countStatements(() -> wishlistRepo.findWishlistView(large))).isEqualTo(1);
+
+		List<WishlistItemDTO> items = wishlistRepo.findWishlistView(large);
+		assertThat(items).hasSize(20);
+		assertThat(items.get(0).productName).isNotNull();
+	}
+
+	private long countStatements(Runnable read) {
+		em.clear();
+		statistics.clear();
+		read.run();
+		return statistics.getPrepareStatementCount();
+	}
+
+	private User persistUserWithItems(String email, int count) {
+		User user = em.persist(new User("Test", email, "hash", null));
+		for (int i = 0; i < count; i++) {
+			Product product = new Product();
+			product.setName(email + " product " + i);
+			product.setPrice(100.0);
+			product.setImageUrl("/uploads/p" + i + ".jpg");
+			product.setStockQuantity(5);
+			em.persist(product);
+
+			ProductVariant variant = new ProductVariant();
+			variant.setProduct(product);
+			variant.setPrice(150.0);
+			variant.setStockQuantity(7);
+			em.persist(variant);
+
+			CartItem cartItem = new CartItem();
+			cartItem.setUser(user);
+			cartItem.setProduct(product);
+			cartItem.setVariantId(variant.getId());
+			cartItem.setQuantity(1);
+			cartItem.setPriceAtAdd(150.0);
+			em.persist(cartItem);
+
+			WishlistItem wishlistItem = new WishlistItem();
+			wishlistItem.setUser(user);
+			wishlistItem.setProduct(product);
+			em.persist(wishlistItem);
+		}
+		em.flush();
+		return user;
+	}
+}
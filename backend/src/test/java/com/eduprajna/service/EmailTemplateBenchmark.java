@@ -0,0 +1,231 @@
+package com.eduprajna.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.eduprajna.entity.Order;
+import com.eduprajna.entity.OrderItem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Order confirmation rendering: the compiled template against the string concatenation
+ * and String.format("%.2f") code EmailService used before.
+ *
+ * Run with: mvn test-compile, then the main method (IDE) or
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *   com.eduprajna.service.EmailTemplateBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailTemplateBenchmark {
+
+	@Param({ "3", "20" })
+	private int itemCount;
+
+	private Map<String, Object> orderData;
+	private Order order;
+	private EmailTemplate template;
+
+	@Setup
+	public void setup() throws IOException {
+		try (InputStream in = EmailTemplateBenchmark.class.getResourceAsStream("/email-templates/order-confirmation.html")) {
+			template = EmailTemplate.compile("order-confirmation.html", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		}
+		List<Map<String, Object>> items = new ArrayList<>();
+		order = new Order();
+		order.setId(10234L);
+		double subtotal = 0;
+		for (int i = 0; i < itemCount; i++) {
+			Map<String, Object> item = new HashMap<>();
+			item.put("name", "Pure Cow Ghee Diya " + i);
+			item.put("weightValue", 250 + i * 50);
+			item.put("weightUnit", "g");
+			item.put("quantity", 1 + i % 3);
+			item.put("price", 149.5 + i * 10.25);
+			subtotal += (1 + i % 3) * (149.5 + i * 10.25);
+			items.add(item);
+
+			OrderItem orderItem = new OrderItem();
+			orderItem.setProductName("Pure Cow Ghee Diya " + i);
+			orderItem.setWeightValue(String.valueOf(250 + i * 50));
+			orderItem.setWeightUnit("g");
+			orderItem.setQuantity(1 + i % 3);
+			orderItem.setPrice(149.5 + i * 10.25);
+			order.getItems().add(orderItem);
+		}
+		orderData = new HashMap<>();
+		orderData.put("email", "customer@example.com");
+		orderData.put("orderId", 10234L);
+		orderData.put("items", items);
+		orderData.put("subtotal", subtotal);
+		orderData.put("shippingCost", 60.0);
+		orderData.put("discountAmount", 25.0);
+		orderData.put("total", subtotal + 60.0 - 25.0);
+		order.setSubtotal(subtotal);
+		order.setShippingFee(60.0);
+		order.setTotal(subtotal + 60.0 - 25.0);
+	}
+
+	@Benchmark
+	public String compiledTemplate() {
+		return template.render(EmailService.orderConfirmationModel(order));
+	}
+
+	@Benchmark
+	public String concatenation() {
+		return legacyOrderConfirmationBody(orderData);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EmailTemplateBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	// EmailService.sendOrderConfirmation body building before templates, unchanged
+	@SuppressWarnings("unchecked")
+	private static String legacyOrderConfirmationBody(Map<String, Object> orderData) {
+		Object orderIdObj = orderData.get("orderId");
+		String orderId = orderIdObj != null ? String.valueOf(orderIdObj) : "N/A";
+		List<Map<String, Object>> items = (List<Map<String, Object>>) orderData.get("items");
+
+		Double subtotal = parseDouble(orderData.get("subtotal"));
+		Double shippingCost = parseDouble(orderData.get("shippingCost"));
+		Double discountAmount = parseDouble(orderData.get("discountAmount"));
+		Double total = parseDouble(orderData.get("total"));
+
+		StringBuilder rowsHtml = new StringBuilder();
+		for (Map<String, Object> item : items) {
+			String name = (String) item.get("name");
+			Object weightVal = item.get("weightValue");
+			String weightUnit = (String) item.get("weightUnit");
+			String weightDisplay = (weightVal != null ? weightVal : "-") + " "
+					+ (weightUnit != null ? weightUnit : "");
+
+			int quantity = parseInt(item.get("quantity"));
+			Double price = parseDouble(item.get("price"));
+			Double itemTotal = quantity * price;
+
+			rowsHtml.append("<tr>")
+					.append("<td style=\"padding: 10px; border: 1px solid #ddd;\">").append(name).append("</td>")
+					.append("<td style=\"padding: 10px; border: 1px solid #ddd;\">").append(weightDisplay)
+					.append("</td>")
+					.append("<td style=\"padding: 10px; border: 1px solid #ddd; text-align: center;\">")
+					.append(quantity).append("</td>")
+					.append("<td style=\"padding: 10px; border: 1px solid #ddd; text-align: right;\">₹")
+					.append(String.format("%.2f", price)).append("</td>")
+					.append("<td style=\"padding: 10px; border: 1px solid #ddd; text-align: right;\">₹")
+					.append(String.format("%.2f", itemTotal)).append("</td>")
+					.append("</tr>");
+		}
+
+		String discountRow = "";
+		if (discountAmount > 0) {
+			discountRow = "<tr>" +
+					"<td colspan=\"4\" style=\"padding: 10px; text-align: right; font-weight: bold; color: #e53e3e;\">Discount</td>"
+					+
+					"<td style=\"padding: 10px; text-align: right; color: #e53e3e;\">-₹"
+					+ String.format("%.2f", discountAmount) + "</td>" +
+					"</tr>";
+		}
+
+		return "<div style=\"font-family: Arial, sans-serif; max-width: 600px; margin: auto; border: 1px solid #eee; padding: 20px;\">"
+				+
+				"<div style=\"text-align: center; margin-bottom: 20px;\">" +
+				"<h2>Sanatana Parampare</h2>" +
+				"</div>" +
+				"<h2 style=\"color: #4CAF50; text-align: center;\">Thank you for your order!</h2>" +
+				"<p>Hi there,</p>" +
+				"<p>Your order <strong>#" + orderId + "</strong> has been confirmed and is being processed.</p>" +
+
+				"<table style=\"width: 100%; border-collapse: collapse; margin-top: 20px;\">" +
+				"<thead>" +
+				"<tr style=\"background-color: #f8f8f8;\">" +
+				"<th style=\"padding: 10px; border: 1px solid #ddd; text-align: left;\">Product</th>" +
+				"<th style=\"padding: 10px; border: 1px solid #ddd; text-align: left;\">Weight</th>" +
+				"<th style=\"padding: 10px; border: 1px solid #ddd; text-align: center;\">Qty</th>" +
+				"<th style=\"padding: 10px; border: 1px solid #ddd; text-align: right;\">Price</th>" +
+				"<th style=\"padding: 10px; border: 1px solid #ddd; text-align: right;\">Total</th>" +
+				"</tr>" +
+				"</thead>" +
+				"<tbody>" +
+				rowsHtml.toString() +
+				"</tbody>" +
+				"<tfoot>" +
+				"<tr>" +
+				"<td colspan=\"4\" style=\"padding: 10px; text-align: right; font-weight: bold;\">Subtotal</td>" +
+				"<td style=\"padding: 10px; text-align: right;\">₹" + String.format("%.2f", subtotal) + "</td>" +
+				"</tr>" +
+				"<tr>" +
+				"<td colspan=\"4\" style=\"padding: 10px; text-align: right; font-weight: bold;\">Shipping</td>" +
+				"<td style=\"padding: 10px; text-align: right;\">₹" + String.format("%.2f", shippingCost) + "</td>"
+				+
+				"</tr>" +
+				discountRow +
+				"<tr style=\"background-color: #f8f8f8; font-size: 1.1em;\">" +
+				"<td colspan=\"4\" style=\"padding: 10px; text-align: right; font-weight: bold;\">Grand Total</td>"
+				+
+				"<td style=\"padding: 10px; text-align: right; font-weight: bold; color: #4CAF50;\">₹"
+				+ String.format("%.2f", total) + "</td>" +
+				"</tr>" +
+				"</tfoot>" +
+				"</table>" +
+
+				"<p style=\"margin-top: 30px;\">An invoice PDF has been attached to this email for your records.</p>"
+				+
+				"<p>We'll notify you when your order is shipped!</p>" +
+
+				"<div style=\"margin-top: 40px; border-top: 1px solid #eee; padding-top: 20px; font-size: 12px; color: #888; text-align: center;\">"
+				+
+				"<p>Sanatana Parampare - 100% Authentic Products</p>" +
+				"<p>If you have any questions, contact us at techmindset@kvgengg.com</p>" +
+				"</div>" +
+				"</div>";
+	}
+
+	private static Double parseDouble(Object value) {
+		if (value == null)
+			return 0.0;
+		if (value instanceof Number)
+			return ((Number) value).doubleValue();
+		try {
+			return Double.parseDouble(value.toString());
+		} catch (NumberFormatException e) {
+			return 0.0;
+		}
+	}
+
+	private static int parseInt(Object value) {
+		if (value == null)
+			return 0;
+		if (value instanceof Number)
+			return ((Number) value).intValue();
+		try {
+			return Integer.parseInt(value.toString());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
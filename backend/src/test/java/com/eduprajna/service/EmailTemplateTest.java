@@ -0,0 +1,135 @@
+package com.eduprajna.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Template tags and the money format, which must print the same digits as
+ * String.format("%.2f") did before templates.
+ */
+class EmailTemplateTest {
+
+	@Test
+	void sectionRepeatsForEachListElement() {
+		EmailTemplate template = EmailTemplate.compile("items.txt", "{{#items}}{{name}} x{{quantity}}; {{/items}}");
+
+		String out = template.render(Map.of("items", List.of(
+				Map.of("name", "Ghee", "quantity", 2),
+				Map.of("name", "Diya", "quantity", 1))));
+
+		assertThat(out).isEqualTo("Ghee x2; Diya x1; ");
+	}
+
+	@Test
+	void elementKeysShadowTheOuterModel() {
+		EmailTemplate template = EmailTemplate.compile("scope.txt", "{{#items}}{{name}}@{{orderId}} {{/items}}");
+
+		String out = template.render(Map.of("name", "outer", "orderId", 7,
+				"items", List.of(Map.of("name", "inner"))));
+
+		assertThat(out).isEqualTo("inner@7 ");
+	}
+
+	@Test
+	void dotRendersTheCurrentElement() {
+		EmailTemplate template = EmailTemplate.compile("dot.txt", "{{#tags}}[{{.}}]{{/tags}}");
+
+		assertThat(template.render(Map.of("tags", List.of("a", "b", "c")))).isEqualTo("[a][b][c]");
+	}
+
+	@Test
+	void sectionRendersOnceForTruthyValues() {
+		EmailTemplate template = EmailTemplate.compile("flag.txt", "{{#hasDiscount}}-{{discount|money}}{{/hasDiscount}}");
+
+		assertThat(template.render(Map.of("hasDiscount", true, "discount", 25.0))).isEqualTo("-25.00");
+		assertThat(template.render(Map.of("hasDiscount", false, "discount", 25.0))).isEmpty();
+		assertThat(template.render(Map.of("discount", 25.0))).isEmpty();
+	}
+
+	@Test
+	void invertedSectionRendersOnlyForFalsyValues() {
+		EmailTemplate template = EmailTemplate.compile("empty.txt", "{{^items}}no items{{/items}}");
+
+		assertThat(template.render(Map.of("items", List.of()))).isEqualTo("no items");
+		assertThat(template.render(Map.of("items", false))).isEqualTo("no items");
+		assertThat(template.render(Map.of())).isEqualTo("no items");
+		assertThat(template.render(Map.of("items", List.of("x")))).isEmpty();
+	}
+
+	@Test
+	void commentsAreDropped() {
+		EmailTemplate template = EmailTemplate.compile("comment.txt", "a{{! not rendered }}b");
+
+		assertThat(template.render(Map.of())).isEqualTo("ab");
+	}
+
+	@Test
+	void htmlTemplatesEscapeValues() {
+		String source = "<p>{{name}}</p>";
+
+		String value = "<script>alert('x')</script> & \"q\"";
+		assertThat(EmailTemplate.compile("note.html", source).render(Map.of("name", value)))
+				.isEqualTo("<p>&lt;script&gt;alert(&#39;x&#39;)&lt;/script&gt; &amp; &quot;q&quot;</p>");
+		assertThat(EmailTemplate.compile("note.txt", source).render(Map.of("name", value)))
+				.isEqualTo("<p>" + value + "</p>");
+	}
+
+	@Test
+	void malformedTemplatesAreRejected() {
+		assertThatThrownBy(() -> EmailTemplate.compile("open.txt", "{{#items}}x"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> EmailTemplate.compile("mismatch.txt", "{{#a}}x{{/b}}"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> EmailTemplate.compile("unclosed.txt", "{{name"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> EmailTemplate.compile("format.txt", "{{total|percent}}"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void moneyMatchesStringFormatOnEdgeCases() {
+		double[] values = {
+				0.0, -0.0, -0.001, -0.004, -0.005, -1.005, -2.675, -1234.5,
+				0.005, 0.045, 0.125, 1.005, 2.675, 1234.5, 149.5,
+				9_999_999.995, 10_000_000.005, 99_784_331_142_632.45, 999_999_999_999.995,
+				1e15, -1e15, 1e20, Double.MIN_VALUE, Double.MAX_VALUE,
+				Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for (double value : values) {
+			assertThat(money(value)).as("%s", value).isEqualTo(String.format("%.2f", value));
+		}
+	}
+
+	@Test
+	void moneyMatchesStringFormatOnRandomAmounts() {
+		Random random = new Random(42);
+		for (int i = 0; i < 200_000; i++) {
+			double value = switch (i % 4) {
+				case 0 -> (random.nextDouble() - 0.5) * 2e6;
+				// whole paise and half paise, where the product is ambiguous
+				case 1 -> Math.round((random.nextDouble() - 0.5) * 2e8) / 100.0;
+				case 2 -> Math.round((random.nextDouble() - 0.5) * 2e8) / 100.0 + 0.005;
+				default -> (random.nextDouble() - 0.5) * 2e14;
+			};
+			assertThat(money(value)).as("%s", value).isEqualTo(String.format("%.2f", value));
+		}
+	}
+
+	@Test
+	void moneyFormatAppliesToSlots() {
+		EmailTemplate template = EmailTemplate.compile("total.txt", "{{total|money}} {{count|money}} {{label|money}}");
+
+		assertThat(template.render(Map.of("total", 1.005, "count", 3, "label", "n/a"))).isEqualTo("1.01 3.00 n/a");
+	}
+
+	private static String money(double value) {
+		StringBuilder out = new StringBuilder();
+		EmailTemplate.appendMoney(out, value);
+		return out.toString();
+	}
+}
@@ -0,0 +1,41 @@
+package com.eduprajna.service;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import com.eduprajna.exception.TooManyRequestsException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Each client IP and each account drains its own bucket.
+ */
+class LoginThrottleTest {
+
+	private final LoginThrottle throttle = new LoginThrottle(3, 1, 3, 1, 1000, new SimpleMeterRegistry());
+
+	@Test
+	void clientIpsGetSeparateBuckets() {
+		for (int i = 0; i < 3; i++) {
+			throttle.acquire("203.0.113.10", "user" + i + "@example.com");
+		}
+		assertThatThrownBy(() -> throttle.acquire("203.0.113.10", "other@example.com"))
+				.isInstanceOf(TooManyRequestsException.class);
+
+		assertThatCode(() -> throttle.acquire("198.51.100.20", "other@example.com")).doesNotThrowAnyException();
+	}
+
+	@Test
+	void accountIsThrottledAcrossIps() {
+		for (int i = 0; i < 3; i++) {
+			throttle.acquire("203.0.113." + i, "victim@example.com");
+		}
+		assertThatThrownBy(() -> throttle.acquire("198.51.100.20", "victim@example.com"))
+				.isInstanceOf(TooManyRequestsException.class);
+
+		throttle.onSuccess("victim@example.com");
+		assertThatCode(() -> throttle.acquire("198.51.100.21", "victim@example.com")).doesNotThrowAnyException();
+	}
+}
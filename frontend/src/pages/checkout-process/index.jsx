@@ -17,7 +17,6 @@ import OrderSummary from './components/OrderSummary';
 import TrustSignals from './components/TrustSignals';
 import Button from '../../components/ui/Button';
 import Icon from '../../components/AppIcon';
-import apiClient from '../../services/api';
 
 
 /**
@@ -299,34 +298,7 @@ const CheckoutProcess = () => {
         clearCart();
         console.log('DEBUG: savedOrder for COD:', savedOrder);
 
-        // Send order confirmation email
-        // Send order confirmation email
-        try {
-          console.log('Sending email confirmation with data:', {
-            email: user.email,
-            orderId: savedOrder.id || savedOrder.orderId,
-            itemsCount: cartItems.length
-          });
-
-          await apiClient.post('/send-confirmation', {
-            email: user.email,
-            orderId: savedOrder?.id || savedOrder?.orderId || (typeof savedOrder === 'number' || typeof savedOrder === 'string' ? savedOrder : 'N/A'),
-            items: cartItems.map(item => ({
-              name: item.name,
-              price: item.price,
-              quantity: item.quantity,
-              weightValue: item.weightValue || item.weight,
-              weightUnit: item.weightUnit || ''
-            })),
-            subtotal: subtotal,
-            shippingCost: shippingCost,
-            discountAmount: discountAmount,
-            total: total
-          });
-          console.log('Order confirmation email request sent');
-        } catch (emailErr) {
-          console.error('Failed to send order confirmation email:', emailErr);
-        }
+        // The confirmation email is queued by the server when the order is placed
 
         setSuccessPopup({
           open: true,
@@ -384,30 +356,7 @@ const CheckoutProcess = () => {
 
             clearCart();
 
-            // Send order confirmation email
-            try {
-              console.log('DEBUG: verifyResult for Online:', verifyResult);
-              console.log('DEBUG: savedOrder for Online:', savedOrder);
-
-              await apiClient.post('/send-confirmation', {
-                email: user.email,
-                orderId: savedOrder?.id || savedOrder?.orderId || 'N/A',
-                items: cartItems.map(item => ({
-                  name: item.name,
-                  price: item.price,
-                  quantity: item.quantity,
-                  weightValue: item.weightValue || item.weight,
-                  weightUnit: item.weightUnit || ''
-                })),
-                subtotal: subtotal,
-                shippingCost: shippingCost,
-                discountAmount: discountAmount,
-                total: total
-              });
-              console.log('Order confirmation email request sent (Online)');
-            } catch (emailErr) {
-              console.error('Failed to send order confirmation email:', emailErr);
-            }
+            // The confirmation email is queued by the server when the order is placed
 
             setSuccessPopup({
               open: true,
@@ -146,7 +146,7 @@ export default function ForgotPassword() {
                 checked={method === 'credentials'}
                 onChange={(e) => setMethod(e.target.value)}
               />
-              <span>Send Username & Temporary Password</span>
+              <span>Send Username & Reset Link</span>
             </label>
           </div>
         )}
@@ -13,27 +13,53 @@ export const apiClient = axios.create({
   }
 });
 
-// Request interceptor: attach auth token if present
-apiClient.interceptors.request.use(
-  (config) => {
+// Stored session whose token is sent: the admin user first (admin panel operations),
+// then the regular user. Returns { key, session } or null.
+const findSession = () => {
+  for (const key of ['adminUser', 'user']) {
     try {
-      // Check for admin user token first (for admin panel operations)
-      const storedAdminUser = localStorage.getItem('adminUser');
-      let token = null;
-
-      if (storedAdminUser) {
-        const adminUser = JSON.parse(storedAdminUser);
-        token = adminUser?.token || adminUser?.accessToken;
+      const session = JSON.parse(localStorage.getItem(key) || 'null');
+      if (session?.token || session?.accessToken) {
+        return { key, session };
       }
+    } catch (e) {
+      // Ignore JSON parse errors; try the next entry
+    }
+  }
+  return null;
+};
 
-      // Fall back to regular user token if admin token not found
-      if (!token) {
-        const storedUser = localStorage.getItem('user');
-        if (storedUser) {
-          const user = JSON.parse(storedUser);
-          token = user?.token || user?.accessToken;
-        }
+// Access tokens are short-lived; one refresh is shared by all requests that hit a 401 meanwhile
+let refreshInFlight = null;
+
+const refreshAccessToken = () => {
+  if (!refreshInFlight) {
+    refreshInFlight = (async () => {
+      const found = findSession();
+      if (!found?.session?.refreshToken) {
+        throw new Error('No refresh token');
+      }
+      // Plain axios: a 401 from the refresh call itself must not re-enter the interceptor
+      const res = await axios.post(`${baseURL}/auth/refresh`, { refreshToken: found.session.refreshToken });
+      const updated = { ...found.session, ...res.data };
+      if (found.session.token) {
+        updated.token = res.data.accessToken;
       }
+      localStorage.setItem(found.key, JSON.stringify(updated));
+      return res.data.accessToken;
+    })().finally(() => {
+      refreshInFlight = null;
+    });
+  }
+  return refreshInFlight;
+};
+
+// Request interceptor: attach auth token if present
+apiClient.interceptors.request.use(
+  (config) => {
+    try {
+      const found = findSession();
+      const token = found ? (found.session.token || found.session.accessToken) : null;
 
       if (token) {
         config.headers = config.headers || {};
@@ -50,8 +76,21 @@ apiClient.interceptors.request.use(
 // Response interceptor: global error handling
 apiClient.interceptors.response.use(
   (response) => response,
-  (error) => {
+  async (error) => {
     const status = error?.response?.status;
+    const original = error?.config;
+    // Expired access token: refresh once and replay the request
+    if (status === 401 && original && !original._retried && original.headers?.Authorization
+      && !String(original.url || '').startsWith('/auth/')) {
+      original._retried = true;
+      try {
+        const token = await refreshAccessToken();
+        original.headers.Authorization = `Bearer ${token}`;
+        return apiClient(original);
+      } catch (refreshError) {
+        // Fall through to the logout handling below
+      }
+    }
     if (status === 401) {
       // Unauthorized: clear session and optionally redirect to login
       try {
@@ -9,6 +9,10 @@ const checkoutApi = {
     const res = await apiClient.get('/checkout/review', { params: { email } });
     return res.data;
   },
+  async acknowledgePrices(email) {
+    const res = await apiClient.post('/checkout/prices/acknowledge', {}, { params: { email } });
+    return res.data;
+  },
   async placeOrder(email) {
     const res = await apiClient.post('/checkout/place-order', {}, { params: { email } });
     return res.data;
@@ -8,6 +8,8 @@ export default defineConfig({
   // Build output directory (matches nginx root)
   build: {
     outDir: "build",
+    // build/.vite/manifest.json: the backend caches the files it lists as immutable
+    manifest: true,
     chunkSizeWarningLimit: 2000,
   },
 